@@ -0,0 +1,131 @@
+package github.javaguide.benchmark;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compress + decompress of hessian serialized rpc bodies between pooled direct buffers, gzip against lz4.
+ * records are roughly 130 bytes once serialized, so 8 / 128 / 512 records cover 1 KB to 64 KB bodies.
+ * the compressed size of every body is printed at setup
+ *
+ * <pre>
+ * java -jar rpc-framework-benchmark/target/benchmarks.jar CompressBenchmark
+ * </pre>
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 11:40:00
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressBenchmark {
+
+    @Param({"gzip", "lz4"})
+    private String compressName;
+
+    @Param({"request", "response"})
+    private String body;
+
+    @Param({"8", "128", "512"})
+    private int records;
+
+    private Compress compress;
+    private ByteBuf raw;
+    private ByteBuf compressed;
+    private ByteBuf target;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        compress = ExtensionLoader.getExtensionLoader(Compress.class).getExtension(compressName);
+        Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class).getExtension("hessian");
+        List<Map<String, Object>> data = records(records);
+        Object message;
+        if ("request".equals(body)) {
+            message = RpcRequest.builder().methodName("saveUsers")
+                    .parameters(new Object[]{data, Boolean.TRUE})
+                    .interfaceName("github.javaguide.UserService")
+                    .paramTypes(new Class<?>[]{List.class, Boolean.class})
+                    .requestId(UUID.randomUUID().toString())
+                    .group("group1")
+                    .version("version1")
+                    .build();
+        } else {
+            message = RpcResponse.success(data, UUID.randomUUID().toString());
+        }
+        raw = PooledByteBufAllocator.DEFAULT.directBuffer();
+        serializer.serialize(message, raw);
+        compressed = PooledByteBufAllocator.DEFAULT.directBuffer();
+        target = PooledByteBufAllocator.DEFAULT.directBuffer();
+        compress.compress(raw.duplicate(), compressed);
+        System.out.printf("%n%s %s x%d: %d -> %d bytes%n", compressName, body, records,
+                raw.readableBytes(), compressed.readableBytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        raw.release();
+        compressed.release();
+        target.release();
+    }
+
+    @Benchmark
+    public int compress() {
+        target.clear();
+        compress.compress(raw.duplicate(), target);
+        return target.readableBytes();
+    }
+
+    @Benchmark
+    public int decompress() {
+        target.clear();
+        compress.decompress(compressed.duplicate(), target);
+        return target.readableBytes();
+    }
+
+    private static List<Map<String, Object>> records(int count) {
+        Random random = new Random(count);
+        String[] cities = {"Beijing", "Shanghai", "Shenzhen", "Hangzhou", "Chengdu", "Wuhan"};
+        List<Map<String, Object>> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", 100000L + random.nextInt(900000));
+            record.put("name", "user" + random.nextInt(100000));
+            record.put("email", "user" + random.nextInt(100000) + "@example.com");
+            record.put("city", cities[random.nextInt(cities.length)]);
+            record.put("active", random.nextBoolean());
+            record.put("balance", random.nextInt(1000000) / 100.0);
+            record.put("token", Long.toHexString(random.nextLong()));
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,79 @@
+package github.javaguide.benchmark;
+
+import github.javaguide.utils.RuntimeUtil;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import github.javaguide.utils.concurrent.threadpool.VirtualThreads;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * how many requests to a service method that blocks for {@value #BLOCK_MILLIS} ms the server runs at the same time:
+ * the default service handler group of {@code cpus * 2} threads against a virtual thread per request
+ * ({@code rpc.server.virtual-threads=true}). Every column submits that many requests at once; concurrency is
+ * requests * block time / elapsed time, so the platform pool levels off at its size and virtual threads keep up
+ * with the requests. Virtual threads are only measured on JDK 21+
+ *
+ * <pre>
+ * java -cp rpc-framework-benchmark/target/benchmarks.jar github.javaguide.benchmark.ServerExecutorCeiling
+ * </pre>
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 23:20:00
+ */
+public final class ServerExecutorCeiling {
+
+    private static final long BLOCK_MILLIS = 20;
+    private static final int[] REQUESTS = {16, 64, 256, 1024, 4096};
+
+    private ServerExecutorCeiling() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = RuntimeUtil.cpus() * 2;
+        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup(threads,
+                ThreadPoolFactoryUtil.createThreadFactory("service-handler-group", true));
+        ExecutorService virtualThreads = VirtualThreads.isSupported()
+                ? VirtualThreads.newVirtualThreadPerTaskExecutor("service-handler-") : null;
+        // 每个连接绑定 group 中的一个线程，这里按请求轮流分配，是平台线程池最好的情况
+        Executor platform = task -> serviceHandlerGroup.next().execute(task);
+        System.out.printf("%-10s %24s %24s%n", "requests", "platform (" + threads + " threads)", "virtual threads");
+        try {
+            for (int requests : REQUESTS) {
+                double platformConcurrency = concurrency(platform, requests);
+                String virtual = virtualThreads == null ? "n/a" : String.format("%.1f", concurrency(virtualThreads, requests));
+                System.out.printf("%-10d %24.1f %24s%n", requests, platformConcurrency, virtual);
+            }
+        } finally {
+            serviceHandlerGroup.shutdownGracefully();
+            if (virtualThreads != null) {
+                virtualThreads.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @return average number of requests blocked at the same time
+     */
+    private static double concurrency(Executor executor, int requests) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(requests);
+        Runnable blockingCall = () -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(BLOCK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            executor.execute(blockingCall);
+        }
+        done.await();
+        long elapsedNanos = System.nanoTime() - start;
+        return (double) requests * TimeUnit.MILLISECONDS.toNanos(BLOCK_MILLIS) / elapsedNanos;
+    }
+}
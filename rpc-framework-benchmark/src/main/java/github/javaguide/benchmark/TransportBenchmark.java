@@ -0,0 +1,161 @@
+package github.javaguide.benchmark;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.NettyTransport;
+import github.javaguide.remoting.transport.netty.client.UnprocessedRequests;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageDecoder;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageEncoder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * request / response round trips over loopback with the rpc codec, NIO against the epoll native transport.
+ * Throughput gives calls per second, SampleTime gives the latency percentiles (p0.99 in the report).
+ * epoll is only measured where the native library loads
+ *
+ * <pre>
+ * java -jar rpc-framework-benchmark/target/benchmarks.jar TransportBenchmark
+ * </pre>
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 18:20:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"NIO", "EPOLL"})
+    private NettyTransport transport;
+
+    private EventLoopGroup serverGroup;
+    private EventLoopGroup clientGroup;
+    private Channel serverChannel;
+    private Channel channel;
+    private UnprocessedRequests unprocessedRequests;
+    private RpcRequest rpcRequest;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        if (transport == NettyTransport.EPOLL && NettyTransport.select() != NettyTransport.EPOLL) {
+            throw new IllegalStateException("epoll native transport is not available here");
+        }
+        serverGroup = transport.newEventLoopGroup(1);
+        clientGroup = transport.newEventLoopGroup(1);
+        ServerBootstrap serverBootstrap = new ServerBootstrap();
+        serverBootstrap.group(serverGroup)
+                .channel(transport.serverChannelClass())
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageEncoder(), new RpcMessageDecoder(), new EchoHandler());
+                    }
+                });
+        transport.configure(serverBootstrap);
+        serverChannel = serverBootstrap.bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+
+        unprocessedRequests = new UnprocessedRequests();
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(clientGroup)
+                .channel(transport.socketChannelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new RpcMessageEncoder(), new RpcMessageDecoder(), new ResponseHandler(unprocessedRequests));
+                    }
+                });
+        transport.configure(bootstrap);
+        channel = bootstrap.connect(serverChannel.localAddress()).sync().channel();
+        rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class})
+                .group("test1")
+                .version("version1")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        channel.close().syncUninterruptibly();
+        serverChannel.close().syncUninterruptibly();
+        clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    public RpcResponse<Object> roundTrip() throws Exception {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        int requestId = unprocessedRequests.put(future);
+        channel.writeAndFlush(RpcMessage.builder().data(rpcRequest)
+                .codec(SerializationTypeEnum.HESSIAN2.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(requestId)
+                .messageType(RpcConstants.REQUEST_TYPE).build());
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private static final class EchoHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            RpcMessage request = (RpcMessage) msg;
+            ctx.writeAndFlush(RpcMessage.builder()
+                    .data(RpcResponse.success(((RpcRequest) request.getData()).getParameters()[0], null))
+                    .codec(request.getCodec())
+                    .compress(CompressTypeEnum.NONE.getCode())
+                    .requestId(request.getRequestId())
+                    .messageType(RpcConstants.RESPONSE_TYPE).build());
+        }
+    }
+
+    private static final class ResponseHandler extends ChannelInboundHandlerAdapter {
+        private final UnprocessedRequests unprocessedRequests;
+
+        private ResponseHandler(UnprocessedRequests unprocessedRequests) {
+            this.unprocessedRequests = unprocessedRequests;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            RpcMessage response = (RpcMessage) msg;
+            unprocessedRequests.complete(response.getRequestId(), (RpcResponse<Object>) response.getData());
+        }
+    }
+}
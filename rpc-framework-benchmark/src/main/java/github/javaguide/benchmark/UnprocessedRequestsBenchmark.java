@@ -0,0 +1,63 @@
+package github.javaguide.benchmark;
+
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.client.UnprocessedRequests;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * put + complete of one in-flight request under 64 concurrent callers:
+ * the old UUID string keyed ConcurrentHashMap against the per-channel slot table
+ *
+ * <pre>
+ * java -jar rpc-framework-benchmark/target/benchmarks.jar UnprocessedRequestsBenchmark -prof gc
+ * </pre>
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 09:40:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(64)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnprocessedRequestsBenchmark {
+
+    private static final RpcResponse<Object> RESPONSE = RpcResponse.success("hello", null);
+
+    private final Map<String, CompletableFuture<RpcResponse<Object>>> uuidMap = new ConcurrentHashMap<>();
+    private final UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+
+    @Benchmark
+    public CompletableFuture<RpcResponse<Object>> uuidConcurrentHashMap() {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        String requestId = UUID.randomUUID().toString();
+        uuidMap.put(requestId, future);
+        uuidMap.remove(requestId).complete(RESPONSE);
+        return future;
+    }
+
+    @Benchmark
+    public CompletableFuture<RpcResponse<Object>> slotTable() {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        int requestId = unprocessedRequests.put(future);
+        unprocessedRequests.complete(requestId, RESPONSE);
+        return future;
+    }
+}
@@ -0,0 +1,107 @@
+package github.javaguide.benchmark;
+
+import github.javaguide.Hello;
+import github.javaguide.HelloService;
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * bytes on the wire for one {@code HelloService.hello} call of the example client, protocol version 1 against 2.
+ * the first v2 request of a connection also defines the method, the later ones only carry its id.
+ * bodies of this size stay under the compress threshold, so no column is compressed
+ *
+ * <pre>
+ * java -cp rpc-framework-benchmark/target/benchmarks.jar github.javaguide.benchmark.WireSizeComparison
+ * </pre>
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 17:40:00
+ */
+public final class WireSizeComparison {
+
+    private static final int CALLS = 100;
+
+    private WireSizeComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-12s %12s %12s %12s %12s %12s%n",
+                "codec", "v1 request", "v2 first", "v2 request", "v1 response", "v2 response");
+        for (SerializationTypeEnum codec : SerializationTypeEnum.values()) {
+            if (codec == SerializationTypeEnum.TYPED) {
+                // needs the generated codec of the example modules
+                continue;
+            }
+            EmbeddedChannel v1 = new EmbeddedChannel(new RpcMessageEncoder());
+            EmbeddedChannel v2 = new EmbeddedChannel(new RpcMessageEncoder());
+            int v2First = 0;
+            long v1Request = 0;
+            long v2Request = 0;
+            long v1Response = 0;
+            long v2Response = 0;
+            for (int requestId = 1; requestId <= CALLS; requestId++) {
+                RpcRequest rpcRequest = request(requestId);
+                v1Request += size(v1, request(RpcConstants.VERSION_1, codec, requestId, rpcRequest));
+                int v2Size = size(v2, request(RpcConstants.VERSION, codec, requestId, rpcRequest));
+                if (requestId == 1) {
+                    v2First = v2Size;
+                }
+                v2Request += v2Size;
+                v1Response += size(v1, response(RpcConstants.VERSION_1, codec, requestId, rpcRequest));
+                v2Response += size(v2, response(RpcConstants.VERSION, codec, requestId, rpcRequest));
+            }
+            System.out.printf("%-12s %12.1f %12d %12.1f %12.1f %12.1f%n", codec.getName(),
+                    (double) v1Request / CALLS, v2First, (double) v2Request / CALLS,
+                    (double) v1Response / CALLS, (double) v2Response / CALLS);
+            v1.finishAndReleaseAll();
+            v2.finishAndReleaseAll();
+        }
+    }
+
+    private static RpcRequest request(int index) throws NoSuchMethodException {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{new Hello("111", "222 " + index)})
+                .interfaceName(HelloService.class.getName())
+                .paramTypes(HelloService.class.getMethod("hello", Hello.class).getParameterTypes())
+                .group("test1")
+                .version("version1")
+                .build();
+    }
+
+    private static RpcMessage request(byte version, SerializationTypeEnum codec, int requestId, RpcRequest rpcRequest) {
+        return RpcMessage.builder().data(rpcRequest)
+                .version(version)
+                .codec(codec.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .requestId(requestId)
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+    }
+
+    private static RpcMessage response(byte version, SerializationTypeEnum codec, int requestId, RpcRequest rpcRequest) {
+        Hello hello = (Hello) rpcRequest.getParameters()[0];
+        return RpcMessage.builder().data(RpcResponse.success("Hello description is " + hello.getDescription(), null))
+                .version(version)
+                .codec(codec.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .requestId(requestId)
+                .request(rpcRequest)
+                .messageType(RpcConstants.RESPONSE_TYPE).build();
+    }
+
+    private static int size(EmbeddedChannel channel, RpcMessage rpcMessage) {
+        channel.writeOutbound(rpcMessage);
+        ByteBuf frame = channel.readOutbound();
+        try {
+            return frame.readableBytes();
+        } finally {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package github.javaguide.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 为 @RpcService 实现的接口和 @RpcReference 字段的接口生成编解码器
+ * <p>
+ * For every such interface a {@code <Interface>RpcCodec} class is generated next to it, with one MethodCodec per
+ * method declared by the interface. Each argument and return value gets a writer chosen from its declared type:
+ * primitives, boxed primitives, String, byte[] and enums are written directly, beans (public class, public no-arg
+ * constructor, getter/setter pairs) property by property, everything else through the generic fallback. The generated
+ * classes are listed in {@code META-INF/services/github.javaguide.codec.ServiceCodec} for the runtime to find.
+ * Methods returning CompletableFuture or CompletionStage are answered with the value of the future, so their result
+ * is written as the type argument.
+ * <p>
+ * The fingerprint covers the interface name and the encoding chosen for every method, so peers whose generated code
+ * differs in any way never use each other's typed format.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 17:20:00
+ */
+@SupportedAnnotationTypes({RpcCodecProcessor.RPC_SERVICE, RpcCodecProcessor.RPC_REFERENCE})
+public class RpcCodecProcessor extends AbstractProcessor {
+
+    static final String RPC_SERVICE = "github.javaguide.annotation.RpcService";
+    static final String RPC_REFERENCE = "github.javaguide.annotation.RpcReference";
+    private static final String SERVICE_CODEC = "github.javaguide.codec.ServiceCodec";
+    private static final String CODEC_SUPPORT = "github.javaguide.codec.CodecSupport";
+    private static final Set<String> ASYNC_TYPES = new HashSet<>(Arrays.asList(
+            "java.util.concurrent.CompletableFuture", "java.util.concurrent.CompletionStage"));
+
+    /**
+     * key: interface name, value: the interface, in the order they are found
+     */
+    private final Map<String, TypeElement> interfaces = new LinkedHashMap<>();
+    private final Set<String> generatedClasses = new LinkedHashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    for (TypeMirror implemented : ((TypeElement) element).getInterfaces()) {
+                        addInterface(implemented);
+                    }
+                } else if (element.getKind() == ElementKind.FIELD) {
+                    addInterface(element.asType());
+                }
+            }
+        }
+        for (TypeElement service : interfaces.values()) {
+            String className = codecClassName(service);
+            if (generatedClasses.add(className)) {
+                generate(service, className);
+            }
+        }
+        if (roundEnv.processingOver() && !generatedClasses.isEmpty()) {
+            writeServiceFile();
+        }
+        return false;
+    }
+
+    private void addInterface(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getKind() == ElementKind.INTERFACE) {
+            interfaces.putIfAbsent(element.getQualifiedName().toString(), element);
+        }
+    }
+
+    private String codecClassName(TypeElement service) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(service).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(service).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_');
+        return (packageName.isEmpty() ? "" : packageName + ".") + simpleName + "RpcCodec";
+    }
+
+    private void generate(TypeElement service, String className) {
+        // only the methods the interface declares itself, the proxy reports inherited ones with their own declaring interface
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(service.getEnclosedElements())) {
+            if (!method.getModifiers().contains(Modifier.STATIC)) {
+                methods.add(method);
+            }
+        }
+        methods.sort(Comparator.comparing(this::methodKey));
+
+        CodecWriter codec = new CodecWriter();
+        StringBuilder fingerprintSource = new StringBuilder(service.getQualifiedName());
+        List<String> methodClasses = new ArrayList<>();
+        StringBuilder methodBodies = new StringBuilder();
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            String methodClass = "Method" + i;
+            methodClasses.add(methodClass);
+            StringBuilder descriptor = new StringBuilder(method.getSimpleName()).append('(');
+            StringBuilder paramTypes = new StringBuilder();
+            StringBuilder writeArguments = new StringBuilder();
+            StringBuilder readArguments = new StringBuilder();
+            List<? extends VariableElement> parameters = method.getParameters();
+            for (int p = 0; p < parameters.size(); p++) {
+                TypeMirror type = parameters.get(p).asType();
+                Plan plan = codec.plan(type, new HashSet<>());
+                descriptor.append(p > 0 ? "," : "").append(plan.descriptor);
+                paramTypes.append(", ").append(erasure(type)).append(".class");
+                writeArguments.append("            ").append(plan.write("out", "(" + castType(type) + ") args[" + p + "]")).append('\n');
+                readArguments.append(p > 0 ? ", " : "").append(plan.read("in"));
+            }
+            // an async method answers with the value of its future
+            TypeMirror returnType = resultType(method.getReturnType());
+            String writeResult;
+            String readResult;
+            if (returnType.getKind() == TypeKind.VOID) {
+                descriptor.append(")V");
+                writeResult = "";
+                readResult = "            return null;\n";
+            } else {
+                Plan plan = codec.plan(returnType, new HashSet<>());
+                descriptor.append(')').append(plan.descriptor);
+                writeResult = "            " + plan.write("out", "(" + castType(returnType) + ") result") + "\n";
+                readResult = "            return " + plan.read("in") + ";\n";
+            }
+            fingerprintSource.append('\n').append(descriptor);
+
+            methodBodies.append("\n")
+                    .append("    private static final class ").append(methodClass).append(" extends MethodCodec {\n\n")
+                    .append("        ").append(methodClass).append("() {\n")
+                    .append("            super(\"").append(method.getSimpleName()).append("\"").append(paramTypes).append(");\n")
+                    .append("        }\n\n")
+                    .append("        @Override\n")
+                    .append("        public void writeArguments(Object[] args, ByteBuf out) {\n")
+                    .append(writeArguments)
+                    .append("        }\n\n")
+                    .append("        @Override\n")
+                    .append("        public Object[] readArguments(ByteBuf in) {\n")
+                    .append("            return new Object[]{").append(readArguments).append("};\n")
+                    .append("        }\n\n")
+                    .append("        @Override\n")
+                    .append("        public void writeResult(Object result, ByteBuf out) {\n")
+                    .append(writeResult)
+                    .append("        }\n\n")
+                    .append("        @Override\n")
+                    .append("        public Object readResult(ByteBuf in) {\n")
+                    .append(readResult)
+                    .append("        }\n")
+                    .append("    }\n");
+        }
+
+        int lastDot = className.lastIndexOf('.');
+        String packageName = lastDot < 0 ? "" : className.substring(0, lastDot);
+        String simpleName = className.substring(lastDot + 1);
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import github.javaguide.codec.MethodCodec;\n")
+                .append("import github.javaguide.codec.ServiceCodec;\n")
+                .append("import io.netty.buffer.ByteBuf;\n\n")
+                .append("/**\n")
+                .append(" * generated by ").append(RpcCodecProcessor.class.getName()).append(" for {@link ")
+                .append(service.getQualifiedName()).append("}, do not edit\n")
+                .append(" */\n")
+                .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("public final class ").append(simpleName).append(" implements ServiceCodec {\n\n")
+                .append("    private static final MethodCodec[] METHODS = {");
+        for (int i = 0; i < methodClasses.size(); i++) {
+            source.append(i > 0 ? ", " : "").append("new ").append(methodClasses.get(i)).append("()");
+        }
+        source.append("};\n\n")
+                .append("    @Override\n")
+                .append("    public String interfaceName() {\n")
+                .append("        return \"").append(processingEnv.getElementUtils().getBinaryName(service)).append("\";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public int fingerprint() {\n")
+                .append("        return ").append(fingerprint(fingerprintSource.toString())).append(";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public MethodCodec[] methods() {\n")
+                .append("        return METHODS;\n")
+                .append("    }\n")
+                .append(methodBodies)
+                .append(codec.helpers)
+                .append("}\n");
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(className, service);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source.toString());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "cannot write " + className + ": " + e.getMessage(), service);
+        }
+    }
+
+    private void writeServiceFile() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    "META-INF/services/" + SERVICE_CODEC);
+            try (Writer writer = file.openWriter()) {
+                for (String className : generatedClasses) {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "cannot write service codec list: " + e.getMessage());
+        }
+    }
+
+    private String methodKey(ExecutableElement method) {
+        StringBuilder key = new StringBuilder(method.getSimpleName()).append('(');
+        for (VariableElement parameter : method.getParameters()) {
+            key.append(erasure(parameter.asType())).append(',');
+        }
+        return key.append(')').toString();
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    /**
+     * @return T for CompletableFuture&lt;T&gt; and CompletionStage&lt;T&gt;, Object for their raw types, the type itself otherwise
+     */
+    private TypeMirror resultType(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return type;
+        }
+        DeclaredType declaredType = (DeclaredType) type;
+        String name = ((TypeElement) declaredType.asElement()).getQualifiedName().toString();
+        if (!ASYNC_TYPES.contains(name)) {
+            return type;
+        }
+        List<? extends TypeMirror> typeArguments = declaredType.getTypeArguments();
+        TypeMirror argument = typeArguments.isEmpty() ? null : typeArguments.get(0);
+        if (argument == null || argument.getKind() != TypeKind.DECLARED) {
+            return processingEnv.getElementUtils().getTypeElement("java.lang.Object").asType();
+        }
+        return argument;
+    }
+
+    /**
+     * @return the type an Object must be cast to before it is handed to the writer of the type
+     */
+    private String castType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return erasure(type);
+    }
+
+    private static int fingerprint(String source) {
+        CRC32 crc32 = new CRC32();
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        crc32.update(bytes, 0, bytes.length);
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * how one value is written and read
+     */
+    private static final class Plan {
+        private final String descriptor;
+        /**
+         * statement writing {@code $v} to {@code $out}
+         */
+        private final String write;
+        /**
+         * expression reading a value from {@code $in}
+         */
+        private final String read;
+
+        private Plan(String descriptor, String write, String read) {
+            this.descriptor = descriptor;
+            this.write = write;
+            this.read = read;
+        }
+
+        private String write(String out, String value) {
+            return write.replace("$out", out).replace("$v", value);
+        }
+
+        private String read(String in) {
+            return read.replace("$in", in);
+        }
+    }
+
+    /**
+     * chooses the writers of a codec class and collects the helper methods of its beans
+     */
+    private final class CodecWriter {
+        private final StringBuilder helpers = new StringBuilder();
+        /**
+         * key: bean class name, value: its plan, shared by every method of the codec
+         */
+        private final Map<String, Plan> beanPlans = new LinkedHashMap<>();
+
+        private Plan plan(TypeMirror type, Set<String> beansInProgress) {
+            switch (type.getKind()) {
+                case INT:
+                    return new Plan("I", "$out.writeInt($v);", "$in.readInt()");
+                case LONG:
+                    return new Plan("J", "$out.writeLong($v);", "$in.readLong()");
+                case BOOLEAN:
+                    return new Plan("Z", "$out.writeBoolean($v);", "$in.readBoolean()");
+                case BYTE:
+                    return new Plan("B", "$out.writeByte($v);", "$in.readByte()");
+                case SHORT:
+                    return new Plan("S", "$out.writeShort($v);", "$in.readShort()");
+                case CHAR:
+                    return new Plan("C", "$out.writeChar($v);", "$in.readChar()");
+                case FLOAT:
+                    return new Plan("F", "$out.writeFloat($v);", "$in.readFloat()");
+                case DOUBLE:
+                    return new Plan("D", "$out.writeDouble($v);", "$in.readDouble()");
+                case ARRAY:
+                    if (((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE) {
+                        return support("[B", "Bytes");
+                    }
+                    return fallback(type);
+                case DECLARED:
+                    return declaredPlan((DeclaredType) type, beansInProgress);
+                default:
+                    return fallback(type);
+            }
+        }
+
+        private Plan declaredPlan(DeclaredType type, Set<String> beansInProgress) {
+            TypeElement element = (TypeElement) type.asElement();
+            String name = element.getQualifiedName().toString();
+            switch (name) {
+                case "java.lang.String":
+                    return support("T", "String");
+                case "java.lang.Integer":
+                    return support("LI", "Integer");
+                case "java.lang.Long":
+                    return support("LJ", "Long");
+                case "java.lang.Boolean":
+                    return support("LZ", "Boolean");
+                case "java.lang.Byte":
+                    return support("LB", "Byte");
+                case "java.lang.Short":
+                    return support("LS", "Short");
+                case "java.lang.Character":
+                    return support("LC", "Character");
+                case "java.lang.Float":
+                    return support("LF", "Float");
+                case "java.lang.Double":
+                    return support("LD", "Double");
+                default:
+                    break;
+            }
+            if (element.getKind() == ElementKind.ENUM) {
+                return new Plan("E" + name, CODEC_SUPPORT + ".writeEnum($out, $v);",
+                        CODEC_SUPPORT + ".readEnum($in, " + name + ".class)");
+            }
+            Plan beanPlan = beanPlan(element, beansInProgress);
+            return beanPlan != null ? beanPlan : fallback(type);
+        }
+
+        /**
+         * @return null if the type is not a bean the generated code can fill
+         */
+        private Plan beanPlan(TypeElement element, Set<String> beansInProgress) {
+            String name = element.getQualifiedName().toString();
+            if (beanPlans.containsKey(name)) {
+                return beanPlans.get(name);
+            }
+            if (element.getKind() != ElementKind.CLASS || !element.getTypeParameters().isEmpty()
+                    || !element.getModifiers().contains(Modifier.PUBLIC) || element.getModifiers().contains(Modifier.ABSTRACT)
+                    || (element.getNestingKind() == NestingKind.MEMBER && !element.getModifiers().contains(Modifier.STATIC))
+                    || name.startsWith("java.") || name.startsWith("javax.") || !beansInProgress.add(name)) {
+                return null;
+            }
+            boolean constructor = false;
+            for (ExecutableElement c : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+                if (c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC)) {
+                    constructor = true;
+                }
+            }
+            // key: property name, value: {getter, setter}, sorted so that both peers agree on the order
+            Map<String, ExecutableElement[]> properties = new TreeMap<>();
+            if (constructor) {
+                collectProperties(element, properties);
+            }
+            if (properties.isEmpty()) {
+                beansInProgress.remove(name);
+                return null;
+            }
+            // helpers are numbered, the bean name is in the descriptor
+            String helper = "Bean" + beanPlans.size();
+            StringBuilder descriptor = new StringBuilder("{").append(name);
+            StringBuilder write = new StringBuilder();
+            StringBuilder read = new StringBuilder();
+            for (Map.Entry<String, ExecutableElement[]> property : properties.entrySet()) {
+                ExecutableElement getter = property.getValue()[0];
+                ExecutableElement setter = property.getValue()[1];
+                Plan plan = plan(getter.getReturnType(), beansInProgress);
+                descriptor.append(';').append(property.getKey()).append(':').append(plan.descriptor);
+                write.append("        ").append(plan.write("out", "value." + getter.getSimpleName() + "()")).append('\n');
+                read.append("        value.").append(setter.getSimpleName()).append('(').append(plan.read("in")).append(");\n");
+            }
+            descriptor.append('}');
+            beansInProgress.remove(name);
+            helpers.append('\n')
+                    .append("    private static void write").append(helper).append("(ByteBuf out, ").append(name).append(" value) {\n")
+                    .append("        if (!").append(CODEC_SUPPORT).append(".writePresence(out, value)) {\n")
+                    .append("            return;\n")
+                    .append("        }\n")
+                    .append(write)
+                    .append("    }\n\n")
+                    .append("    private static ").append(name).append(" read").append(helper).append("(ByteBuf in) {\n")
+                    .append("        if (!").append(CODEC_SUPPORT).append(".readPresence(in)) {\n")
+                    .append("            return null;\n")
+                    .append("        }\n")
+                    .append("        ").append(name).append(" value = new ").append(name).append("();\n")
+                    .append(read)
+                    .append("        return value;\n")
+                    .append("    }\n");
+            Plan plan = new Plan(descriptor.toString(), "write" + helper + "($out, $v);", "read" + helper + "($in)");
+            beanPlans.put(name, plan);
+            return plan;
+        }
+
+        private void collectProperties(TypeElement element, Map<String, ExecutableElement[]> properties) {
+            List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(element));
+            for (ExecutableElement getter : methods) {
+                String getterName = getter.getSimpleName().toString();
+                if (!getter.getModifiers().contains(Modifier.PUBLIC) || getter.getModifiers().contains(Modifier.STATIC)
+                        || !getter.getParameters().isEmpty() || !getter.getTypeParameters().isEmpty()
+                        || getter.getReturnType().getKind() == TypeKind.VOID || "getClass".equals(getterName)) {
+                    continue;
+                }
+                String property;
+                if (getterName.startsWith("get") && getterName.length() > 3) {
+                    property = getterName.substring(3);
+                } else if (getterName.startsWith("is") && getterName.length() > 2 && getter.getReturnType().getKind() == TypeKind.BOOLEAN) {
+                    property = getterName.substring(2);
+                } else {
+                    continue;
+                }
+                for (ExecutableElement setter : methods) {
+                    if (setter.getSimpleName().contentEquals("set" + property) && setter.getModifiers().contains(Modifier.PUBLIC)
+                            && !setter.getModifiers().contains(Modifier.STATIC) && setter.getParameters().size() == 1
+                            && processingEnv.getTypeUtils().isSameType(setter.getParameters().get(0).asType(), getter.getReturnType())) {
+                        properties.put(property, new ExecutableElement[]{getter, setter});
+                        break;
+                    }
+                }
+            }
+        }
+
+        private Plan support(String descriptor, String suffix) {
+            return new Plan(descriptor, CODEC_SUPPORT + ".write" + suffix + "($out, $v);", CODEC_SUPPORT + ".read" + suffix + "($in)");
+        }
+
+        private Plan fallback(TypeMirror type) {
+            String erasure = erasure(type);
+            String read = CODEC_SUPPORT + ".readObject($in)";
+            return new Plan("O" + erasure, CODEC_SUPPORT + ".writeObject($out, $v);",
+                    "java.lang.Object".equals(erasure) ? read : "(" + erasure + ") " + read);
+        }
+    }
+}
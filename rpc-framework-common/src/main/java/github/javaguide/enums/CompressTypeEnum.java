@@ -11,7 +11,10 @@ import lombok.Getter;
 @Getter
 public enum CompressTypeEnum {
 
-    GZIP((byte) 0x01, "gzip");
+    NONE((byte) 0x00, "none"),
+    GZIP((byte) 0x01, "gzip"),
+    LZ4((byte) 0x02, "lz4"),
+    DEFLATE_DICT((byte) 0x03, "deflate-dict");
 
     private final byte code;
     private final String name;
@@ -25,4 +28,13 @@ public enum CompressTypeEnum {
         return null;
     }
 
+    public static byte getCode(String name) {
+        for (CompressTypeEnum c : CompressTypeEnum.values()) {
+            if (c.name.equals(name)) {
+                return c.code;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compress type: " + name);
+    }
+
 }
@@ -0,0 +1,39 @@
+package github.javaguide.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 客户端到某服务提供者的未完成请求达到上限时如何处理新的请求
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 22:40:00
+ */
+@AllArgsConstructor
+@Getter
+public enum OverloadPolicyEnum {
+
+    /**
+     * fail the call at once
+     */
+    FAIL("fail"),
+    /**
+     * wait without holding a thread until a request to the provider completes, or the call times out
+     */
+    WAIT("wait"),
+    /**
+     * send the call to another provider of the service that has room, fail if none has
+     */
+    SPILL("spill");
+
+    private final String name;
+
+    public static OverloadPolicyEnum of(String name) {
+        for (OverloadPolicyEnum o : OverloadPolicyEnum.values()) {
+            if (o.name.equals(name)) {
+                return o;
+            }
+        }
+        throw new IllegalArgumentException("Unknown overload policy: " + name);
+    }
+}
@@ -8,7 +8,190 @@ import lombok.Getter;
 public enum RpcConfigEnum {
 
     RPC_CONFIG_PATH("rpc.properties"),
-    ZK_ADDRESS("rpc.zookeeper.address");
+    ZK_ADDRESS("rpc.zookeeper.address"),
+    /**
+     * serialization used for requests, eg: hessian2. the server answers with the codec of the request
+     */
+    SERIALIZE_TYPE("rpc.serialize.type"),
+    /**
+     * preferred compress algorithm, eg: gzip
+     */
+    COMPRESS_TYPE("rpc.compress.type"),
+    /**
+     * bodies smaller than this many bytes are sent uncompressed
+     */
+    COMPRESS_THRESHOLD("rpc.compress.threshold"),
+    /**
+     * the same threshold for the preset dictionary deflate
+     */
+    COMPRESS_DICTIONARY_THRESHOLD("rpc.compress.dictionary-threshold"),
+    /**
+     * if compressed/raw size of a method stays above this ratio its bodies are sent uncompressed
+     */
+    COMPRESS_POOR_RATIO("rpc.compress.poor-ratio"),
+    /**
+     * comma separated classes registered to kryo after the rpc dto, in the same order on every peer
+     */
+    KRYO_REGISTER_CLASSES("rpc.kryo.register-classes"),
+    /**
+     * highest protocol version this peer negotiates, 1 keeps every connection on the version 1 frame
+     */
+    PROTOCOL_VERSION("rpc.protocol.version"),
+    /**
+     * false keeps netty on NIO even where the epoll native transport is available
+     */
+    TRANSPORT_EPOLL("rpc.transport.epoll"),
+    /**
+     * epoll only: how many times the server binds its port with SO_REUSEPORT, one acceptor thread per bind
+     */
+    TRANSPORT_REUSE_PORT_BINDS("rpc.transport.reuse-port-binds"),
+    /**
+     * epoll only: SO_BUSY_POLL in microseconds, 0 leaves it off
+     */
+    TRANSPORT_BUSY_POLL_MICROS("rpc.transport.busy-poll-micros"),
+    /**
+     * epoll only: unix domain socket the server also listens on and advertises, empty to listen on tcp only
+     */
+    TRANSPORT_UDS_PATH("rpc.transport.uds-path"),
+    /**
+     * false keeps the client on tcp for providers on the same host
+     */
+    TRANSPORT_PREFER_UDS("rpc.transport.prefer-uds"),
+    /**
+     * max number of messages written to a channel before it is flushed, the rest wait for the next flush
+     */
+    TRANSPORT_MAX_MESSAGES_PER_FLUSH("rpc.transport.max-messages-per-flush"),
+    /**
+     * false sends calls to services registered in the same process over the network too
+     */
+    INJVM("rpc.injvm"),
+    /**
+     * in-jvm calls copy the request and the response through the serializer instead of passing references
+     */
+    INJVM_COPY("rpc.injvm.copy"),
+    /**
+     * transport of the client proxies, eg: netty, shm
+     */
+    CLIENT_TRANSPORT("rpc.client.transport"),
+    /**
+     * threads that complete the futures of async methods, 0 completes them on the netty thread that read the response
+     */
+    CLIENT_CALLBACK_THREADS("rpc.client.callback-threads"),
+    /**
+     * timeout in milliseconds of calls whose @RpcReference sets none, 0 waits forever
+     */
+    CLIENT_TIMEOUT_MILLIS("rpc.client.timeout-millis"),
+    /**
+     * max number of connections the client opens to one provider
+     */
+    CLIENT_CONNECTIONS("rpc.client.connections"),
+    /**
+     * delay in milliseconds before reconnecting to a provider after the first failed connect, doubled on every failure
+     */
+    CLIENT_RECONNECT_BACKOFF_MILLIS("rpc.client.reconnect-backoff-millis"),
+    /**
+     * upper bound of the reconnect delay in milliseconds
+     */
+    CLIENT_RECONNECT_MAX_BACKOFF_MILLIS("rpc.client.reconnect-max-backoff-millis"),
+    /**
+     * max number of requests waiting for a response on one connection
+     */
+    CLIENT_MAX_IN_FLIGHT_PER_CHANNEL("rpc.client.max-in-flight-per-channel"),
+    /**
+     * max number of requests waiting for a response from one provider over all its connections, 0 for no limit but
+     * the one of the connections
+     */
+    CLIENT_MAX_IN_FLIGHT_PER_ENDPOINT("rpc.client.max-in-flight-per-endpoint"),
+    /**
+     * bytes waiting in the outbound buffer of a connection above which it takes no new request, until half of them
+     * are written
+     */
+    CLIENT_WRITE_BUFFER_HIGH_WATER_MARK("rpc.client.write-buffer-high-water-mark"),
+    /**
+     * what to do with a call to a provider that is at its limit: fail, wait or spill, see OverloadPolicyEnum
+     */
+    CLIENT_OVERLOAD_POLICY("rpc.client.overload-policy"),
+    /**
+     * copies of hedged calls allowed per 100 calls of all hedged methods
+     */
+    CLIENT_HEDGE_BUDGET_PERCENT("rpc.client.hedge-budget-percent"),
+    /**
+     * max number of hedge copies the budget saves up for a burst of slow calls
+     */
+    CLIENT_HEDGE_BUDGET_BURST("rpc.client.hedge-budget-burst"),
+    /**
+     * retries allowed per 100 calls of all retried methods
+     */
+    CLIENT_RETRY_BUDGET_PERCENT("rpc.client.retry-budget-percent"),
+    /**
+     * max number of retries the budget saves up for a burst of failures
+     */
+    CLIENT_RETRY_BUDGET_BURST("rpc.client.retry-budget-burst"),
+    /**
+     * delay before the first retry of a call in milliseconds, doubled for every other retry
+     */
+    CLIENT_RETRY_BACKOFF_MILLIS("rpc.client.retry-backoff-millis"),
+    /**
+     * upper bound of the delay before a retry in milliseconds
+     */
+    CLIENT_RETRY_MAX_BACKOFF_MILLIS("rpc.client.retry-max-backoff-millis"),
+    /**
+     * number of recent calls to a provider its circuit breaker judges it by
+     */
+    CLIENT_BREAKER_WINDOW("rpc.client.breaker-window"),
+    /**
+     * calls to a provider needed in the window before its circuit breaker may open
+     */
+    CLIENT_BREAKER_MIN_CALLS("rpc.client.breaker-min-calls"),
+    /**
+     * share in percent of failed or slow calls in the window that opens the circuit breaker of a provider
+     */
+    CLIENT_BREAKER_FAILURE_RATE_PERCENT("rpc.client.breaker-failure-rate-percent"),
+    /**
+     * calls slower than this many milliseconds count as failed for the circuit breaker, 0 to ignore latency
+     */
+    CLIENT_BREAKER_SLOW_CALL_MILLIS("rpc.client.breaker-slow-call-millis"),
+    /**
+     * how long a provider is left out of load balancing when its circuit breaker opens, doubled for every trip in a row
+     */
+    CLIENT_BREAKER_EJECTION_MILLIS("rpc.client.breaker-ejection-millis"),
+    /**
+     * upper bound of how long a provider is left out of load balancing, in milliseconds
+     */
+    CLIENT_BREAKER_MAX_EJECTION_MILLIS("rpc.client.breaker-max-ejection-millis"),
+    /**
+     * true to subscribe to every referenced service and connect to its providers at startup, not only to those
+     * whose @RpcReference is eager
+     */
+    CLIENT_EAGER("rpc.client.eager"),
+    /**
+     * number of heartbeats sent over every connection opened at startup
+     */
+    CLIENT_WARMUP_PINGS("rpc.client.warmup-pings"),
+    /**
+     * how long startup waits for the eager references to be ready, in milliseconds
+     */
+    CLIENT_WARMUP_TIMEOUT_MILLIS("rpc.client.warmup-timeout-millis"),
+    /**
+     * true to run every request the netty and socket servers receive on a virtual thread of its own, needs JDK 21+
+     */
+    SERVER_VIRTUAL_THREADS("rpc.server.virtual-threads"),
+    /**
+     * the server also accepts shared memory connections from clients on the same host
+     */
+    SHM_ENABLED("rpc.shm.enabled"),
+    /**
+     * directory of the shared memory rings, defaults to /dev/shm/guide-rpc
+     */
+    SHM_DIR("rpc.shm.dir"),
+    /**
+     * size in bytes of each ring of a shared memory connection
+     */
+    SHM_RING_BYTES("rpc.shm.ring-bytes"),
+    /**
+     * empty polls a shared memory reader spins through before it starts to yield and park
+     */
+    SHM_SPIN_ITERATIONS("rpc.shm.spin-iterations");
 
     private final String propertyValue;
 
@@ -19,4 +19,18 @@ public enum RpcResponseCodeEnum {
 
     private final String message;
 
+    /**
+     * @return the standard message of the code, null if the code is unknown
+     */
+    public static String messageOf(Integer code) {
+        if (code != null) {
+            for (RpcResponseCodeEnum codeEnum : RpcResponseCodeEnum.values()) {
+                if (codeEnum.getCode() == code) {
+                    return codeEnum.getMessage();
+                }
+            }
+        }
+        return null;
+    }
+
 }
@@ -13,7 +13,12 @@ public enum SerializationTypeEnum {
 
     KYRO((byte) 0x01, "kyro"),
     PROTOSTUFF((byte) 0x02, "protostuff"),
-    HESSIAN((byte) 0X03, "hessian");
+    HESSIAN((byte) 0X03, "hessian"),
+    HESSIAN2((byte) 0x04, "hessian2"),
+    /**
+     * codecs generated at compile time, only used between peers that have the same codec for the interface
+     */
+    TYPED((byte) 0x05, "typed");
 
     private final byte code;
     private final String name;
@@ -27,4 +32,13 @@ public enum SerializationTypeEnum {
         return null;
     }
 
+    public static byte getCode(String name) {
+        for (SerializationTypeEnum c : SerializationTypeEnum.values()) {
+            if (c.name.equals(name)) {
+                return c.code;
+            }
+        }
+        throw new IllegalArgumentException("Unknown serialization type: " + name);
+    }
+
 }
@@ -0,0 +1,50 @@
+package github.javaguide.utils;
+
+import github.javaguide.enums.RpcConfigEnum;
+
+import java.util.Properties;
+
+/**
+ * rpc.properties 配置读取工具，配置文件只读取一次，缺失的配置项使用默认值
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 10:12:00
+ */
+public final class RpcPropertiesUtil {
+
+    private RpcPropertiesUtil() {
+    }
+
+    public static String getString(RpcConfigEnum rpcConfigEnum, String defaultValue) {
+        Properties properties = PropertiesHolder.PROPERTIES;
+        String value = properties == null ? null : properties.getProperty(rpcConfigEnum.getPropertyValue());
+        return StringUtil.isBlank(value) ? defaultValue : value.trim();
+    }
+
+    public static int getInt(RpcConfigEnum rpcConfigEnum, int defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public static long getLong(RpcConfigEnum rpcConfigEnum, long defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public static double getDouble(RpcConfigEnum rpcConfigEnum, double defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    public static boolean getBoolean(RpcConfigEnum rpcConfigEnum, boolean defaultValue) {
+        String value = getString(rpcConfigEnum, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * lazily read rpc.properties on first use
+     */
+    private static final class PropertiesHolder {
+        private static final Properties PROPERTIES = PropertiesFileUtil.readPropertiesFile(RpcConfigEnum.RPC_CONFIG_PATH.getPropertyValue());
+    }
+}
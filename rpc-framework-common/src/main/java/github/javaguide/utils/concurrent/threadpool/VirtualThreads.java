@@ -0,0 +1,93 @@
+package github.javaguide.utils.concurrent.threadpool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程（JDK 21+）：每个任务一个虚拟线程，阻塞时不占用平台线程
+ * <p>
+ * The project is built for Java 8, so the JDK 21 API is looked up by reflection once. On an older runtime
+ * {@link #isSupported()} is false and callers keep their platform thread pools.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 23:00:00
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    /**
+     * Thread.ofVirtual(), null before JDK 21
+     */
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            // 通过公开的 Thread.Builder 接口调用，实现类不是 public 的
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            builderName = builder.getMethod("name", String.class, long.class);
+            builderFactory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Class.forName("java.util.concurrent.Executors")
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether this runtime has virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param threadNamePrefix virtual threads are named prefix0, prefix1, ...
+     * @return an executor that starts a new virtual thread for every task
+     * @throws UnsupportedOperationException if the runtime has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String threadNamePrefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("virtual threads need JDK 21+, running on " + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), threadNamePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("create virtual thread executor fail", e);
+        }
+    }
+
+    /**
+     * @return a virtual thread per task executor if enabled and the runtime has virtual threads, null otherwise
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutorIfEnabled(boolean enabled, String threadNamePrefix) {
+        if (!enabled) {
+            return null;
+        }
+        if (!isSupported()) {
+            log.warn("virtual threads need JDK 21+, [{}] keeps using platform threads on [{}]",
+                    threadNamePrefix, System.getProperty("java.version"));
+            return null;
+        }
+        return newVirtualThreadPerTaskExecutor(threadNamePrefix);
+    }
+}
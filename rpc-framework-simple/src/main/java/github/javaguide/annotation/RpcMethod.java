@@ -0,0 +1,49 @@
+package github.javaguide.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * settings of one method of a service referenced by {@link RpcReference#methods()}
+ * 引用远程服务时针对单个方法的配置
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 21:05:00
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({})
+public @interface RpcMethod {
+    /**
+     * method name, applies to every overload
+     */
+    String name();
+
+    /**
+     * timeout of a call in milliseconds, 0 uses the timeout of the reference
+     */
+    long timeout() default 0;
+
+    /**
+     * whether running the method more than once for one call does no harm, eg: a read
+     */
+    boolean idempotent() default false;
+
+    /**
+     * send a copy of a slow call to a second provider and take the first response, only for idempotent methods
+     */
+    boolean hedge() default false;
+
+    /**
+     * milliseconds without a response before the copy is sent, 0 uses the p95 latency observed so far
+     */
+    long hedgeDelay() default 0;
+
+    /**
+     * max number of retries of a call that got no response, only for idempotent methods, -1 uses the retries of the
+     * reference
+     */
+    int retries() default -1;
+}
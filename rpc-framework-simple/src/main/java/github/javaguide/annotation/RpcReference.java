@@ -27,4 +27,24 @@ public @interface RpcReference {
      * Service group, default value is empty string
      */
     String group() default "";
+    /**
+     * timeout of a call in milliseconds, 0 uses rpc.client.timeout-millis
+     */
+    long timeout() default 0;
+    /**
+     * settings of single methods, override those of the reference
+     */
+    RpcMethod[] methods() default {};
+    /**
+     * hedge every method of the reference that is declared idempotent, see {@link RpcMethod#hedge()}
+     */
+    boolean hedge() default false;
+    /**
+     * max number of retries of a call that got no response, for every method that is declared idempotent
+     */
+    int retries() default 2;
+    /**
+     * subscribe to the service and connect to its providers when the context starts instead of on the first call
+     */
+    boolean eager() default false;
 }
@@ -0,0 +1,210 @@
+package github.javaguide.codec;
+
+import github.javaguide.serialize.Serializer;
+import github.javaguide.serialize.hessian.Hessian2Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 生成的编解码器使用的读写方法
+ * <p>
+ * Reference types start with a presence marker so that null survives the trip. Types the code generator has no typed
+ * writer for go through {@link #writeObject(ByteBuf, Object)}, a length prefixed hessian2 body.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 16:45:00
+ */
+public final class CodecSupport {
+
+    private static final byte NULL = 0;
+    private static final byte NOT_NULL = 1;
+    private static final Serializer FALLBACK = new Hessian2Serializer();
+
+    private CodecSupport() {
+    }
+
+    public static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(ByteBuf in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    /**
+     * utf-8 length + 1 as a varint, 0 for null, then the utf-8 bytes
+     */
+    public static void writeString(ByteBuf out, String value) {
+        if (value == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        int length = ByteBufUtil.utf8Bytes(value);
+        writeVarInt(out, length + 1);
+        ByteBufUtil.reserveAndWriteUtf8(out, value, length);
+    }
+
+    public static String readString(ByteBuf in) {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+
+    public static void writeBytes(ByteBuf out, byte[] value) {
+        if (value == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        writeVarInt(out, value.length + 1);
+        out.writeBytes(value);
+    }
+
+    public static byte[] readBytes(ByteBuf in) {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readBytes(value);
+        return value;
+    }
+
+    public static void writeEnum(ByteBuf out, Enum<?> value) {
+        writeString(out, value == null ? null : value.name());
+    }
+
+    public static <E extends Enum<E>> E readEnum(ByteBuf in, Class<E> enumType) {
+        String name = readString(in);
+        return name == null ? null : Enum.valueOf(enumType, name);
+    }
+
+    /**
+     * writes the presence marker of a reference
+     *
+     * @return true if a value follows
+     */
+    public static boolean writePresence(ByteBuf out, Object value) {
+        out.writeByte(value == null ? NULL : NOT_NULL);
+        return value != null;
+    }
+
+    /**
+     * @return true if a value follows
+     */
+    public static boolean readPresence(ByteBuf in) {
+        return in.readByte() != NULL;
+    }
+
+    public static void writeInteger(ByteBuf out, Integer value) {
+        if (writePresence(out, value)) {
+            out.writeInt(value);
+        }
+    }
+
+    public static Integer readInteger(ByteBuf in) {
+        return readPresence(in) ? in.readInt() : null;
+    }
+
+    public static void writeLong(ByteBuf out, Long value) {
+        if (writePresence(out, value)) {
+            out.writeLong(value);
+        }
+    }
+
+    public static Long readLong(ByteBuf in) {
+        return readPresence(in) ? in.readLong() : null;
+    }
+
+    public static void writeBoolean(ByteBuf out, Boolean value) {
+        if (writePresence(out, value)) {
+            out.writeBoolean(value);
+        }
+    }
+
+    public static Boolean readBoolean(ByteBuf in) {
+        return readPresence(in) ? in.readBoolean() : null;
+    }
+
+    public static void writeByte(ByteBuf out, Byte value) {
+        if (writePresence(out, value)) {
+            out.writeByte(value);
+        }
+    }
+
+    public static Byte readByte(ByteBuf in) {
+        return readPresence(in) ? in.readByte() : null;
+    }
+
+    public static void writeShort(ByteBuf out, Short value) {
+        if (writePresence(out, value)) {
+            out.writeShort(value);
+        }
+    }
+
+    public static Short readShort(ByteBuf in) {
+        return readPresence(in) ? in.readShort() : null;
+    }
+
+    public static void writeCharacter(ByteBuf out, Character value) {
+        if (writePresence(out, value)) {
+            out.writeChar(value);
+        }
+    }
+
+    public static Character readCharacter(ByteBuf in) {
+        return readPresence(in) ? in.readChar() : null;
+    }
+
+    public static void writeFloat(ByteBuf out, Float value) {
+        if (writePresence(out, value)) {
+            out.writeFloat(value);
+        }
+    }
+
+    public static Float readFloat(ByteBuf in) {
+        return readPresence(in) ? in.readFloat() : null;
+    }
+
+    public static void writeDouble(ByteBuf out, Double value) {
+        if (writePresence(out, value)) {
+            out.writeDouble(value);
+        }
+    }
+
+    public static Double readDouble(ByteBuf in) {
+        return readPresence(in) ? in.readDouble() : null;
+    }
+
+    /**
+     * generic fallback for types without a typed writer: 4B length then a hessian2 body
+     */
+    public static void writeObject(ByteBuf out, Object value) {
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        FALLBACK.serialize(value, out);
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+    }
+
+    public static Object readObject(ByteBuf in) {
+        int length = in.readInt();
+        return FALLBACK.deserialize(in.readSlice(length), Object.class);
+    }
+}
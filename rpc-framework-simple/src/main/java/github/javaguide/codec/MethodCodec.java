@@ -0,0 +1,61 @@
+package github.javaguide.codec;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 一个服务方法的参数和返回值编解码器，由 rpc-framework-codegen 在编译期生成
+ * <p>
+ * Arguments are written in declaration order with a writer chosen from the declared parameter type, so neither the
+ * parameter types nor the class names of the arguments travel on the wire.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 16:40:00
+ */
+public abstract class MethodCodec {
+
+    private final String methodName;
+    private final Class<?>[] paramTypes;
+
+    protected MethodCodec(String methodName, Class<?>... paramTypes) {
+        this.methodName = methodName;
+        this.paramTypes = paramTypes;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public Class<?>[] getParamTypes() {
+        return paramTypes;
+    }
+
+    /**
+     * @param args arguments of the call, null if the method has no parameter
+     */
+    public abstract void writeArguments(Object[] args, ByteBuf out);
+
+    public abstract Object[] readArguments(ByteBuf in);
+
+    /**
+     * @param result return value of the call, never null
+     */
+    public abstract void writeResult(Object result, ByteBuf out);
+
+    public abstract Object readResult(ByteBuf in);
+
+    /**
+     * @return key that identifies an overload of a method inside its service
+     */
+    public static String key(String methodName, Class<?>[] paramTypes) {
+        StringBuilder key = new StringBuilder(methodName).append('(');
+        if (paramTypes != null) {
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (i > 0) {
+                    key.append(',');
+                }
+                key.append(paramTypes[i].getName());
+            }
+        }
+        return key.append(')').toString();
+    }
+}
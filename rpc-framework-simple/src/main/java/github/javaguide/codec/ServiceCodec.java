@@ -0,0 +1,22 @@
+package github.javaguide.codec;
+
+/**
+ * 一个服务接口所有方法的编解码器，由 rpc-framework-codegen 为 @RpcService/@RpcReference 引用的接口生成
+ * <p>
+ * The fingerprint is computed at compile time from the interface name and the way every method is encoded. Two
+ * peers only use the typed encoding for an interface when their fingerprints are equal.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 16:40:00
+ */
+public interface ServiceCodec {
+
+    String interfaceName();
+
+    int fingerprint();
+
+    /**
+     * @return codecs of all methods, the index in the array is the method id written on the wire
+     */
+    MethodCodec[] methods();
+}
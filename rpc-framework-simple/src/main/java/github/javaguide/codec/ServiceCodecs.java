@@ -0,0 +1,193 @@
+package github.javaguide.codec;
+
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.exception.SerializeException;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编译期生成的服务编解码器表，以及使用它们的 typed 报文格式
+ * <p>
+ * Generated codecs are found with {@link ServiceLoader}, the code generator lists them in
+ * {@code META-INF/services/github.javaguide.codec.ServiceCodec} of every module it runs in.
+ * <pre>
+ * request:  4B fingerprint | varint method id | requestId | group | version | arguments
+ * response: 4B fingerprint | varint method id | requestId | code | message | presence | result
+ * </pre>
+ * A peer learns that the other side has the same codec from the fingerprint carried by a generic request: the server
+ * answers it with a typed response, and the client sends typed requests for that interface on that channel from then
+ * on. Methods the codec does not know keep using the generic serializer.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 16:55:00
+ */
+@Slf4j
+public final class ServiceCodecs {
+
+    private static final AttributeKey<Set<Integer>> PEER_FINGERPRINTS_KEY = AttributeKey.valueOf("peerCodecFingerprints");
+
+    private final Map<String, Entry> entryByInterface = new HashMap<>();
+    private final Map<Integer, Entry> entryByFingerprint = new HashMap<>();
+
+    public ServiceCodecs() {
+        for (ServiceCodec serviceCodec : ServiceLoader.load(ServiceCodec.class, ServiceCodecs.class.getClassLoader())) {
+            Entry entry = new Entry(serviceCodec);
+            entryByInterface.put(serviceCodec.interfaceName(), entry);
+            entryByFingerprint.put(serviceCodec.fingerprint(), entry);
+            log.info("load service codec [{}] for [{}], fingerprint [{}]", serviceCodec.getClass().getName(),
+                    serviceCodec.interfaceName(), serviceCodec.fingerprint());
+        }
+    }
+
+    /**
+     * @return fingerprint of the codec generated for the interface, null if there is none
+     */
+    public Integer fingerprintOf(String interfaceName) {
+        Entry entry = entryByInterface.get(interfaceName);
+        return entry == null ? null : entry.serviceCodec.fingerprint();
+    }
+
+    /**
+     * @return true if the call can be written in the typed format
+     */
+    public boolean supports(RpcRequest rpcRequest) {
+        Entry entry = entryByInterface.get(rpcRequest.getInterfaceName());
+        return entry != null && entry.methodId(rpcRequest) >= 0;
+    }
+
+    /**
+     * @return true if the generic request comes from a peer with the same codec, so the answer can be typed
+     */
+    public boolean accepts(RpcRequest rpcRequest) {
+        return rpcRequest.getCodecFingerprint() != null
+                && rpcRequest.getCodecFingerprint().equals(fingerprintOf(rpcRequest.getInterfaceName()))
+                && supports(rpcRequest);
+    }
+
+    public static void markPeer(Channel channel, int fingerprint) {
+        Set<Integer> fingerprints = channel.attr(PEER_FINGERPRINTS_KEY).get();
+        if (fingerprints == null) {
+            Set<Integer> created = ConcurrentHashMap.newKeySet();
+            fingerprints = channel.attr(PEER_FINGERPRINTS_KEY).setIfAbsent(created);
+            if (fingerprints == null) {
+                fingerprints = created;
+            }
+        }
+        fingerprints.add(fingerprint);
+    }
+
+    public static boolean peerHas(Channel channel, int fingerprint) {
+        Set<Integer> fingerprints = channel.attr(PEER_FINGERPRINTS_KEY).get();
+        return fingerprints != null && fingerprints.contains(fingerprint);
+    }
+
+    public void writeRequest(RpcRequest rpcRequest, ByteBuf out) {
+        Entry entry = entryByInterface.get(rpcRequest.getInterfaceName());
+        int methodId = entry == null ? -1 : entry.methodId(rpcRequest);
+        if (methodId < 0) {
+            throw new SerializeException("no typed codec for " + rpcRequest.getInterfaceName() + "#" + rpcRequest.getMethodName());
+        }
+        out.writeInt(entry.serviceCodec.fingerprint());
+        CodecSupport.writeVarInt(out, methodId);
+        CodecSupport.writeString(out, rpcRequest.getRequestId());
+        CodecSupport.writeString(out, rpcRequest.getGroup());
+        CodecSupport.writeString(out, rpcRequest.getVersion());
+        entry.serviceCodec.methods()[methodId].writeArguments(rpcRequest.getParameters(), out);
+    }
+
+    public RpcRequest readRequest(ByteBuf in) {
+        Entry entry = entry(in.readInt());
+        MethodCodec methodCodec = entry.method(CodecSupport.readVarInt(in));
+        return RpcRequest.builder()
+                .requestId(CodecSupport.readString(in))
+                .group(CodecSupport.readString(in))
+                .version(CodecSupport.readString(in))
+                .interfaceName(entry.serviceCodec.interfaceName())
+                .methodName(methodCodec.getMethodName())
+                .paramTypes(methodCodec.getParamTypes())
+                .parameters(methodCodec.readArguments(in))
+                .build();
+    }
+
+    /**
+     * @param rpcRequest the request answered by the response
+     */
+    public void writeResponse(RpcResponse<?> rpcResponse, RpcRequest rpcRequest, ByteBuf out) {
+        Entry entry = entryByInterface.get(rpcRequest.getInterfaceName());
+        int methodId = entry == null ? -1 : entry.methodId(rpcRequest);
+        if (methodId < 0) {
+            throw new SerializeException("no typed codec for " + rpcRequest.getInterfaceName() + "#" + rpcRequest.getMethodName());
+        }
+        out.writeInt(entry.serviceCodec.fingerprint());
+        CodecSupport.writeVarInt(out, methodId);
+        CodecSupport.writeString(out, rpcResponse.getRequestId());
+        CodecSupport.writeInteger(out, rpcResponse.getCode());
+        // the standard message of the code is implied
+        String message = rpcResponse.getMessage();
+        CodecSupport.writeString(out, message != null && message.equals(RpcResponseCodeEnum.messageOf(rpcResponse.getCode())) ? null : message);
+        Object data = rpcResponse.getData();
+        if (CodecSupport.writePresence(out, data)) {
+            entry.serviceCodec.methods()[methodId].writeResult(data, out);
+        }
+    }
+
+    public RpcResponse<Object> readResponse(ByteBuf in) {
+        Entry entry = entry(in.readInt());
+        MethodCodec methodCodec = entry.method(CodecSupport.readVarInt(in));
+        RpcResponse<Object> rpcResponse = new RpcResponse<>();
+        rpcResponse.setRequestId(CodecSupport.readString(in));
+        rpcResponse.setCode(CodecSupport.readInteger(in));
+        String message = CodecSupport.readString(in);
+        rpcResponse.setMessage(message == null ? RpcResponseCodeEnum.messageOf(rpcResponse.getCode()) : message);
+        if (CodecSupport.readPresence(in)) {
+            rpcResponse.setData(methodCodec.readResult(in));
+        }
+        return rpcResponse;
+    }
+
+    private Entry entry(int fingerprint) {
+        Entry entry = entryByFingerprint.get(fingerprint);
+        if (entry == null) {
+            throw new SerializeException("unknown service codec fingerprint: " + fingerprint);
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+        private final ServiceCodec serviceCodec;
+        /**
+         * key: {@link MethodCodec#key(String, Class[])}, value: method id
+         */
+        private final Map<String, Integer> methodIds = new HashMap<>();
+
+        private Entry(ServiceCodec serviceCodec) {
+            this.serviceCodec = serviceCodec;
+            MethodCodec[] methods = serviceCodec.methods();
+            for (int i = 0; i < methods.length; i++) {
+                methodIds.put(MethodCodec.key(methods[i].getMethodName(), methods[i].getParamTypes()), i);
+            }
+        }
+
+        private int methodId(RpcRequest rpcRequest) {
+            return methodIds.getOrDefault(MethodCodec.key(rpcRequest.getMethodName(), rpcRequest.getParamTypes()), -1);
+        }
+
+        private MethodCodec method(int methodId) {
+            MethodCodec[] methods = serviceCodec.methods();
+            if (methodId < 0 || methodId >= methods.length) {
+                throw new SerializeException("unknown method id " + methodId + " of " + serviceCodec.interfaceName());
+            }
+            return methods[methodId];
+        }
+    }
+}
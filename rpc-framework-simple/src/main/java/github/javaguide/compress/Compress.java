@@ -1,6 +1,8 @@
 package github.javaguide.compress;
 
 import github.javaguide.extension.SPI;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * @author wangtao .
@@ -14,4 +16,42 @@ public interface Compress {
 
 
     byte[] decompress(byte[] bytes);
+
+    /**
+     * compress all readable bytes of in and append the result to out.
+     * the default implementation adapts {@link #compress(byte[])} for extensions that only work on byte arrays
+     *
+     * @param in  uncompressed data
+     * @param out target buffer
+     */
+    default void compress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        out.writeBytes(compress(bytes));
+    }
+
+    /**
+     * compress all readable bytes of in for a call of the given service and append the result to out.
+     * extensions that keep per service state (eg: preset dictionaries) override it, the rest ignore the service
+     *
+     * @param in             uncompressed data
+     * @param out            target buffer
+     * @param rpcServiceName service of the call, null if unknown
+     */
+    default void compress(ByteBuf in, ByteBuf out, String rpcServiceName) {
+        compress(in, out);
+    }
+
+    /**
+     * decompress all readable bytes of in and append the result to out.
+     * the default implementation adapts {@link #decompress(byte[])} for extensions that only work on byte arrays
+     *
+     * @param in  compressed data
+     * @param out target buffer
+     */
+    default void decompress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        out.writeBytes(decompress(bytes));
+    }
 }
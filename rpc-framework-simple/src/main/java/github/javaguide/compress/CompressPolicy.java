@@ -0,0 +1,123 @@
+package github.javaguide.compress;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcPropertiesUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按报文决定是否压缩
+ * <p>
+ * Bodies below {@code rpc.compress.threshold} bytes (default 1024, {@code rpc.compress.dictionary-threshold} with
+ * default 128 for the preset dictionary deflate) are never compressed. Above it the preferred algorithm is used,
+ * unless the compressed/raw ratio observed for the same method stays above {@code rpc.compress.poor-ratio}: such
+ * methods are sent uncompressed, with one probe every {@link #PROBE_INTERVAL} messages so that the decision follows
+ * changes in the payload.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 10:31:00
+ */
+@Slf4j
+public class CompressPolicy {
+
+    private static final int DEFAULT_THRESHOLD = 1024;
+    /**
+     * a preset dictionary pays off on much smaller bodies
+     */
+    private static final int DEFAULT_DICTIONARY_THRESHOLD = 128;
+    private static final double DEFAULT_POOR_RATIO = 0.9;
+    private static final int PROBE_INTERVAL = 64;
+    /**
+     * weight of a new sample in the moving average of the ratio
+     */
+    private static final double SAMPLE_WEIGHT = 0.125;
+
+    private final int threshold;
+    private final int dictionaryThreshold;
+    private final double poorRatio;
+    /**
+     * key: interface name, value: (key: method name, value: compression statistics of the method)
+     */
+    private final Map<String, Map<String, MethodStat>> methodStats = new ConcurrentHashMap<>();
+
+    public CompressPolicy() {
+        this(RpcPropertiesUtil.getInt(RpcConfigEnum.COMPRESS_THRESHOLD, DEFAULT_THRESHOLD),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.COMPRESS_DICTIONARY_THRESHOLD, DEFAULT_DICTIONARY_THRESHOLD),
+                RpcPropertiesUtil.getDouble(RpcConfigEnum.COMPRESS_POOR_RATIO, DEFAULT_POOR_RATIO));
+    }
+
+    /**
+     * @param threshold           bodies below are sent uncompressed
+     * @param dictionaryThreshold the same for {@link CompressTypeEnum#DEFLATE_DICT}
+     * @param poorRatio           methods compressing worse than this on average are sent uncompressed
+     */
+    public CompressPolicy(int threshold, int dictionaryThreshold, double poorRatio) {
+        this.threshold = threshold;
+        this.dictionaryThreshold = dictionaryThreshold;
+        this.poorRatio = poorRatio;
+        log.info("compress threshold [{}] bytes, [{}] bytes with dictionary, poor ratio [{}]", threshold, dictionaryThreshold, poorRatio);
+    }
+
+    /**
+     * @param interfaceName interface of the call, null if unknown
+     * @param methodName    method of the call, null if unknown
+     * @param preferred     compress type asked for by the message
+     * @param bodyLength    serialized body length
+     * @return the compress type to use and to write into the header
+     */
+    public byte select(String interfaceName, String methodName, byte preferred, int bodyLength) {
+        int minLength = preferred == CompressTypeEnum.DEFLATE_DICT.getCode() ? dictionaryThreshold : threshold;
+        if (preferred == CompressTypeEnum.NONE.getCode() || bodyLength < minLength) {
+            return CompressTypeEnum.NONE.getCode();
+        }
+        MethodStat stat = getStat(interfaceName, methodName, false);
+        if (stat != null && stat.ratio > poorRatio && stat.skipped.incrementAndGet() % PROBE_INTERVAL != 0) {
+            return CompressTypeEnum.NONE.getCode();
+        }
+        return preferred;
+    }
+
+    /**
+     * record how well a body of the method compressed
+     */
+    public void record(String interfaceName, String methodName, int rawLength, int compressedLength) {
+        MethodStat stat = getStat(interfaceName, methodName, true);
+        if (stat == null || rawLength <= 0) {
+            return;
+        }
+        double sample = (double) compressedLength / rawLength;
+        // racy read-modify-write is fine here, the average only steers a heuristic
+        double ratio = stat.ratio;
+        stat.ratio = ratio == 0 ? sample : ratio + (sample - ratio) * SAMPLE_WEIGHT;
+    }
+
+    private MethodStat getStat(String interfaceName, String methodName, boolean create) {
+        if (interfaceName == null || methodName == null) {
+            return null;
+        }
+        Map<String, MethodStat> stats = methodStats.get(interfaceName);
+        if (stats == null) {
+            if (!create) {
+                return null;
+            }
+            stats = methodStats.computeIfAbsent(interfaceName, k -> new ConcurrentHashMap<>());
+        }
+        MethodStat stat = stats.get(methodName);
+        if (stat == null && create) {
+            stat = stats.computeIfAbsent(methodName, k -> new MethodStat());
+        }
+        return stat;
+    }
+
+    private static final class MethodStat {
+        /**
+         * moving average of compressed/raw size, 0 before the first sample
+         */
+        private volatile double ratio;
+        private final AtomicInteger skipped = new AtomicInteger();
+    }
+}
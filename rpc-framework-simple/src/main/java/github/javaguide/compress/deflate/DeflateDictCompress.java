@@ -0,0 +1,148 @@
+package github.javaguide.compress.deflate;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.remoting.constants.RpcConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 使用预置字典的 Deflate 压缩，小报文也能压缩
+ * <p>
+ * The body is {@code [4B dictionary id][4B uncompressed length][raw deflate stream]}. The dictionary is picked by
+ * the rpcServiceName of the call (see {@link DeflateDictionaries}), its id travels in the body so the receiver
+ * inflates with the same dictionary or fails loudly when it does not have it.
+ * <p>
+ * Deflater and Inflater are reused per thread, a new one per message would cost more than compressing a small body.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 13:45:00
+ */
+public class DeflateDictCompress implements Compress {
+
+    private static final int BUFFER_SIZE = 1024 * 4;
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> INPUT_BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private static final ThreadLocal<byte[]> OUTPUT_BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private final DeflateDictionaries dictionaries;
+
+    public DeflateDictCompress() {
+        this.dictionaries = SingletonFactory.getInstance(DeflateDictionaries.class);
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ByteBuf out = Unpooled.buffer();
+        compress(Unpooled.wrappedBuffer(bytes), out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ByteBuf out = Unpooled.buffer();
+        decompress(Unpooled.wrappedBuffer(bytes), out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        compress(in, out, null);
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out, String rpcServiceName) {
+        int dictionaryId = dictionaries.idOf(rpcServiceName);
+        out.writeInt(dictionaryId);
+        out.writeInt(in.readableBytes());
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setDictionary(dictionaries.get(dictionaryId));
+        byte[] output = OUTPUT_BUFFER.get();
+        if (in.hasArray()) {
+            deflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+            in.skipBytes(in.readableBytes());
+        } else {
+            // direct buffer, feed the deflater chunk by chunk through a reused array
+            byte[] input = INPUT_BUFFER.get();
+            while (in.isReadable()) {
+                int n = Math.min(in.readableBytes(), input.length);
+                in.readBytes(input, 0, n);
+                deflater.setInput(input, 0, n);
+                while (!deflater.needsInput()) {
+                    out.writeBytes(output, 0, deflater.deflate(output));
+                }
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.writeBytes(output, 0, deflater.deflate(output));
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        int dictionaryId = in.readInt();
+        int length = in.readInt();
+        byte[] dictionary = dictionaries.get(dictionaryId);
+        if (dictionary == null) {
+            throw new RuntimeException("deflate-dict decompress error: unknown dictionary " + dictionaryId);
+        }
+        // the length comes from the peer, no body the decoder accepts decompresses to more than a frame
+        if (length < 0 || length > RpcConstants.MAX_FRAME_LENGTH) {
+            throw new RuntimeException("deflate-dict decompress error: invalid length " + length);
+        }
+        out.ensureWritable(length);
+        int start = out.writerIndex();
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setDictionary(dictionary);
+        byte[] input = INPUT_BUFFER.get();
+        byte[] output = OUTPUT_BUFFER.get();
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (!in.isReadable()) {
+                        throw new RuntimeException("deflate-dict decompress error: truncated body");
+                    }
+                    if (in.hasArray()) {
+                        inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+                        in.skipBytes(in.readableBytes());
+                    } else {
+                        int n = Math.min(in.readableBytes(), input.length);
+                        in.readBytes(input, 0, n);
+                        inflater.setInput(input, 0, n);
+                    }
+                }
+                int n = inflater.inflate(output);
+                if (n == 0 && inflater.needsDictionary()) {
+                    throw new RuntimeException("deflate-dict decompress error: unexpected dictionary request");
+                }
+                // stop a stream that inflates past the declared length before it is written out
+                if (out.writerIndex() - start + n > length) {
+                    throw new RuntimeException("deflate-dict decompress error: more than the declared " + length + " bytes");
+                }
+                out.writeBytes(output, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException("deflate-dict decompress error", e);
+        }
+        // give back what the inflater read past the end of the stream
+        in.readerIndex(in.readerIndex() - inflater.getRemaining());
+        if (out.writerIndex() - start != length) {
+            throw new RuntimeException("deflate-dict decompress error: expect " + length + " bytes but got " + (out.writerIndex() - start));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package github.javaguide.compress.deflate;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Deflate 预置字典表，按 rpcServiceName 选择字典，按字典 id 还原字典
+ * <p>
+ * Dictionaries are declared in every {@value #DICTIONARY_INDEX} file of the classpath, one
+ * {@code rpcServiceName=resource path} per line, the same way extensions are declared. The id of a dictionary is
+ * the CRC32 of its content, so both peers agree on it as long as they ship the same dictionary resource.
+ * Services without a trained dictionary use a built-in one made of the strings every rpc body carries.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 13:20:00
+ */
+@Slf4j
+public final class DeflateDictionaries {
+
+    public static final String DICTIONARY_INDEX = "META-INF/dictionaries/index";
+    /**
+     * deflate can only look 32 KB back, a longer dictionary is useless
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+    /**
+     * class and field names of the rpc dto, the most frequent ones last because closer matches are cheaper
+     */
+    private static final String DEFAULT_DICTIONARY = "java.util.HashMapjava.util.ArrayListjava.lang.Integerjava.lang.Long"
+            + "java.lang.Objectjava.lang.Classjava.lang.String[Ljava.lang.Class;[Ljava.lang.Object;"
+            + "github.javaguide.remoting.dto.RpcResponsecodemessagedataThe remote call is successful"
+            + "github.javaguide.remoting.dto.RpcRequestrequestIdinterfaceNamemethodNameparametersparamTypesversiongroup";
+
+    private final Map<Integer, byte[]> dictionaryById = new HashMap<>();
+    private final Map<String, Integer> idByService = new HashMap<>();
+    private final int defaultId;
+
+    public DeflateDictionaries() {
+        defaultId = register(DEFAULT_DICTIONARY.getBytes(StandardCharsets.UTF_8));
+        loadIndexes();
+    }
+
+    /**
+     * @param rpcServiceName service of the call, null if unknown
+     * @return id of the dictionary to compress the call with
+     */
+    public int idOf(String rpcServiceName) {
+        if (rpcServiceName == null) {
+            return defaultId;
+        }
+        return idByService.getOrDefault(rpcServiceName, defaultId);
+    }
+
+    /**
+     * @return the dictionary, null if no dictionary with this id is known
+     */
+    public byte[] get(int dictionaryId) {
+        return dictionaryById.get(dictionaryId);
+    }
+
+    public static int idOf(byte[] dictionary) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(dictionary, 0, dictionary.length);
+        return (int) crc32.getValue();
+    }
+
+    private int register(byte[] dictionary) {
+        int id = idOf(dictionary);
+        byte[] previous = dictionaryById.putIfAbsent(id, dictionary);
+        if (previous != null && !Arrays.equals(previous, dictionary)) {
+            throw new IllegalStateException("dictionary id collision: " + id);
+        }
+        return id;
+    }
+
+    private void loadIndexes() {
+        ClassLoader classLoader = DeflateDictionaries.class.getClassLoader();
+        try {
+            Enumeration<URL> urls = classLoader.getResources(DICTIONARY_INDEX);
+            while (urls.hasMoreElements()) {
+                loadIndex(classLoader, urls.nextElement());
+            }
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    private void loadIndex(ClassLoader classLoader, URL indexUrl) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(indexUrl.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // string after # is comment
+                int ci = line.indexOf('#');
+                if (ci >= 0) {
+                    line = line.substring(0, ci);
+                }
+                int ei = line.indexOf('=');
+                if (ei <= 0) {
+                    continue;
+                }
+                String rpcServiceName = line.substring(0, ei).trim();
+                String path = line.substring(ei + 1).trim();
+                byte[] dictionary = readResource(classLoader, path);
+                if (dictionary == null) {
+                    log.error("dictionary [{}] of service [{}] not found", path, rpcServiceName);
+                    continue;
+                }
+                int id = register(dictionary);
+                idByService.put(rpcServiceName, id);
+                log.info("load dictionary [{}] for service [{}], id [{}], [{}] bytes", path, rpcServiceName, id, dictionary.length);
+            }
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    private static byte[] readResource(ClassLoader classLoader, String path) throws IOException {
+        try (InputStream in = classLoader.getResourceAsStream(path)) {
+            if (in == null) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > -1) {
+                out.write(buffer, 0, n);
+            }
+            byte[] dictionary = out.toByteArray();
+            if (dictionary.length > MAX_DICTIONARY_SIZE) {
+                // only the tail is reachable by deflate
+                dictionary = Arrays.copyOfRange(dictionary, dictionary.length - MAX_DICTIONARY_SIZE, dictionary.length);
+            }
+            return dictionary;
+        }
+    }
+}
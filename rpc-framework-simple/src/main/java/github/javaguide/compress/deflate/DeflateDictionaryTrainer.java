@@ -0,0 +1,171 @@
+package github.javaguide.compress.deflate;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * 从采样的报文训练某个服务的 Deflate 预置字典
+ * <p>
+ * Samples are serialized rpc bodies of one rpcServiceName (eg: the output of {@code Serializer#serialize} for
+ * captured requests and responses), one file each. Byte strings that occur in many samples are collected and the
+ * highest scoring ones are placed at the end of the dictionary, where deflate reaches them with the shortest
+ * distances.
+ * <pre>
+ * java -cp ... github.javaguide.compress.deflate.DeflateDictionaryTrainer &lt;rpcServiceName&gt; &lt;sample dir&gt; &lt;resources dir&gt; [dictionary size]
+ * </pre>
+ * It writes {@code META-INF/dictionaries/<rpcServiceName>.dict} under the resources dir and appends it to
+ * {@value DeflateDictionaries#DICTIONARY_INDEX}. Both the client and the server need the two files on the classpath.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 14:10:00
+ */
+@Slf4j
+public final class DeflateDictionaryTrainer {
+
+    private static final int DEFAULT_DICTIONARY_SIZE = 8 * 1024;
+    /**
+     * length of the byte strings counted across samples, shorter strings gain nothing over a literal
+     */
+    private static final int SEGMENT_LENGTH = 8;
+
+    private DeflateDictionaryTrainer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: DeflateDictionaryTrainer <rpcServiceName> <sample dir> <resources dir> [dictionary size]");
+            return;
+        }
+        String rpcServiceName = args[0];
+        int dictionarySize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_DICTIONARY_SIZE;
+        List<byte[]> samples = new ArrayList<>();
+        File[] files = new File(args[1]).listFiles(File::isFile);
+        if (files == null || files.length == 0) {
+            System.err.println("no sample in " + args[1]);
+            return;
+        }
+        for (File file : files) {
+            samples.add(Files.readAllBytes(file.toPath()));
+        }
+        byte[] dictionary = train(samples, dictionarySize);
+
+        String resource = "META-INF/dictionaries/" + rpcServiceName + ".dict";
+        Path dictionaryPath = Paths.get(args[2], resource);
+        Files.createDirectories(dictionaryPath.getParent());
+        Files.write(dictionaryPath, dictionary);
+        Files.write(Paths.get(args[2], DeflateDictionaries.DICTIONARY_INDEX),
+                (rpcServiceName + "=" + resource + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        long raw = 0;
+        long plain = 0;
+        long withDictionary = 0;
+        for (byte[] sample : samples) {
+            raw += sample.length;
+            plain += deflatedLength(sample, null);
+            withDictionary += deflatedLength(sample, dictionary);
+        }
+        System.out.printf("dictionary of %s: id %d, %d bytes, written to %s%n", rpcServiceName,
+                DeflateDictionaries.idOf(dictionary), dictionary.length, dictionaryPath);
+        System.out.printf("%d samples, %d bytes raw, %d bytes deflated, %d bytes deflated with the dictionary%n",
+                samples.size(), raw, plain, withDictionary);
+    }
+
+    /**
+     * @param samples        serialized bodies of one service
+     * @param dictionarySize maximum dictionary size, capped at {@link DeflateDictionaries#MAX_DICTIONARY_SIZE}
+     * @return the dictionary, the most valuable strings last
+     */
+    public static byte[] train(List<byte[]> samples, int dictionarySize) {
+        dictionarySize = Math.min(dictionarySize, DeflateDictionaries.MAX_DICTIONARY_SIZE);
+        // in how many samples every segment occurs
+        Map<String, Integer> sampleCounts = new HashMap<>();
+        for (byte[] sample : samples) {
+            String text = new String(sample, StandardCharsets.ISO_8859_1);
+            Map<String, Boolean> seen = new HashMap<>();
+            for (int i = 0; i + SEGMENT_LENGTH <= text.length(); i++) {
+                String segment = text.substring(i, i + SEGMENT_LENGTH);
+                if (seen.put(segment, Boolean.TRUE) == null) {
+                    sampleCounts.merge(segment, 1, Integer::sum);
+                }
+            }
+        }
+        int minCount = Math.max(2, samples.size() / 10);
+        // merge runs of frequent segments into candidate strings, scored by how many bytes they would cover
+        Map<String, Long> candidates = new LinkedHashMap<>();
+        for (byte[] sample : samples) {
+            String text = new String(sample, StandardCharsets.ISO_8859_1);
+            int runStart = -1;
+            long runScore = 0;
+            for (int i = 0; i + SEGMENT_LENGTH <= text.length() + 1; i++) {
+                int count = i + SEGMENT_LENGTH <= text.length()
+                        ? sampleCounts.getOrDefault(text.substring(i, i + SEGMENT_LENGTH), 0) : 0;
+                if (count >= minCount) {
+                    if (runStart < 0) {
+                        runStart = i;
+                        runScore = 0;
+                    }
+                    runScore += count;
+                } else if (runStart >= 0) {
+                    candidates.merge(text.substring(runStart, i - 1 + SEGMENT_LENGTH), runScore, Math::max);
+                    runStart = -1;
+                }
+            }
+        }
+        List<Map.Entry<String, Long>> ranked = new ArrayList<>(candidates.entrySet());
+        ranked.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        List<String> chosen = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Long> candidate : ranked) {
+            String text = candidate.getKey();
+            if (content.length() + text.length() > dictionarySize) {
+                continue;
+            }
+            if (content.indexOf(text) < 0) {
+                chosen.add(text);
+                content.append(text);
+            }
+        }
+        Collections.reverse(chosen);
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(content.length());
+        for (String text : chosen) {
+            byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+            dictionary.write(bytes, 0, bytes.length);
+        }
+        log.info("trained a [{}] bytes dictionary from [{}] samples", dictionary.size(), samples.size());
+        return dictionary.toByteArray();
+    }
+
+    private static int deflatedLength(byte[] sample, byte[] dictionary) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, sample.length * 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                length += deflater.deflate(buffer);
+            }
+            return length;
+        } finally {
+            deflater.end();
+        }
+    }
+}
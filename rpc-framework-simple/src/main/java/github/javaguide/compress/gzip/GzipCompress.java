@@ -1,6 +1,9 @@
 package github.javaguide.compress.gzip;
 
 import github.javaguide.compress.Compress;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -51,4 +54,28 @@ public class GzipCompress implements Compress {
             throw new RuntimeException("gzip decompress error", e);
         }
     }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        // deflate straight from the source buffer into the target buffer, no intermediate byte[] copies
+        try (GZIPOutputStream gzip = new GZIPOutputStream(new ByteBufOutputStream(out), BUFFER_SIZE)) {
+            in.readBytes(gzip, in.readableBytes());
+            gzip.finish();
+        } catch (IOException e) {
+            throw new RuntimeException("gzip compress error", e);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteBufInputStream(in), BUFFER_SIZE)) {
+            int n;
+            do {
+                // keep inflating until the end of the gzip stream
+                n = out.writeBytes(gunzip, BUFFER_SIZE);
+            } while (n > -1);
+        } catch (IOException e) {
+            throw new RuntimeException("gzip decompress error", e);
+        }
+    }
 }
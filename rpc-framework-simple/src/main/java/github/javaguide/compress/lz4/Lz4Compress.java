@@ -0,0 +1,208 @@
+package github.javaguide.compress.lz4;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.remoting.constants.RpcConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+/**
+ * 纯 Java 实现的 LZ4 块压缩，不依赖第三方库
+ * <p>
+ * The body is a 4 byte uncompressed length followed by one block in the LZ4 block format: sequences of
+ * {@code token, literals, 2 byte little-endian offset, match length}. Matches are found greedily through a
+ * 4096 entry hash table of 4 byte prefixes. It trades some ratio against gzip for a much cheaper compression,
+ * which suits the 1 KB - 64 KB bodies of rpc calls.
+ * <p>
+ * Both directions read and write the {@link ByteBuf}s by index, so heap and direct (pooled) buffers work
+ * without intermediate arrays.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 11:05:00
+ */
+public class Lz4Compress implements Compress {
+
+    private static final int MIN_MATCH = 4;
+    /**
+     * the last 5 bytes are always literals
+     */
+    private static final int LAST_LITERALS = 5;
+    /**
+     * the last match must start at least 12 bytes before the end of the input
+     */
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 0xFFFF;
+    private static final int RUN_MASK = 0x0F;
+    private static final int HASH_LOG = 12;
+    /**
+     * search step grows by one every 64 bytes without a match, so incompressible data is skipped fast
+     */
+    private static final int SKIP_TRIGGER = 6;
+
+    /**
+     * positions relative to the start of the input. Stale entries left by a previous call are harmless,
+     * every candidate is bounds checked and compared before use, so the table never needs clearing
+     */
+    private static final ThreadLocal<int[]> HASH_TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ByteBuf out = Unpooled.buffer(maxCompressedLength(bytes.length));
+        compress(Unpooled.wrappedBuffer(bytes), out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        ByteBuf out = Unpooled.buffer();
+        decompress(Unpooled.wrappedBuffer(bytes), out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int base = in.readerIndex();
+        int length = in.readableBytes();
+        int end = base + length;
+        out.ensureWritable(maxCompressedLength(length));
+        out.writeInt(length);
+        int anchor = base;
+        if (length > MF_LIMIT) {
+            int[] hashTable = HASH_TABLE.get();
+            int matchLimit = end - LAST_LITERALS;
+            int mfLimit = end - MF_LIMIT;
+            int pos = base;
+            while (pos < mfLimit) {
+                int sequence = in.getInt(pos);
+                int h = hash(sequence);
+                int ref = base + hashTable[h];
+                hashTable[h] = pos - base;
+                if (ref < base || ref >= pos || pos - ref > MAX_DISTANCE || in.getInt(ref) != sequence) {
+                    pos += 1 + ((pos - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+                // extend the match backwards over the pending literals, then forwards
+                while (pos > anchor && ref > base && in.getByte(pos - 1) == in.getByte(ref - 1)) {
+                    pos--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (pos + matchLength < matchLimit && in.getByte(pos + matchLength) == in.getByte(ref + matchLength)) {
+                    matchLength++;
+                }
+                int tokenIndex = writeLiterals(in, anchor, pos - anchor, out);
+                out.writeShortLE(pos - ref);
+                out.setByte(tokenIndex, out.getUnsignedByte(tokenIndex) | lengthNibble(matchLength - MIN_MATCH));
+                writeExtraLength(matchLength - MIN_MATCH, out);
+                pos += matchLength;
+                anchor = pos;
+            }
+        }
+        writeLiterals(in, anchor, end - anchor, out);
+        in.readerIndex(end);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new RuntimeException("lz4 decompress error: negative length " + length);
+        }
+        // the length comes from the peer, no body the decoder accepts decompresses to more than a frame
+        if (length > RpcConstants.MAX_FRAME_LENGTH) {
+            throw new RuntimeException("lz4 decompress error: length " + length + " exceeds " + RpcConstants.MAX_FRAME_LENGTH);
+        }
+        out.ensureWritable(length);
+        int start = out.writerIndex();
+        int end = start + length;
+        while (true) {
+            int token = in.readUnsignedByte();
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                literalLength += readExtraLength(in);
+            }
+            if (out.writerIndex() + literalLength > end) {
+                throw new RuntimeException("lz4 decompress error: literals overflow the declared length");
+            }
+            out.writeBytes(in, literalLength);
+            if (out.writerIndex() == end) {
+                // the last sequence carries literals only
+                break;
+            }
+            int offset = in.readUnsignedShortLE();
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                matchLength += readExtraLength(in);
+            }
+            matchLength += MIN_MATCH;
+            int ref = out.writerIndex() - offset;
+            if (offset == 0 || ref < start || out.writerIndex() + matchLength > end) {
+                throw new RuntimeException("lz4 decompress error: malformed match at " + (out.writerIndex() - start));
+            }
+            if (offset >= matchLength) {
+                out.writeBytes(out, ref, matchLength);
+            } else {
+                // the match overlaps the bytes it produces (a run), copy one byte at a time
+                for (int i = 0; i < matchLength; i++) {
+                    out.writeByte(out.getByte(ref + i));
+                }
+            }
+        }
+    }
+
+    /**
+     * upper bound of the output for an input of the given length, including the length prefix
+     */
+    static int maxCompressedLength(int length) {
+        return 4 + length + length / 255 + 16;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    /**
+     * write the token and the literals of a sequence, the match length nibble of the token is left 0
+     *
+     * @return index of the token in out
+     */
+    private static int writeLiterals(ByteBuf in, int index, int length, ByteBuf out) {
+        int tokenIndex = out.writerIndex();
+        out.writeByte(lengthNibble(length) << 4);
+        writeExtraLength(length, out);
+        out.writeBytes(in, index, length);
+        return tokenIndex;
+    }
+
+    private static int lengthNibble(int length) {
+        return Math.min(length, RUN_MASK);
+    }
+
+    private static void writeExtraLength(int length, ByteBuf out) {
+        if (length < RUN_MASK) {
+            return;
+        }
+        int remaining = length - RUN_MASK;
+        while (remaining >= 255) {
+            out.writeByte(255);
+            remaining -= 255;
+        }
+        out.writeByte(remaining);
+    }
+
+    private static int readExtraLength(ByteBuf in) {
+        int length = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            length += b;
+        } while (b == 255);
+        return length;
+    }
+}
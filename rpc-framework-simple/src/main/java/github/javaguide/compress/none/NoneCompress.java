@@ -0,0 +1,39 @@
+package github.javaguide.compress.none;
+
+import github.javaguide.compress.Compress;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 不压缩，小报文或压缩效果差的报文直接原样传输
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 10:20:00
+ */
+public class NoneCompress implements Compress {
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        return bytes;
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null) {
+            throw new NullPointerException("bytes is null");
+        }
+        return bytes;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        out.writeBytes(in);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        out.writeBytes(in);
+    }
+}
@@ -0,0 +1,48 @@
+package github.javaguide.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * 客户端针对引用服务的单个方法的配置，对应 {@link github.javaguide.annotation.RpcMethod}
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 23:40:00
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+@ToString
+public class RpcMethodConfig {
+    /**
+     * timeout of a call in milliseconds, 0 uses the timeout of the reference
+     */
+    private long timeout;
+
+    /**
+     * whether running the method more than once for one call does no harm
+     */
+    private boolean idempotent;
+
+    /**
+     * send a copy of a slow call to a second provider, only applies to idempotent methods
+     */
+    private boolean hedge;
+
+    /**
+     * milliseconds without a response before the copy is sent, 0 uses the p95 latency observed so far
+     */
+    private long hedgeDelay;
+
+    /**
+     * max number of retries of a call that got no response, only applies to idempotent methods, null uses the
+     * retries of the reference
+     */
+    private Integer retries;
+}
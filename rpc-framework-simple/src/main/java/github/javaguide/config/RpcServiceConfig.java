@@ -7,6 +7,8 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.util.Map;
+
 /**
  * RPC服务配置类，包含服务版本号，组别，服务名称
  * @author shuang.kou
@@ -38,10 +40,64 @@ public class RpcServiceConfig {
      */
     private String data = "";
 
+    /**
+     * client only: timeout of a call in milliseconds, 0 uses rpc.client.timeout-millis
+     */
+    private long timeout;
+
+    /**
+     * client only: send a copy of a slow call to a second provider, for every idempotent method
+     */
+    private boolean hedge;
+
+    /**
+     * client only: max number of retries of a call that got no response, for every idempotent method
+     */
+    private int retries;
+
+    /**
+     * client only: key: method name, value: its settings, override those of the reference
+     */
+    private Map<String, RpcMethodConfig> methods;
+
     public String getRpcServiceName() {
         return this.getServiceName() + this.getGroup() + this.getVersion();
     }
 
+    /**
+     * @return the timeout of the method in milliseconds, 0 if neither the method nor the reference set one
+     */
+    public long timeoutOf(String methodName) {
+        RpcMethodConfig method = methodOf(methodName);
+        return method != null && method.getTimeout() > 0 ? method.getTimeout() : timeout;
+    }
+
+    /**
+     * @return the settings of the method, null if it has none of its own
+     */
+    public RpcMethodConfig methodOf(String methodName) {
+        return methods == null ? null : methods.get(methodName);
+    }
+
+    /**
+     * @return whether slow calls of the method get a copy sent to a second provider
+     */
+    public boolean isHedged(String methodName) {
+        RpcMethodConfig method = methodOf(methodName);
+        return method != null && method.isIdempotent() && (method.isHedge() || hedge);
+    }
+
+    /**
+     * @return max number of retries of a call of the method, 0 unless it is idempotent
+     */
+    public int retriesOf(String methodName) {
+        RpcMethodConfig method = methodOf(methodName);
+        if (method == null || !method.isIdempotent()) {
+            return 0;
+        }
+        return method.getRetries() != null && method.getRetries() >= 0 ? method.getRetries() : retries;
+    }
+
     public String getServiceName() {
         return this.service.getClass().getInterfaces()[0].getCanonicalName();
     }
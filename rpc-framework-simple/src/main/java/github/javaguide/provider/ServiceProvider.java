@@ -21,6 +21,12 @@ public interface ServiceProvider {
      */
     Object getService(String rpcServiceName);
 
+    /**
+     * @param rpcServiceName rpc service name
+     * @return true if the service object lives in this process
+     */
+    boolean hasService(String rpcServiceName);
+
     /**
      * @param rpcServiceConfig rpc service related attributes
      */
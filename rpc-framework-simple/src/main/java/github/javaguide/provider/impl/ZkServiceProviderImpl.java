@@ -68,6 +68,15 @@ public class ZkServiceProviderImpl implements ServiceProvider {
         return service;
     }
 
+    /**
+     * 服务是否在本进程中，客户端据此决定是否直接调用
+     * @param rpcServiceName rpc service name
+     */
+    @Override
+    public boolean hasService(String rpcServiceName) {
+        return serviceMap.containsKey(rpcServiceName);
+    }
+
     /**
      * 服务发布，即将服务注册到zookeeper
      * @param rpcServiceConfig rpc service related attributes
@@ -1,22 +1,39 @@
 package github.javaguide.proxy;
 
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.exception.RpcException;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.factory.SingletonFactory;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.HedgePolicy;
+import github.javaguide.remoting.transport.RetryPolicy;
 import github.javaguide.remoting.transport.RpcRequestTransport;
-import github.javaguide.remoting.transport.netty.client.NettyRpcClient;
-import github.javaguide.remoting.transport.socket.SocketRpcClient;
+import github.javaguide.remoting.transport.TokenBudget;
+import github.javaguide.remoting.transport.injvm.InJvmRpcClient;
+import github.javaguide.utils.RpcPropertiesUtil;
+import github.javaguide.utils.RuntimeUtil;
+import github.javaguide.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import io.netty.util.Timeout;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  * Dynamic proxy class.
@@ -30,6 +47,21 @@ import java.util.concurrent.CompletableFuture;
 public class RpcClientProxy implements InvocationHandler { // 实现了InvocationHandler接口的代理对象
 
     private static final String INTERFACE_NAME = "interfaceName";
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+    /**
+     * 所有对冲方法共用的预算，服务提供者整体变慢时对冲不会成倍放大负载
+     */
+    private static final TokenBudget HEDGE_BUDGET = new TokenBudget(
+            RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_HEDGE_BUDGET_PERCENT, 10),
+            RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_HEDGE_BUDGET_BURST, 10));
+    /**
+     * 所有重试方法共用的预算，服务提供者整体出问题时重试不会成倍放大负载
+     */
+    private static final TokenBudget RETRY_BUDGET = new TokenBudget(
+            RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_RETRY_BUDGET_PERCENT, 10),
+            RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_RETRY_BUDGET_BURST, 10));
+    private static final long RETRY_BACKOFF_MILLIS = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_RETRY_BACKOFF_MILLIS, 10);
+    private static final long RETRY_MAX_BACKOFF_MILLIS = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_RETRY_MAX_BACKOFF_MILLIS, 1000);
 
     /**
      * Used to send requests to the server.And there are two implementations: socket and netty
@@ -37,16 +69,42 @@ public class RpcClientProxy implements InvocationHandler { // 实现了Invocatio
      */
     private final RpcRequestTransport rpcRequestTransport;
     private final RpcServiceConfig rpcServiceConfig;
+    /**
+     * 服务在本进程中注册时直接调用，rpc.injvm=false 时为 null
+     */
+    private final InJvmRpcClient inJvmRpcClient;
+    /**
+     * 完成异步方法返回的 future 的线程池，rpc.client.callback-threads=0 时为 null，直接在读到响应的 I/O 线程上完成
+     */
+    private final Executor callbackExecutor;
+    private final RpcTimer rpcTimer;
+    /**
+     * timeout of calls whose reference and method set none, 0 waits forever
+     */
+    private final long defaultTimeoutMillis;
+    /**
+     * key: name of a hedged method, value: its policy that keeps track of its latency
+     */
+    private final Map<String, HedgePolicy> hedgePolicies = new ConcurrentHashMap<>();
+    /**
+     * key: name of a retried method, value: its policy
+     */
+    private final Map<String, RetryPolicy> retryPolicies = new ConcurrentHashMap<>();
 
     public RpcClientProxy(RpcRequestTransport rpcRequestTransport, RpcServiceConfig rpcServiceConfig) {
         this.rpcRequestTransport = rpcRequestTransport;
         this.rpcServiceConfig = rpcServiceConfig;
+        this.inJvmRpcClient = RpcPropertiesUtil.getBoolean(RpcConfigEnum.INJVM, true)
+                ? (InJvmRpcClient) ExtensionLoader.getExtensionLoader(RpcRequestTransport.class).getExtension("injvm") : null;
+        this.callbackExecutor = callbackExecutor(
+                RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_CALLBACK_THREADS, RuntimeUtil.cpus()));
+        this.rpcTimer = SingletonFactory.getInstance(RpcTimer.class);
+        this.defaultTimeoutMillis = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_TIMEOUT_MILLIS, DEFAULT_TIMEOUT_MILLIS);
     }
 
 
     public RpcClientProxy(RpcRequestTransport rpcRequestTransport) {
-        this.rpcRequestTransport = rpcRequestTransport;
-        this.rpcServiceConfig = new RpcServiceConfig();
+        this(rpcRequestTransport, new RpcServiceConfig());
     }
 
     /**
@@ -74,24 +132,116 @@ public class RpcClientProxy implements InvocationHandler { // 实现了Invocatio
                 .parameters(args)
                 .interfaceName(method.getDeclaringClass().getName())
                 .paramTypes(method.getParameterTypes())
-                .requestId(UUID.randomUUID().toString())
                 .group(rpcServiceConfig.getGroup())
                 .version(rpcServiceConfig.getVersion())
                 .build();
         RpcResponse<Object> rpcResponse = null; // 服务端的答复对象
-        if (rpcRequestTransport instanceof NettyRpcClient) { // Netty实现的客户端
-            CompletableFuture<RpcResponse<Object>> completableFuture = (CompletableFuture<RpcResponse<Object>>) rpcRequestTransport.sendRpcRequest(rpcRequest);
-            rpcResponse = completableFuture.get(); // 阻塞权交给了代理类的调用rpc方法（本方法）线程中，而不是阻塞 发送请求的 eventloop 线程
+        // 服务就在本进程中时不经过网络，直接调用
+        RpcRequestTransport transport = inJvmRpcClient != null && inJvmRpcClient.isLocal(rpcRequest) ? inJvmRpcClient : rpcRequestTransport;
+        Object result = transport == rpcRequestTransport ? send(rpcRequest, method.getName()) : transport.sendRpcRequest(rpcRequest);
+        if (result instanceof CompletableFuture) {
+            long timeoutMillis = rpcServiceConfig.timeoutOf(method.getName());
+            expireAfter((CompletableFuture<RpcResponse<Object>>) result, rpcRequest, timeoutMillis > 0 ? timeoutMillis : defaultTimeoutMillis);
         }
-        if (rpcRequestTransport instanceof SocketRpcClient) { // socket实现的客户端
-            rpcResponse = (RpcResponse<Object>) rpcRequestTransport.sendRpcRequest(rpcRequest);
+        if (CompletionStage.class.isAssignableFrom(method.getReturnType())) { // 异步方法，不阻塞调用线程
+            CompletableFuture<RpcResponse<Object>> completableFuture = result instanceof CompletableFuture
+                    ? (CompletableFuture<RpcResponse<Object>>) result : CompletableFuture.completedFuture((RpcResponse<Object>) result);
+            return resultOf(completableFuture, rpcRequest);
+        }
+        if (result instanceof CompletableFuture) { // Netty、共享内存实现的客户端
+            CompletableFuture<RpcResponse<Object>> completableFuture = (CompletableFuture<RpcResponse<Object>>) result;
+            try {
+                rpcResponse = completableFuture.get(); // 阻塞权交给了代理类的调用rpc方法（本方法）线程中，而不是阻塞 发送请求的 eventloop 线程
+            } catch (ExecutionException e) {
+                throw e.getCause(); // 超时、连接断开等，抛出原本的异常
+            }
+        } else { // socket实现的客户端、进程内调用
+            rpcResponse = (RpcResponse<Object>) result;
         }
         this.check(rpcResponse, rpcRequest);
         return rpcResponse.getData();
     }
 
     /**
-     * 检查返回的response，包含对比请求ID与状态码
+     * sends the request over the network, hedged and retried if the method is idempotent and asks for it
+     */
+    private Object send(RpcRequest rpcRequest, String methodName) {
+        HedgePolicy hedgePolicy = rpcServiceConfig.isHedged(methodName)
+                ? hedgePolicies.computeIfAbsent(methodName, name -> new HedgePolicy(rpcServiceConfig.methodOf(name).getHedgeDelay(), HEDGE_BUDGET)) : null;
+        int retries = rpcServiceConfig.retriesOf(methodName);
+        RetryPolicy retryPolicy = retries > 0
+                ? retryPolicies.computeIfAbsent(methodName, name -> new RetryPolicy(retries, RETRY_BACKOFF_MILLIS, RETRY_MAX_BACKOFF_MILLIS, RETRY_BUDGET)) : null;
+        if (hedgePolicy == null && retryPolicy == null) {
+            return rpcRequestTransport.sendRpcRequest(rpcRequest);
+        }
+        return rpcRequestTransport.sendRpcRequest(rpcRequest, hedgePolicy, retryPolicy);
+    }
+
+    /**
+     * fails the future with a timeout unless the response arrives first, the transport then frees its in-flight entry
+     */
+    private void expireAfter(CompletableFuture<RpcResponse<Object>> responseFuture, RpcRequest rpcRequest, long timeoutMillis) {
+        if (timeoutMillis <= 0 || responseFuture.isDone()) {
+            return;
+        }
+        Timeout timeout = rpcTimer.schedule(t -> responseFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                INTERFACE_NAME + ":" + rpcRequest.getInterfaceName() + "." + rpcRequest.getMethodName() + " after " + timeoutMillis + "ms")),
+                timeoutMillis, TimeUnit.MILLISECONDS);
+        responseFuture.whenComplete((rpcResponse, throwable) -> timeout.cancel());
+    }
+
+    /**
+     * @return the future returned to the caller of an async method, completed with the data of the response
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object> resultOf(CompletableFuture<RpcResponse<Object>> responseFuture, RpcRequest rpcRequest) {
+        CompletableFuture<Object> resultFuture = new CompletableFuture<>();
+        BiConsumer<RpcResponse<Object>, Throwable> completion = (rpcResponse, throwable) -> {
+            if (throwable != null) {
+                resultFuture.completeExceptionally(throwable);
+                return;
+            }
+            try {
+                this.check(rpcResponse, rpcRequest);
+            } catch (RpcException e) {
+                resultFuture.completeExceptionally(e);
+                return;
+            }
+            Object data = rpcResponse.getData();
+            if (data instanceof CompletionStage) { // 进程内调用按引用返回了服务自己的 future
+                ((CompletionStage<Object>) data).whenComplete((value, cause) -> {
+                    if (cause != null) {
+                        resultFuture.completeExceptionally(cause);
+                    } else {
+                        resultFuture.complete(value);
+                    }
+                });
+            } else {
+                resultFuture.complete(data);
+            }
+        };
+        if (callbackExecutor == null) {
+            responseFuture.whenComplete(completion);
+        } else {
+            responseFuture.whenCompleteAsync(completion, callbackExecutor);
+        }
+        return resultFuture;
+    }
+
+    private static Executor callbackExecutor(int threads) {
+        if (threads <= 0) {
+            return null;
+        }
+        CustomThreadPoolConfig customThreadPoolConfig = new CustomThreadPoolConfig();
+        customThreadPoolConfig.setCorePoolSize(threads);
+        customThreadPoolConfig.setMaximumPoolSize(threads);
+        // 回调不能被拒绝，否则调用方的 future 永远不会完成
+        customThreadPoolConfig.setWorkQueue(new LinkedBlockingQueue<>());
+        return ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(customThreadPoolConfig, "rpc-client-callback", true);
+    }
+
+    /**
+     * 检查返回的response的状态码。响应由报文头中的请求ID交给对应的调用，无需再比对
      * @param rpcResponse
      * @param rpcRequest
      */
@@ -100,10 +250,6 @@ public class RpcClientProxy implements InvocationHandler { // 实现了Invocatio
             throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
 
-        if (!rpcRequest.getRequestId().equals(rpcResponse.getRequestId())) { // 比对请求与响应的ID
-            throw new RpcException(RpcErrorMessageEnum.REQUEST_NOT_MATCH_RESPONSE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
-        }
-
         if (rpcResponse.getCode() == null || !rpcResponse.getCode().equals(RpcResponseCodeEnum.SUCCESS.getCode())) { // 判断响应码是否成功
             throw new RpcException(RpcErrorMessageEnum.SERVICE_INVOCATION_FAILURE, INTERFACE_NAME + ":" + rpcRequest.getInterfaceName());
         }
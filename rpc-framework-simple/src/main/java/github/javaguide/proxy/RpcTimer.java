@@ -0,0 +1,37 @@
+package github.javaguide.proxy;
+
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端共享的时间轮，所有调用的超时都挂在同一个 HashedWheelTimer 上
+ * <p>
+ * Scheduling and cancelling a timeout is O(1) and needs no thread per call. The wheel ticks every 10 ms, so a
+ * timeout fires up to one tick late.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 21:10:00
+ */
+public final class RpcTimer {
+
+    private static final long TICK_MILLIS = 10;
+    private static final int TICKS_PER_WHEEL = 512;
+
+    private final HashedWheelTimer timer;
+
+    public RpcTimer() {
+        this.timer = new HashedWheelTimer(ThreadPoolFactoryUtil.createThreadFactory("rpc-timer", true),
+                TICK_MILLIS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+    }
+
+    /**
+     * @return the handle to cancel the task with
+     */
+    public Timeout schedule(TimerTask task, long delay, TimeUnit unit) {
+        return timer.newTimeout(task, delay, unit);
+    }
+}
@@ -0,0 +1,174 @@
+package github.javaguide.registry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 单个服务提供者的熔断器：最近的调用中失败或过慢的比例过高时，暂时把它从负载均衡中剔除
+ * <p>
+ * The outcome of every call is written to a lock-free ring of the last {@code window} calls. Once the share of bad
+ * calls reaches the threshold the breaker opens and the provider is excluded for an interval that doubles with
+ * every consecutive trip. After the interval the next call routed to the provider is the probe, and it is excluded
+ * again until the probe completes: a good probe closes the breaker and starts a new window, a bad one opens it again.
+ * A probe that has not completed within the longest interval counts as a bad one, so probing resumes after it.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月18日 00:50:00
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    /**
+     * a probe is in flight
+     */
+    private static final int HALF_OPEN = 2;
+
+    private final String address;
+    private final ProviderAvailability providerAvailability;
+    private final int window;
+    private final int minCalls;
+    private final int failureRatePercent;
+    private final long slowCallNanos;
+    private final long ejectionNanos;
+    private final long maxEjectionNanos;
+
+    /**
+     * outcomes of the last window calls, indexed by the number of calls recorded: latency in nanoseconds << 1 | 1 if
+     * the call failed
+     */
+    private final AtomicLongArray outcomes;
+    private final AtomicLong recorded = new AtomicLong();
+    /**
+     * calls recorded before the breaker last closed, they do not count any more
+     */
+    private volatile long windowStart;
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private volatile long openUntilNanos;
+    /**
+     * when the probe in flight counts as lost, written before the breaker turns half open
+     */
+    private volatile long probeDeadlineNanos;
+    /**
+     * number of consecutive trips, the ejection interval doubles with each
+     */
+    private volatile int trips;
+
+    /**
+     * @param address            provider address host:port
+     * @param window             number of recent calls the failure rate is computed over
+     * @param minCalls           calls needed in the window before the breaker may open
+     * @param failureRatePercent share of bad calls in the window that opens the breaker
+     * @param slowCallMillis     calls slower than this count as bad, 0 to judge calls by their outcome only
+     * @param ejectionMillis     how long the provider is excluded after the first trip
+     * @param maxEjectionMillis  upper bound of the interval
+     */
+    public CircuitBreaker(String address, ProviderAvailability providerAvailability, int window, int minCalls,
+                          int failureRatePercent, long slowCallMillis, long ejectionMillis, long maxEjectionMillis) {
+        this.address = address;
+        this.providerAvailability = providerAvailability;
+        // 环的大小取 2 的幂
+        this.window = Integer.highestOneBit(Math.max(2, window) - 1) << 1;
+        this.minCalls = Math.max(1, Math.min(minCalls, this.window));
+        this.failureRatePercent = Math.max(1, failureRatePercent);
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, slowCallMillis));
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ejectionMillis));
+        this.maxEjectionNanos = Math.max(ejectionNanos, TimeUnit.MILLISECONDS.toNanos(maxEjectionMillis));
+        this.outcomes = new AtomicLongArray(this.window);
+    }
+
+    /**
+     * a call is about to be sent to the provider
+     *
+     * @return whether it is the probe of an open breaker, its outcome has to be passed to {@link #record}
+     */
+    public boolean onSend() {
+        if (state.get() == HALF_OPEN && probeDeadlineNanos - System.nanoTime() <= 0) {
+            log.warn("probe of circuit breaker of [{}] got no outcome within [{}]ms", address, TimeUnit.NANOSECONDS.toMillis(maxEjectionNanos));
+            open(HALF_OPEN);
+            return false;
+        }
+        if (state.get() != OPEN || openUntilNanos - System.nanoTime() > 0) {
+            return false;
+        }
+        long probeDeadline = System.nanoTime() + maxEjectionNanos;
+        probeDeadlineNanos = probeDeadline;
+        if (!state.compareAndSet(OPEN, HALF_OPEN)) {
+            return false;
+        }
+        // 探测期间其他调用仍然避开它
+        providerAvailability.exclude(address, probeDeadline);
+        log.info("circuit breaker of [{}] half open, probing", address);
+        return true;
+    }
+
+    /**
+     * @param probe        what {@link #onSend()} returned for the call
+     * @param latencyNanos time until the response or the failure
+     * @param failed       whether the call failed, eg: error response, timeout, connection closed
+     */
+    public void record(boolean probe, long latencyNanos, boolean failed) {
+        boolean bad = failed || slowCallNanos > 0 && latencyNanos > slowCallNanos;
+        if (probe) {
+            if (bad) {
+                open(HALF_OPEN);
+            } else {
+                close();
+            }
+            return;
+        }
+        if (state.get() != CLOSED) { // 熔断前发出的调用
+            return;
+        }
+        long count = recorded.incrementAndGet();
+        outcomes.set((int) ((count - 1) & (window - 1)), Math.max(0, latencyNanos) << 1 | (failed ? 1 : 0));
+        if (bad && count - windowStart >= minCalls && failureRatePercent(count) >= failureRatePercent) {
+            open(CLOSED);
+        }
+    }
+
+    private int failureRatePercent(long count) {
+        int samples = (int) Math.min(count - windowStart, window);
+        int bad = 0;
+        for (int i = 0; i < samples; i++) {
+            long outcome = outcomes.get((int) ((count - 1 - i) & (window - 1)));
+            if ((outcome & 1) == 1 || slowCallNanos > 0 && outcome >>> 1 > slowCallNanos) {
+                bad++;
+            }
+        }
+        return bad * 100 / samples;
+    }
+
+    private void open(int from) {
+        if (!state.compareAndSet(from, OPEN)) {
+            return;
+        }
+        int trip = ++trips;
+        long interval = ejectionNanos << Math.min(trip - 1, 30);
+        interval = interval <= 0 || interval > maxEjectionNanos ? maxEjectionNanos : interval;
+        openUntilNanos = System.nanoTime() + interval;
+        if (from == HALF_OPEN) { // 探测时的排除期更长，换成新的间隔
+            providerAvailability.include(address);
+        }
+        providerAvailability.exclude(address, openUntilNanos);
+        CircuitBreakers.TRIPS.increment();
+        log.warn("circuit breaker of [{}] open for [{}]ms, trip [{}]", address, TimeUnit.NANOSECONDS.toMillis(interval), trip);
+    }
+
+    private void close() {
+        trips = 0;
+        windowStart = recorded.get();
+        state.set(CLOSED);
+        providerAvailability.include(address);
+        log.info("circuit breaker of [{}] closed", address);
+    }
+
+    public boolean isOpen() {
+        return state.get() != CLOSED;
+    }
+}
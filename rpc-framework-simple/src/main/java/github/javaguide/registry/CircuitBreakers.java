@@ -0,0 +1,43 @@
+package github.javaguide.registry;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.utils.RpcPropertiesUtil;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端每个服务提供者一个熔断器，熔断的服务提供者通过 {@link ProviderAvailability} 不参与负载均衡
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月18日 01:00:00
+ */
+public class CircuitBreakers {
+
+    static final LongAdder TRIPS = new LongAdder();
+
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final ProviderAvailability providerAvailability = SingletonFactory.getInstance(ProviderAvailability.class);
+    private final int window = RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_BREAKER_WINDOW, 64);
+    private final int minCalls = RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_BREAKER_MIN_CALLS, 20);
+    private final int failureRatePercent = RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_BREAKER_FAILURE_RATE_PERCENT, 50);
+    private final long slowCallMillis = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_BREAKER_SLOW_CALL_MILLIS, 0);
+    private final long ejectionMillis = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_BREAKER_EJECTION_MILLIS, 1000);
+    private final long maxEjectionMillis = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_BREAKER_MAX_EJECTION_MILLIS, 60000);
+
+    public CircuitBreaker of(InetSocketAddress inetSocketAddress) {
+        String address = inetSocketAddress.getHostString() + ":" + inetSocketAddress.getPort();
+        return circuitBreakers.computeIfAbsent(address, key -> new CircuitBreaker(key, providerAvailability, window, minCalls,
+                failureRatePercent, slowCallMillis, ejectionMillis, maxEjectionMillis));
+    }
+
+    /**
+     * @return number of times a circuit breaker opened so far
+     */
+    public static long trips() {
+        return TRIPS.sum();
+    }
+}
@@ -0,0 +1,61 @@
+package github.javaguide.registry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 客户端暂时不向其发送请求的服务提供者
+ * <p>
+ * A provider is excluded from load balancing until the given time, eg: while the client waits to reconnect to it
+ * or while its {@link CircuitBreaker} is open.
+ * Once that time has passed it is selectable again, so the next call routed to it acts as the probe. When every
+ * provider of a service is excluded they are all returned, failing a call for sure would be worse than trying one.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 21:40:00
+ */
+@Slf4j
+public class ProviderAvailability {
+
+    /**
+     * key: provider address host:port, value: System.nanoTime() until which it is excluded
+     */
+    private final Map<String, Long> excludedUntil = new ConcurrentHashMap<>();
+
+    public void exclude(String address, long untilNanos) {
+        excludedUntil.merge(address, untilNanos, Math::max);
+    }
+
+    public void include(String address) {
+        excludedUntil.remove(address);
+    }
+
+    public boolean isAvailable(String address) {
+        Long until = excludedUntil.get(address);
+        return until == null || until - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return the available providers of the list, the whole list if none is
+     */
+    public List<String> filter(List<String> serviceAddresses) {
+        if (excludedUntil.isEmpty()) {
+            return serviceAddresses;
+        }
+        List<String> available = new ArrayList<>(serviceAddresses.size());
+        for (String address : serviceAddresses) {
+            if (isAvailable(address)) {
+                available.add(address);
+            }
+        }
+        if (available.isEmpty()) {
+            log.warn("no provider of [{}] is available, try them all", serviceAddresses);
+            return serviceAddresses;
+        }
+        return available;
+    }
+}
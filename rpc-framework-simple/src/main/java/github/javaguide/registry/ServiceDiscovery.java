@@ -4,6 +4,8 @@ import github.javaguide.extension.SPI;
 import github.javaguide.remoting.dto.RpcRequest;
 
 import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * service discovery
@@ -20,4 +22,21 @@ public interface ServiceDiscovery {
      * @return service address
      */
     InetSocketAddress lookupService(RpcRequest rpcRequest);
+
+    /**
+     * lookup service by rpcServiceName, leaving out some providers
+     *
+     * @param rpcRequest rpc service pojo
+     * @param excluded   providers not to choose, eg: the one a request is already waiting for
+     * @return service address, null if every provider is excluded
+     */
+    InetSocketAddress lookupService(RpcRequest rpcRequest, Collection<InetSocketAddress> excluded);
+
+    /**
+     * lookup every provider of the service and keep watching them
+     *
+     * @param rpcServiceName rpc service name
+     * @return addresses of the providers, empty if there is none
+     */
+    List<InetSocketAddress> lookupAll(String rpcServiceName);
 }
@@ -3,7 +3,9 @@ package github.javaguide.registry.zk;
 import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.exception.RpcException;
 import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.factory.SingletonFactory;
 import github.javaguide.loadbalance.LoadBalance;
+import github.javaguide.registry.ProviderAvailability;
 import github.javaguide.registry.ServiceDiscovery;
 import github.javaguide.registry.zk.util.CuratorUtils;
 import github.javaguide.remoting.dto.RpcRequest;
@@ -12,6 +14,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -23,23 +28,64 @@ import java.util.List;
 @Slf4j
 public class ZkServiceDiscoveryImpl implements ServiceDiscovery {
     private final LoadBalance loadBalance; // 负载均衡
+    private final ProviderAvailability providerAvailability; // 暂时不可用的服务提供者不参与负载均衡
 
     public ZkServiceDiscoveryImpl() {
         this.loadBalance = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension("loadBalance");
+        this.providerAvailability = SingletonFactory.getInstance(ProviderAvailability.class);
     }
 
     @Override
     public InetSocketAddress lookupService(RpcRequest rpcRequest) {
+        return lookupService(rpcRequest, Collections.emptyList());
+    }
+
+    @Override
+    public InetSocketAddress lookupService(RpcRequest rpcRequest, Collection<InetSocketAddress> excluded) {
         String rpcServiceName = rpcRequest.getRpcServiceName();
         CuratorFramework zkClient = CuratorUtils.getZkClient(); // 连接zookeeper
         List<String> serviceUrlList = CuratorUtils.getChildrenNodes(zkClient, rpcServiceName); // 获取服务的地址列表
         if (CollectionUtil.isEmpty(serviceUrlList)) {
             throw new RpcException(RpcErrorMessageEnum.SERVICE_CAN_NOT_BE_FOUND, rpcServiceName);
         }
+        if (!excluded.isEmpty()) {
+            serviceUrlList = exclude(serviceUrlList, excluded);
+            if (serviceUrlList.isEmpty()) {
+                return null;
+            }
+        }
         // load balancing 负载均衡，选择一个服务器
-        String targetServiceUrl = loadBalance.selectServiceAddress(serviceUrlList, rpcRequest);
+        String targetServiceUrl = loadBalance.selectServiceAddress(providerAvailability.filter(serviceUrlList), rpcRequest);
         log.info("Successfully found the service address:[{}]", targetServiceUrl);
-        String[] socketAddressArray = targetServiceUrl.split(":");
+        return toInetSocketAddress(targetServiceUrl);
+    }
+
+    @Override
+    public List<InetSocketAddress> lookupAll(String rpcServiceName) {
+        // 读取子节点的同时注册监听，之后的调用直接使用本地缓存的地址列表
+        List<String> serviceUrlList = CuratorUtils.getChildrenNodes(CuratorUtils.getZkClient(), rpcServiceName);
+        if (CollectionUtil.isEmpty(serviceUrlList)) {
+            return Collections.emptyList();
+        }
+        List<InetSocketAddress> addresses = new ArrayList<>(serviceUrlList.size());
+        for (String serviceUrl : serviceUrlList) {
+            addresses.add(toInetSocketAddress(serviceUrl));
+        }
+        return addresses;
+    }
+
+    private static List<String> exclude(List<String> serviceUrlList, Collection<InetSocketAddress> excluded) {
+        List<String> remaining = new ArrayList<>(serviceUrlList.size());
+        for (String serviceUrl : serviceUrlList) {
+            if (!excluded.contains(toInetSocketAddress(serviceUrl))) {
+                remaining.add(serviceUrl);
+            }
+        }
+        return remaining;
+    }
+
+    private static InetSocketAddress toInetSocketAddress(String serviceUrl) {
+        String[] socketAddressArray = serviceUrl.split(":");
         String host = socketAddressArray[0];
         int port = Integer.parseInt(socketAddressArray[1]);
         return new InetSocketAddress(host, port);
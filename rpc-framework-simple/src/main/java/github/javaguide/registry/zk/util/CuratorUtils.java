@@ -14,10 +14,12 @@ import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.data.Stat;
 
 import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
@@ -33,6 +35,10 @@ public final class CuratorUtils {
     private static final int BASE_SLEEP_TIME = 1000;
     private static final int MAX_RETRIES = 3;
     public static final String ZK_REGISTER_ROOT_PATH = "/my-rpc";
+    /**
+     * eg: /my-rpc-uds/127.0.0.1:9999, data is the unix domain socket the server at that address also listens on
+     */
+    public static final String ZK_DOMAIN_SOCKET_ROOT_PATH = "/my-rpc-uds";
     private static final Map<String, List<String>> SERVICE_ADDRESS_MAP = new ConcurrentHashMap<>(); // 服务名与服务地址列表映射，一个服务可以有好几个实例地址
 
     private static final Set<String> REGISTERED_PATH_SET = ConcurrentHashMap.newKeySet();
@@ -189,6 +195,25 @@ public final class CuratorUtils {
         }
     }
 
+    /**
+     * @param address host:port of a server
+     * @return completed with the unix domain socket the server advertised, null if it has none; the lookup does
+     * not block the caller, the future completes on the zookeeper event thread
+     */
+    public static CompletableFuture<String> getDomainSocketPath(String address, CuratorFramework zkClient) {
+        String path = ZK_DOMAIN_SOCKET_ROOT_PATH + "/" + address;
+        CompletableFuture<String> domainSocketPath = new CompletableFuture<>();
+        try {
+            zkClient.getData().inBackground((client, event) -> domainSocketPath.complete(
+                    event.getResultCode() == KeeperException.Code.OK.intValue() ? new String(event.getData()) : null))
+                    .forPath(path);
+        } catch (Exception e) {
+            log.error("get domain socket for [{}] fail", address);
+            domainSocketPath.complete(null);
+        }
+        return domainSocketPath;
+    }
+
     public static String getNodeData(String path, CuratorFramework zkClient) {
         String data = null;
         try {
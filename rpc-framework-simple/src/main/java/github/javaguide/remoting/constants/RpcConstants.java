@@ -16,8 +16,9 @@ public class RpcConstants {
      */
     public static final byte[] MAGIC_NUMBER = {(byte) 'g', (byte) 'r', (byte) 'p', (byte) 'c'};
     public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
-    //version information
-    public static final byte VERSION = 1;
+    //version information, peers that both speak VERSION switch to it after the probe below, otherwise stay on VERSION_1
+    public static final byte VERSION = 2;
+    public static final byte VERSION_1 = 1;
     public static final byte TOTAL_LENGTH = 16;
     public static final byte REQUEST_TYPE = 1;
     public static final byte RESPONSE_TYPE = 2;
@@ -29,5 +30,17 @@ public class RpcConstants {
     public static final String PING = "ping";
     public static final String PONG = "pong";
     public static final int MAX_FRAME_LENGTH = 8 * 1024 * 1024;
+    /**
+     * v2 head without the varints: magic code + version + messageType + codec + compress
+     */
+    public static final int V2_FIXED_HEAD_LENGTH = 8;
+    /**
+     * requestId of the v1 heartbeat a client sends when a connection opens, a v2 server answers it with a v2 pong
+     */
+    public static final int VERSION_PROBE_REQUEST_ID = -2;
+    /**
+     * most method definitions one connection remembers, later methods are defined inline in every request
+     */
+    public static final int MAX_METHOD_IDS = 4096;
 
 }
@@ -21,6 +21,10 @@ import lombok.ToString;
 @ToString
 public class RpcMessage {
 
+    /**
+     * protocol version of the frame, anything other than RpcConstants.VERSION is written as version 1
+     */
+    private byte version;
     /**
      * rpc message type
      */
@@ -41,5 +45,10 @@ public class RpcMessage {
      * request data
      */
     private Object data;
+    /**
+     * the request a response answers, local only and never written to the wire,
+     * lets the encoder keep compression statistics per method for responses too
+     */
+    private RpcRequest request;
 
 }
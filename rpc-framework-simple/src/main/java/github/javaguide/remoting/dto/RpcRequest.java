@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 
 import java.io.Serializable;
@@ -26,6 +27,8 @@ public class RpcRequest implements Serializable { // 可序列化的rpc请求对
     private Class<?>[] paramTypes;              // 方法参数类型
     private String version;                     // 版本
     private String group;                       // 组别
+    @Setter
+    private Integer codecFingerprint;           // 客户端生成的编解码器指纹，服务端指纹相同时以 typed 格式回应
     // 获得服务名称 即为 接口名+组别+版本名
     public String getRpcServiceName() {
         return this.getInterfaceName() + this.getGroup() + this.getVersion();
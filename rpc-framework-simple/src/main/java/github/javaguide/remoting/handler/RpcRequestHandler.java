@@ -9,6 +9,8 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 
 /**
  * RpcRequest processor
@@ -32,6 +34,25 @@ public class RpcRequestHandler {
         return invokeTargetMethod(rpcRequest, service); // 调用对应的方法
     }
 
+    /**
+     * like handle, but waits for the value of a method that returns a CompletionStage,
+     * for transports that answer on the thread that handled the request
+     */
+    public Object handleAndWait(RpcRequest rpcRequest) {
+        Object result = handle(rpcRequest);
+        if (!(result instanceof CompletionStage)) {
+            return result;
+        }
+        try {
+            return ((CompletionStage<?>) result).toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw new RpcException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
     /**
      * get method execution results
      * 通过反射调用函数，获得函数的执行结果
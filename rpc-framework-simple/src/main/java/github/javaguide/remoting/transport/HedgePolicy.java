@@ -0,0 +1,150 @@
+package github.javaguide.remoting.transport;
+
+import github.javaguide.remoting.dto.RpcResponse;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 对冲请求：一个调用迟迟没有回应时，向另一个服务提供者再发一份，采用先到的回应
+ * <p>
+ * One policy per hedged method. The copy goes out after the configured delay or, without one, after the p95 of the
+ * latencies observed so far (no copies until {@value #MIN_SAMPLES} calls have completed); only if the budget has a
+ * token left. Whichever response comes first completes the call and the other request is cancelled: it gives up its
+ * place on the client, the connection stays open and the response the provider sends for it later is dropped. The
+ * provider still runs it, so only idempotent methods may be hedged.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 23:55:00
+ */
+public class HedgePolicy {
+
+    private static final int SAMPLES = 256;
+    private static final int MIN_SAMPLES = 32;
+    /**
+     * the p95 is computed again after this many calls
+     */
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private static final LongAdder HEDGES = new LongAdder();
+    private static final LongAdder HEDGE_WINS = new LongAdder();
+
+    private final long delayNanos;
+    private final TokenBudget budget;
+    /**
+     * latencies of the last SAMPLES calls in nanoseconds, a ring indexed by the number of calls recorded
+     */
+    private final AtomicLongArray latencies = new AtomicLongArray(SAMPLES);
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile long p95Nanos;
+
+    /**
+     * @param delayMillis time without a response before the copy is sent, 0 for the observed p95
+     * @param budget      shared by every hedged method
+     */
+    public HedgePolicy(long delayMillis, TokenBudget budget) {
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        this.budget = budget;
+    }
+
+    /**
+     * @param send      sends the request and returns its response future; its argument is true for the copy,
+     *                  which must go to another provider, null if there is none
+     * @param scheduler runs the timer of the copy
+     * @return completed with the first response, or exceptionally once every request sent has failed
+     */
+    public CompletableFuture<RpcResponse<Object>> call(Function<Boolean, CompletableFuture<RpcResponse<Object>>> send,
+                                                       ScheduledExecutorService scheduler) {
+        budget.deposit();
+        long start = System.nanoTime();
+        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        CompletableFuture<RpcResponse<Object>> primary = send.apply(false);
+        watch(primary, false, resultFuture, pending, start);
+        long delay = delayNanos();
+        if (delay > 0 && !resultFuture.isDone()) {
+            Runnable hedge = () -> hedge(send, resultFuture, pending, start);
+            ScheduledFuture<?> timer = scheduler.schedule(hedge, delay, TimeUnit.NANOSECONDS);
+            resultFuture.whenComplete((rpcResponse, throwable) -> timer.cancel(false));
+        }
+        // 取消落后的请求；调用超时的话两个都取消
+        resultFuture.whenComplete((rpcResponse, throwable) -> primary.cancel(false));
+        return resultFuture;
+    }
+
+    private void hedge(Function<Boolean, CompletableFuture<RpcResponse<Object>>> send,
+                       CompletableFuture<RpcResponse<Object>> resultFuture, AtomicInteger pending, long start) {
+        if (resultFuture.isDone() || !budget.tryWithdraw()) {
+            return;
+        }
+        CompletableFuture<RpcResponse<Object>> copy = send.apply(true);
+        if (copy == null) { // 没有其他服务提供者
+            return;
+        }
+        HEDGES.increment();
+        pending.incrementAndGet();
+        watch(copy, true, resultFuture, pending, start);
+        resultFuture.whenComplete((rpcResponse, throwable) -> copy.cancel(false));
+    }
+
+    private void watch(CompletableFuture<RpcResponse<Object>> attempt, boolean copy,
+                       CompletableFuture<RpcResponse<Object>> resultFuture, AtomicInteger pending, long start) {
+        attempt.whenComplete((rpcResponse, throwable) -> {
+            if (throwable == null) {
+                // 先成功的请求胜出，之后的失败不会再使调用失败
+                if (pending.getAndSet(Integer.MIN_VALUE) > 0 && !resultFuture.isDone()) {
+                    record(System.nanoTime() - start);
+                    if (copy) {
+                        HEDGE_WINS.increment();
+                    }
+                    resultFuture.complete(rpcResponse);
+                }
+            } else if (pending.decrementAndGet() == 0) { // 另一个请求还在等待回应的话继续等它
+                resultFuture.completeExceptionally(throwable);
+            }
+        });
+    }
+
+    /**
+     * @return time without a response before the copy is sent, 0 while there are too few calls to tell
+     */
+    public long delayNanos() {
+        return delayNanos > 0 ? delayNanos : p95Nanos;
+    }
+
+    void record(long latencyNanos) {
+        long count = recorded.incrementAndGet();
+        latencies.set((int) ((count - 1) & (SAMPLES - 1)), latencyNanos);
+        if (count == MIN_SAMPLES || count > MIN_SAMPLES && count % RECOMPUTE_EVERY == 0) {
+            int samples = (int) Math.min(count, SAMPLES);
+            long[] sorted = new long[samples];
+            for (int i = 0; i < samples; i++) {
+                sorted[i] = latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.ceil(samples * 0.95) - 1];
+        }
+    }
+
+    /**
+     * @return number of copies sent by all hedged methods so far
+     */
+    public static long hedges() {
+        return HEDGES.sum();
+    }
+
+    /**
+     * @return number of calls whose copy answered first
+     */
+    public static long hedgeWins() {
+        return HEDGE_WINS.sum();
+    }
+}
@@ -0,0 +1,110 @@
+package github.javaguide.remoting.transport;
+
+import github.javaguide.remoting.dto.RpcResponse;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 重试：请求没有得到回应就失败的调用（连接失败、写失败、连接断开等），退避一段时间后发往另一个服务提供者
+ * <p>
+ * One policy per retried method, which must be idempotent: the request may have reached the provider before the
+ * connection broke. Error responses of the provider are not retried, neither are calls that timed out. Every retry
+ * takes a token from a budget shared by all methods; without one the call fails, so that when a whole cluster
+ * struggles the retries stay a small share of the traffic instead of multiplying it.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月18日 00:20:00
+ */
+public class RetryPolicy {
+
+    private static final LongAdder RETRIES = new LongAdder();
+    private static final LongAdder RETRIES_SUPPRESSED = new LongAdder();
+
+    private final int maxRetries;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final TokenBudget budget;
+
+    /**
+     * @param maxRetries       max number of retries of a call
+     * @param backoffMillis    delay before the first retry, doubled for every other one
+     * @param maxBackoffMillis upper bound of the delay
+     * @param budget           shared by every retried method
+     */
+    public RetryPolicy(int maxRetries, long backoffMillis, long maxBackoffMillis, TokenBudget budget) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, backoffMillis));
+        this.maxBackoffNanos = Math.max(backoffNanos, TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis));
+        this.budget = budget;
+    }
+
+    /**
+     * @param send      sends the request and returns its response future, to another provider than before if it can
+     * @param scheduler runs the retries once their delay has passed
+     * @return completed with the response, or exceptionally with the failure of the last request sent
+     */
+    public CompletableFuture<RpcResponse<Object>> call(Supplier<CompletableFuture<RpcResponse<Object>>> send,
+                                                       ScheduledExecutorService scheduler) {
+        budget.deposit();
+        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        attempt(send, scheduler, resultFuture, 0);
+        return resultFuture;
+    }
+
+    private void attempt(Supplier<CompletableFuture<RpcResponse<Object>>> send, ScheduledExecutorService scheduler,
+                         CompletableFuture<RpcResponse<Object>> resultFuture, int retries) {
+        if (resultFuture.isDone()) { // 等待重试时已经超时
+            return;
+        }
+        CompletableFuture<RpcResponse<Object>> attempt;
+        try {
+            attempt = send.get();
+        } catch (RuntimeException e) { // eg: 服务已经没有提供者
+            resultFuture.completeExceptionally(e);
+            return;
+        }
+        attempt.whenComplete((rpcResponse, throwable) -> {
+            if (throwable == null) {
+                resultFuture.complete(rpcResponse);
+            } else if (retries >= maxRetries || throwable instanceof CancellationException || resultFuture.isDone()) {
+                resultFuture.completeExceptionally(throwable);
+            } else if (!budget.tryWithdraw()) {
+                RETRIES_SUPPRESSED.increment();
+                resultFuture.completeExceptionally(throwable);
+            } else {
+                RETRIES.increment();
+                Runnable retry = () -> attempt(send, scheduler, resultFuture, retries + 1);
+                scheduler.schedule(retry, delayNanos(retries), TimeUnit.NANOSECONDS);
+            }
+        });
+        // 调用超时后不再等待当前的请求
+        resultFuture.whenComplete((rpcResponse, throwable) -> attempt.cancel(false));
+    }
+
+    private long delayNanos(int retries) {
+        long delay = backoffNanos << Math.min(retries, 30);
+        delay = delay <= 0 || delay > maxBackoffNanos ? maxBackoffNanos : delay;
+        // equal jitter，避免同时失败的调用同时重试
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * @return number of retries sent by all methods so far
+     */
+    public static long retries() {
+        return RETRIES.sum();
+    }
+
+    /**
+     * @return number of failed calls that were not retried because the budget was spent
+     */
+    public static long retriesSuppressed() {
+        return RETRIES_SUPPRESSED.sum();
+    }
+}
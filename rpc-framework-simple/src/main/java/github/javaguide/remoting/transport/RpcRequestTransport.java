@@ -3,6 +3,8 @@ package github.javaguide.remoting.transport;
 import github.javaguide.extension.SPI;
 import github.javaguide.remoting.dto.RpcRequest;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * send RpcRequest。
  *
@@ -18,4 +20,28 @@ public interface RpcRequestTransport {
      * @return data from server
      */
     Object sendRpcRequest(RpcRequest rpcRequest);
+
+    /**
+     * send rpc request to server, and a copy of it to another server if the first does not answer in time, and
+     * again to another server if no answer comes back at all
+     *
+     * @param rpcRequest  message body
+     * @param hedgePolicy when to send the copy, null for none
+     * @param retryPolicy when to send the request again, null for never
+     * @return same as {@link #sendRpcRequest(RpcRequest)}, the default transport sends the request once
+     */
+    default Object sendRpcRequest(RpcRequest rpcRequest, HedgePolicy hedgePolicy, RetryPolicy retryPolicy) {
+        return sendRpcRequest(rpcRequest);
+    }
+
+    /**
+     * get ready to call the service: subscribe to it and open the connections to its providers ahead of the first call
+     *
+     * @param rpcServiceName rpc service name
+     * @param pings          number of heartbeats to send over every connection, to warm it up
+     * @return completed once the service is ready to be called, the default transport has nothing to prepare
+     */
+    default CompletableFuture<Void> warmUp(String rpcServiceName, int pings) {
+        return CompletableFuture.completedFuture(null);
+    }
 }
@@ -0,0 +1,71 @@
+package github.javaguide.remoting.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 额外请求（对冲、重试）的预算：每个调用存入一部分令牌，每个额外请求取走一个
+ * <p>
+ * With a deposit of p percent per call, at most p extra requests go out per 100 calls over time, plus a burst of
+ * the tokens saved up. When a provider is down the extra requests stop as soon as the saved tokens are spent, so they
+ * cannot multiply the load the way unconditional hedging or retrying does. The budget starts empty.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 23:50:00
+ */
+public class TokenBudget {
+
+    /**
+     * one token, deposits are in hundredths of a token
+     */
+    private static final long TOKEN = 100;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong balance = new AtomicLong();
+
+    /**
+     * @param percent extra requests allowed per 100 calls
+     * @param burst   max number of tokens saved up
+     */
+    public TokenBudget(int percent, int burst) {
+        this.deposit = Math.max(0, percent);
+        this.capacity = Math.max(1, burst) * TOKEN;
+    }
+
+    /**
+     * a call was made
+     */
+    public void deposit() {
+        if (deposit == 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    /**
+     * @return whether an extra request may be sent, it has taken its token if so
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * @return number of whole tokens left
+     */
+    public long tokens() {
+        return balance.get() / TOKEN;
+    }
+}
@@ -0,0 +1,67 @@
+package github.javaguide.remoting.transport.injvm;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.ServiceProvider;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.handler.RpcRequestHandler;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.serialize.Serializer;
+import github.javaguide.utils.RpcPropertiesUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 服务就在本进程中时直接调用，不经过序列化、压缩和网络
+ * <p>
+ * By default the arguments and the result are passed by reference, like a local call. With {@code rpc.injvm.copy}
+ * the request and the response go through the configured serializer once each, so neither side sees objects the
+ * other one keeps changing, as with a remote call.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 19:05:00
+ */
+@Slf4j
+public class InJvmRpcClient implements RpcRequestTransport {
+
+    private final ServiceProvider serviceProvider;
+    private final RpcRequestHandler rpcRequestHandler;
+    /**
+     * null when arguments and results are passed by reference
+     */
+    private final Serializer copySerializer;
+
+    public InJvmRpcClient() {
+        this(RpcPropertiesUtil.getBoolean(RpcConfigEnum.INJVM_COPY, false));
+    }
+
+    public InJvmRpcClient(boolean copy) {
+        this.serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
+        this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        this.copySerializer = copy ? ExtensionLoader.getExtensionLoader(Serializer.class).getExtension(
+                RpcPropertiesUtil.getString(RpcConfigEnum.SERIALIZE_TYPE, SerializationTypeEnum.HESSIAN2.getName())) : null;
+    }
+
+    /**
+     * @return true if the service of the request is registered in this process
+     */
+    public boolean isLocal(RpcRequest rpcRequest) {
+        return serviceProvider.hasService(rpcRequest.getRpcServiceName());
+    }
+
+    /**
+     * @return the RpcResponse of the call
+     */
+    @Override
+    public Object sendRpcRequest(RpcRequest rpcRequest) {
+        if (copySerializer == null) {
+            return RpcResponse.success(rpcRequestHandler.handle(rpcRequest), rpcRequest.getRequestId());
+        }
+        RpcRequest copied = copySerializer.deserialize(copySerializer.serialize(rpcRequest), RpcRequest.class);
+        RpcResponse<Object> rpcResponse = RpcResponse.success(rpcRequestHandler.handleAndWait(copied), rpcRequest.getRequestId());
+        return copySerializer.deserialize(copySerializer.serialize(rpcResponse), RpcResponse.class);
+    }
+}
@@ -0,0 +1,145 @@
+package github.javaguide.remoting.transport.netty;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcPropertiesUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并写：多个线程写到同一连接的消息先进入队列，由事件循环一次写出并只 flush 一次
+ * <p>
+ * Every {@code writeAndFlush} from outside the event loop is a task of its own and every flush is a write syscall.
+ * Here callers only add the message to a lock-free multi-producer queue; the first one to find the queue idle
+ * schedules a single task that writes everything queued by then, up to {@code rpc.transport.max-messages-per-flush},
+ * and flushes once. What is left goes into another task, so that a busy channel does not starve the others on the
+ * same event loop. Since the task runs after the event loop has processed the I/O of its current tick, all the
+ * responses a server produces for one read end up in the same flush.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 22:10:00
+ */
+public final class CoalescingWriter {
+
+    public static final AttributeKey<CoalescingWriter> COALESCING_WRITER_KEY = AttributeKey.valueOf("coalescingWriter");
+
+    private static final int DEFAULT_MAX_MESSAGES_PER_FLUSH = 128;
+    private static final int MAX_MESSAGES_PER_FLUSH = RpcPropertiesUtil.getInt(
+            RpcConfigEnum.TRANSPORT_MAX_MESSAGES_PER_FLUSH, DEFAULT_MAX_MESSAGES_PER_FLUSH);
+
+    private static final LongAdder FLUSHES = new LongAdder();
+    private static final LongAdder MESSAGES = new LongAdder();
+
+    private final Channel channel;
+    private final int maxMessagesPerFlush;
+    private final Queue<PendingWrite> queue = PlatformDependent.newMpscQueue();
+    /**
+     * true while a flush task is scheduled or running
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable flushTask = this::flush;
+
+    CoalescingWriter(Channel channel, int maxMessagesPerFlush) {
+        this.channel = channel;
+        this.maxMessagesPerFlush = Math.max(1, maxMessagesPerFlush);
+    }
+
+    public static CoalescingWriter of(Channel channel) {
+        CoalescingWriter writer = channel.attr(COALESCING_WRITER_KEY).get();
+        if (writer == null) {
+            CoalescingWriter created = new CoalescingWriter(channel, MAX_MESSAGES_PER_FLUSH);
+            writer = channel.attr(COALESCING_WRITER_KEY).setIfAbsent(created);
+            writer = writer == null ? created : writer;
+        }
+        return writer;
+    }
+
+    /**
+     * 代替 channel.writeAndFlush，可以在任意线程调用
+     *
+     * @return notified once the message has been flushed, or failed to be
+     */
+    public ChannelFuture write(Object msg) {
+        ChannelPromise promise = channel.newPromise();
+        queue.offer(new PendingWrite(msg, promise));
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            schedule();
+        }
+        return promise;
+    }
+
+    private void schedule() {
+        try {
+            channel.eventLoop().execute(flushTask);
+        } catch (RejectedExecutionException e) {
+            // 事件循环已经关闭，队列中的消息不会再被写出
+            scheduled.set(false);
+            PendingWrite pending;
+            while ((pending = queue.poll()) != null) {
+                pending.promise.tryFailure(e);
+            }
+        }
+    }
+
+    private void flush() {
+        int written = 0;
+        PendingWrite pending;
+        while (written < maxMessagesPerFlush && (pending = queue.poll()) != null) {
+            channel.write(pending.msg, pending.promise);
+            written++;
+        }
+        if (written > 0) {
+            channel.flush();
+            FLUSHES.increment();
+            MESSAGES.add(written);
+        }
+        if (!queue.isEmpty()) {
+            schedule();
+            return;
+        }
+        scheduled.set(false);
+        // a message queued after the poll above found the task still scheduled, so it is up to this task
+        if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            schedule();
+        }
+    }
+
+    /**
+     * @return number of flushes of all channels so far
+     */
+    public static long flushes() {
+        return FLUSHES.sum();
+    }
+
+    /**
+     * @return number of messages written to all channels so far
+     */
+    public static long messages() {
+        return MESSAGES.sum();
+    }
+
+    /**
+     * @return average number of messages written per flush, the higher the fewer syscalls each call costs
+     */
+    public static double messagesPerFlush() {
+        long flushes = FLUSHES.sum();
+        return flushes == 0 ? 0 : (double) MESSAGES.sum() / flushes;
+    }
+
+    private static final class PendingWrite {
+        private final Object msg;
+        private final ChannelPromise promise;
+
+        PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
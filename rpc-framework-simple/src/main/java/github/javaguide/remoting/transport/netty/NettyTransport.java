@@ -0,0 +1,182 @@
+package github.javaguide.remoting.transport.netty;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.utils.RpcPropertiesUtil;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * netty 传输层实现：Linux 上有 epoll 本地库时用 epoll（边缘触发、更少的系统调用，支持 SO_REUSEPORT 和 unix domain socket），否则用 NIO
+ * <p>
+ * epoll only options, ignored by NIO:
+ * <ul>
+ *     <li>{@code rpc.transport.reuse-port-binds}: the server binds its port this many times with SO_REUSEPORT,
+ *     each bind gets its own acceptor thread and the kernel spreads new connections across them</li>
+ *     <li>{@code rpc.transport.busy-poll-micros}: SO_BUSY_POLL of accepted and connected sockets, 0 leaves it off</li>
+ * </ul>
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 18:05:00
+ */
+@Slf4j
+public enum NettyTransport {
+
+    NIO {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            return new NioEventLoopGroup(threads);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+    },
+    EPOLL {
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads) {
+            return new EpollEventLoopGroup(threads);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public boolean supportsDomainSocket() {
+            return true;
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverDomainSocketChannelClass() {
+            return EpollServerDomainSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends Channel> domainSocketChannelClass() {
+            return EpollDomainSocketChannel.class;
+        }
+
+        @Override
+        public int reusePortBinds() {
+            return Math.max(1, RpcPropertiesUtil.getInt(RpcConfigEnum.TRANSPORT_REUSE_PORT_BINDS, 1));
+        }
+
+        @Override
+        public void configure(ServerBootstrap serverBootstrap) {
+            if (reusePortBinds() > 1) {
+                serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+            int busyPollMicros = RpcPropertiesUtil.getInt(RpcConfigEnum.TRANSPORT_BUSY_POLL_MICROS, 0);
+            if (busyPollMicros > 0) {
+                serverBootstrap.childOption(EpollChannelOption.SO_BUSY_POLL, busyPollMicros);
+            }
+        }
+
+        @Override
+        public void configure(Bootstrap bootstrap) {
+            int busyPollMicros = RpcPropertiesUtil.getInt(RpcConfigEnum.TRANSPORT_BUSY_POLL_MICROS, 0);
+            if (busyPollMicros > 0) {
+                bootstrap.option(EpollChannelOption.SO_BUSY_POLL, busyPollMicros);
+            }
+        }
+    };
+
+    private static volatile NettyTransport selected;
+
+    /**
+     * @param threads 0 for netty's default of 2 * cpus
+     */
+    public abstract EventLoopGroup newEventLoopGroup(int threads);
+
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    public abstract Class<? extends SocketChannel> socketChannelClass();
+
+    /**
+     * @return true if the transport can listen on and connect to unix domain sockets
+     */
+    public boolean supportsDomainSocket() {
+        return false;
+    }
+
+    public Class<? extends ServerChannel> serverDomainSocketChannelClass() {
+        throw new UnsupportedOperationException(name() + " transport has no unix domain socket");
+    }
+
+    public Class<? extends Channel> domainSocketChannelClass() {
+        throw new UnsupportedOperationException(name() + " transport has no unix domain socket");
+    }
+
+    /**
+     * @return how many times the server binds its port, each bind has its own acceptor thread
+     */
+    public int reusePortBinds() {
+        return 1;
+    }
+
+    /**
+     * applies the transport specific options to a server bootstrap
+     */
+    public void configure(ServerBootstrap serverBootstrap) {
+    }
+
+    /**
+     * applies the transport specific options to a client bootstrap
+     */
+    public void configure(Bootstrap bootstrap) {
+    }
+
+    /**
+     * @return epoll if the native library loads and {@code rpc.transport.epoll} is not false, NIO otherwise
+     */
+    public static NettyTransport select() {
+        if (selected == null) {
+            synchronized (NettyTransport.class) {
+                if (selected == null) {
+                    selected = doSelect();
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static NettyTransport doSelect() {
+        if (!RpcPropertiesUtil.getBoolean(RpcConfigEnum.TRANSPORT_EPOLL, true)) {
+            log.info("epoll transport disabled, use nio");
+            return NIO;
+        }
+        if (!Epoll.isAvailable()) {
+            log.info("epoll transport unavailable, use nio: {}", String.valueOf(Epoll.unavailabilityCause()));
+            return NIO;
+        }
+        log.info("use epoll transport");
+        return EPOLL;
+    }
+}
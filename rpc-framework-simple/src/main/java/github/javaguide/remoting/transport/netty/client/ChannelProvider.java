@@ -1,14 +1,44 @@
 package github.javaguide.remoting.transport.netty.client;
 
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.registry.ProviderAvailability;
+import github.javaguide.utils.RpcPropertiesUtil;
 import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * store and get Channel object
+ * <p>
+ * Every endpoint has a pool of up to {@code rpc.client.connections} channels. A call goes to the open channel with the
+ * fewest requests waiting, preferring writable ones; while the pool has room and every open channel is busy, one more
+ * is opened in the background. Only one connection attempt per slot is in flight at a time, callers that find no
+ * open channel wait for it without holding their thread.
+ * <p>
+ * An endpoint whose connection attempt failed backs off: it is excluded from load balancing and calls that still
+ * reach it fail at once, until a delay that doubles with every consecutive failure (with jitter, so that clients do
+ * not reconnect in lockstep) has passed. The next call after that tries again; a success resets the delay.
+ * <p>
+ * A channel has room for a call while it is writable (below the high water mark of its outbound buffer) and has fewer
+ * than {@code rpc.client.max-in-flight-per-channel} requests waiting; an endpoint while it has fewer than
+ * {@code rpc.client.max-in-flight-per-endpoint} over all of its channels. When there is no room {@link #get} completes
+ * with null and the caller decides what to do, eg: {@link #awaitRoom} until a request of the endpoint completes.
  *
  * @author shuang.kou
  * @createTime 2020年05月29日 16:36:00
@@ -16,35 +46,315 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class ChannelProvider {
 
-    private final Map<String, Channel> channelMap;
+    private static final long DEFAULT_BACKOFF_MILLIS = 100;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 10000;
+    private static final int DEFAULT_MAX_IN_FLIGHT_PER_CHANNEL = 1024;
+
+    private final Map<String, ChannelPool> channelPools;
+    private final int connections;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final int maxInFlightPerChannel;
+    private final int maxInFlightPerEndpoint;
+    private final ProviderAvailability providerAvailability;
 
     public ChannelProvider() {
-        channelMap = new ConcurrentHashMap<>();
+        this(RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_CONNECTIONS, 1),
+                RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_BACKOFF_MILLIS, DEFAULT_BACKOFF_MILLIS),
+                RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_RECONNECT_MAX_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_MAX_IN_FLIGHT_PER_CHANNEL, DEFAULT_MAX_IN_FLIGHT_PER_CHANNEL),
+                RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_MAX_IN_FLIGHT_PER_ENDPOINT, 0));
+    }
+
+    /**
+     * @param connections      max number of channels per endpoint
+     * @param backoffMillis    delay before reconnecting after the first failure
+     * @param maxBackoffMillis upper bound of the delay
+     * @param maxInFlightPerChannel  max number of requests waiting for a response on one channel
+     * @param maxInFlightPerEndpoint max number of requests waiting for a response from one endpoint, 0 for no limit
+     *                               but that of its channels
+     */
+    public ChannelProvider(int connections, long backoffMillis, long maxBackoffMillis,
+                           int maxInFlightPerChannel, int maxInFlightPerEndpoint) {
+        this.channelPools = new ConcurrentHashMap<>();
+        this.connections = Math.max(1, connections);
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, backoffMillis));
+        this.maxBackoffNanos = Math.max(backoffNanos, TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis));
+        this.maxInFlightPerChannel = Math.max(1, maxInFlightPerChannel);
+        this.maxInFlightPerEndpoint = maxInFlightPerEndpoint > 0 ? maxInFlightPerEndpoint : Integer.MAX_VALUE;
+        this.providerAvailability = SingletonFactory.getInstance(ProviderAvailability.class);
     }
 
-    public Channel get(InetSocketAddress inetSocketAddress) {
+    /**
+     * @param connector starts a connection to the endpoint, must not block
+     * @return completed with an open channel to the endpoint that has room for a call, null if the endpoint has none,
+     * or exceptionally if there is no channel and connecting failed or the endpoint is backing off
+     */
+    public CompletableFuture<Channel> get(InetSocketAddress inetSocketAddress,
+                                          Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
         String key = inetSocketAddress.toString();
-        // determine if there is a connection for the corresponding address
-        if (channelMap.containsKey(key)) {
-            Channel channel = channelMap.get(key);
-            // if so, determine if the connection is available, and if so, get it directly
-            if (channel != null && channel.isActive()) {
-                return channel;
-            } else {
-                channelMap.remove(key);
-            }
-        }
-        return null;
+        return channelPools.computeIfAbsent(key, k -> new ChannelPool(inetSocketAddress)).get(connector);
     }
 
-    public void set(InetSocketAddress inetSocketAddress, Channel channel) {
+    /**
+     * opens every channel of the endpoint's pool that is not open yet, eg: before the first call
+     *
+     * @return completed with the open channels once every attempt is over, some may have failed
+     */
+    public CompletableFuture<List<Channel>> warmUp(InetSocketAddress inetSocketAddress,
+                                                   Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
         String key = inetSocketAddress.toString();
-        channelMap.put(key, channel);
+        return channelPools.computeIfAbsent(key, k -> new ChannelPool(inetSocketAddress)).warmUp(connector);
+    }
+
+    /**
+     * @return whether the channel can take one more call
+     */
+    public boolean hasRoom(Channel channel) {
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.of(channel);
+        return channel.isWritable() && (unprocessedRequests == null || unprocessedRequests.size() < maxInFlightPerChannel);
+    }
+
+    /**
+     * wait for room after {@link #get} found none
+     *
+     * @return completed, usually by an I/O thread, the next time a call to the endpoint completes; completed at once
+     * if the endpoint is unknown or already has room again
+     */
+    public CompletableFuture<Void> awaitRoom(InetSocketAddress inetSocketAddress) {
+        ChannelPool channelPool = channelPools.get(inetSocketAddress.toString());
+        if (channelPool == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return channelPool.awaitRoom();
+    }
+
+    /**
+     * a call to the endpoint has completed, hand its room to the next one waiting
+     */
+    public void release(InetSocketAddress inetSocketAddress) {
+        ChannelPool channelPool = channelPools.get(inetSocketAddress.toString());
+        if (channelPool != null) {
+            channelPool.wakeUp();
+        }
+    }
+
+    /**
+     * @return number of requests waiting for a response, over all endpoints
+     */
+    public int inFlight() {
+        return channelPools.values().stream().mapToInt(ChannelPool::inFlight).sum();
+    }
+
+    /**
+     * @return number of calls waiting for room, over all endpoints
+     */
+    public int waiting() {
+        return channelPools.values().stream().mapToInt(channelPool -> channelPool.waiters.size()).sum();
     }
 
     public void remove(InetSocketAddress inetSocketAddress) {
         String key = inetSocketAddress.toString();
-        channelMap.remove(key);
-        log.info("Channel map size :[{}]", channelMap.size());
+        channelPools.remove(key);
+        log.info("Channel map size :[{}]", channelPools.size());
+    }
+
+    private final class ChannelPool {
+
+        /**
+         * a channel that is not writable is only picked when all of them are full
+         */
+        private static final int NOT_WRITABLE_PENALTY = 1 << 16;
+
+        private final InetSocketAddress inetSocketAddress;
+        /**
+         * host:port as the registry lists it
+         */
+        private final String address;
+        private final AtomicReferenceArray<Channel> channels;
+        /**
+         * the connection being opened for a slot, null when nobody is connecting it
+         */
+        private final AtomicReferenceArray<CompletableFuture<Channel>> connecting;
+        private volatile int failures;
+        private volatile long retryAtNanos;
+        /**
+         * calls waiting for room, woken up one per completed call
+         */
+        private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+
+        ChannelPool(InetSocketAddress inetSocketAddress) {
+            this.inetSocketAddress = inetSocketAddress;
+            this.address = inetSocketAddress.getHostString() + ":" + inetSocketAddress.getPort();
+            this.channels = new AtomicReferenceArray<>(connections);
+            this.connecting = new AtomicReferenceArray<>(connections);
+        }
+
+        CompletableFuture<Channel> get(Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+            Channel best = null;
+            int bestLoad = Integer.MAX_VALUE;
+            int freeSlot = -1;
+            int inFlight = 0;
+            for (int slot = 0; slot < channels.length(); slot++) {
+                Channel channel = channels.get(slot);
+                if (channel == null || !channel.isActive()) {
+                    if (freeSlot < 0) {
+                        freeSlot = slot;
+                    }
+                    continue;
+                }
+                inFlight += size(channel);
+                int load = load(channel);
+                if (load < bestLoad) {
+                    best = channel;
+                    bestLoad = load;
+                }
+            }
+            if (best != null && inFlight >= maxInFlightPerEndpoint) {
+                // 再多的连接也无济于事
+                return CompletableFuture.completedFuture(null);
+            }
+            boolean room = best != null && hasRoom(best);
+            CompletableFuture<Channel> inFlightConnect = freeSlot < 0 ? null : connecting.get(freeSlot);
+            if (best != null && (bestLoad == 0 || freeSlot < 0 || inFlightConnect != null || backingOff())) {
+                if (room) {
+                    return CompletableFuture.completedFuture(best);
+                }
+                // 所有连接都满了，等待正在建立的连接
+                return inFlightConnect != null ? inFlightConnect : CompletableFuture.completedFuture(null);
+            }
+            if (best == null && backingOff()) {
+                CompletableFuture<Channel> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE,
+                        inetSocketAddress + " is backing off after " + failures + " failed connects"));
+                return failed;
+            }
+            // every open channel is busy and the pool has room, or nothing is open yet
+            CompletableFuture<Channel> connected = connect(freeSlot, connector);
+            return room ? CompletableFuture.completedFuture(best) : connected;
+        }
+
+        CompletableFuture<Void> awaitRoom() {
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.offer(waiter);
+            // a call may have completed between get() and offer(), with nobody to wake up yet
+            if (anyRoom()) {
+                wakeUp();
+            }
+            return waiter;
+        }
+
+        void wakeUp() {
+            CompletableFuture<Void> waiter = waiters.poll();
+            if (waiter != null) {
+                waiter.complete(null);
+            }
+        }
+
+        private boolean anyRoom() {
+            if (inFlight() >= maxInFlightPerEndpoint) {
+                return false;
+            }
+            for (int slot = 0; slot < channels.length(); slot++) {
+                Channel channel = channels.get(slot);
+                if (channel == null || !channel.isActive() || hasRoom(channel)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int inFlight() {
+            int inFlight = 0;
+            for (int slot = 0; slot < channels.length(); slot++) {
+                Channel channel = channels.get(slot);
+                if (channel != null && channel.isActive()) {
+                    inFlight += size(channel);
+                }
+            }
+            return inFlight;
+        }
+
+        CompletableFuture<List<Channel>> warmUp(Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+            List<CompletableFuture<Channel>> opened = new ArrayList<>(channels.length());
+            for (int slot = 0; slot < channels.length(); slot++) {
+                Channel channel = channels.get(slot);
+                if (channel != null && channel.isActive()) {
+                    opened.add(CompletableFuture.completedFuture(channel));
+                } else if (!backingOff()) {
+                    opened.add(connect(slot, connector));
+                }
+            }
+            return CompletableFuture.allOf(opened.toArray(new CompletableFuture[0])).handle((v, cause) -> opened.stream()
+                    .filter(future -> !future.isCompletedExceptionally())
+                    .map(CompletableFuture::join)
+                    .distinct()
+                    .collect(Collectors.toList()));
+        }
+
+        private CompletableFuture<Channel> connect(int slot, Function<InetSocketAddress, CompletableFuture<Channel>> connector) {
+            CompletableFuture<Channel> future = new CompletableFuture<>();
+            if (!connecting.compareAndSet(slot, null, future)) {
+                CompletableFuture<Channel> inFlight = connecting.get(slot);
+                return inFlight == null ? get(connector) : inFlight;
+            }
+            Channel channel = channels.get(slot);
+            if (channel != null && channel.isActive()) {
+                // connected by the previous attempt after this caller looked at the slot
+                connecting.set(slot, null);
+                future.complete(channel);
+                return future;
+            }
+            CompletableFuture<Channel> attempt;
+            try {
+                attempt = connector.apply(inetSocketAddress);
+            } catch (RuntimeException e) {
+                attempt = new CompletableFuture<>();
+                attempt.completeExceptionally(e);
+            }
+            attempt.whenComplete((connected, cause) -> {
+                if (cause == null) {
+                    channels.set(slot, connected);
+                    failures = 0;
+                    providerAvailability.include(address);
+                } else {
+                    backOff(cause);
+                }
+                connecting.set(slot, null);
+                if (cause == null) {
+                    future.complete(connected);
+                } else {
+                    future.completeExceptionally(cause);
+                }
+            });
+            return future;
+        }
+
+        private boolean backingOff() {
+            return failures > 0 && retryAtNanos - System.nanoTime() > 0;
+        }
+
+        private void backOff(Throwable cause) {
+            int failed = failures + 1;
+            failures = failed;
+            long delay = backoffNanos << Math.min(failed - 1, 30);
+            delay = delay <= 0 || delay > maxBackoffNanos ? maxBackoffNanos : delay;
+            // equal jitter: at least half of the delay, so that a flapping endpoint still gets a rest
+            delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+            retryAtNanos = System.nanoTime() + delay;
+            providerAvailability.exclude(address, retryAtNanos);
+            log.warn("connect to [{}] failed [{}] times in a row, retry in [{}] ms", inetSocketAddress, failed,
+                    TimeUnit.NANOSECONDS.toMillis(delay), cause);
+        }
+
+        private int load(Channel channel) {
+            int load = size(channel);
+            return channel.isWritable() ? load : load + NOT_WRITABLE_PENALTY;
+        }
+
+        private int size(Channel channel) {
+            UnprocessedRequests unprocessedRequests = UnprocessedRequests.of(channel);
+            return unprocessedRequests == null ? 0 : unprocessedRequests.size();
+        }
     }
 }
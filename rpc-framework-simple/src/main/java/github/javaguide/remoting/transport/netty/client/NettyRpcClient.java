@@ -1,38 +1,67 @@
 package github.javaguide.remoting.transport.netty.client;
 
 
+import github.javaguide.codec.ServiceCodecs;
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.OverloadPolicyEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.exception.RpcException;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.factory.SingletonFactory;
+import github.javaguide.proxy.RpcTimer;
+import github.javaguide.registry.CircuitBreaker;
+import github.javaguide.registry.CircuitBreakers;
 import github.javaguide.registry.ServiceDiscovery;
+import github.javaguide.registry.zk.util.CuratorUtils;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.HedgePolicy;
+import github.javaguide.remoting.transport.RetryPolicy;
 import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.remoting.transport.netty.CoalescingWriter;
+import github.javaguide.remoting.transport.netty.NettyTransport;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageDecoder;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageEncoder;
+import github.javaguide.utils.RpcPropertiesUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import lombok.SneakyThrows;
+import io.netty.util.Timeout;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * initialize and close Bootstrap object
@@ -42,65 +71,166 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 @Slf4j
 public final class NettyRpcClient implements RpcRequestTransport {
+
+    private static final int DEFAULT_HIGH_WATER_MARK = 64 * 1024;
+    private static final long DEFAULT_PING_TIMEOUT_MILLIS = 3000;
+
     private final ServiceDiscovery serviceDiscovery;
-    private final UnprocessedRequests unprocessedRequests;
     private final ChannelProvider channelProvider;
+    private final CircuitBreakers circuitBreakers;
+    private final RpcTimer rpcTimer;
+    /**
+     * how long a warm-up heartbeat waits for its answer
+     */
+    private final long pingTimeoutMillis;
+    /**
+     * key: server address, value: its unix domain socket, null if it is not on this host or has none
+     */
+    private final Map<InetSocketAddress, CompletableFuture<String>> domainSocketPaths = new ConcurrentHashMap<>();
+    private final Set<InetAddress> localAddresses = localAddresses();
     private final Bootstrap bootstrap;
+    private final Bootstrap domainSocketBootstrap; // 连接本机服务端的 unix domain socket，传输层不支持时为 null
     private final EventLoopGroup eventLoopGroup;
-    private final AtomicInteger reconnectNum = new AtomicInteger(0); // 重连计数器
+    private final byte codec; // 请求使用的序列化方式，服务端按请求的序列化方式回应
+    private final byte compressType; // 首选的压缩算法，是否真正压缩由编码器的压缩策略决定
+    private final ServiceCodecs serviceCodecs; // 编译期生成的编解码器
+    private final OverloadPolicyEnum overloadPolicy; // 服务提供者的未完成请求达到上限时的处理方式
 
     public NettyRpcClient() {
+        serviceCodecs = SingletonFactory.getInstance(ServiceCodecs.class);
+        codec = SerializationTypeEnum.getCode(
+                RpcPropertiesUtil.getString(RpcConfigEnum.SERIALIZE_TYPE, SerializationTypeEnum.HESSIAN2.getName()));
+        compressType = CompressTypeEnum.getCode(
+                RpcPropertiesUtil.getString(RpcConfigEnum.COMPRESS_TYPE, CompressTypeEnum.GZIP.getName()));
+        overloadPolicy = OverloadPolicyEnum.of(
+                RpcPropertiesUtil.getString(RpcConfigEnum.CLIENT_OVERLOAD_POLICY, OverloadPolicyEnum.WAIT.getName()));
+        // 输出缓冲区超过高水位后连接不再接受新的请求，直到降到低水位以下
+        int highWaterMark = RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_WRITE_BUFFER_HIGH_WATER_MARK, DEFAULT_HIGH_WATER_MARK);
+        WriteBufferWaterMark writeBufferWaterMark = new WriteBufferWaterMark(highWaterMark / 2, highWaterMark);
         // initialize resources such as EventLoopGroup, Bootstrap
-        eventLoopGroup = new NioEventLoopGroup(); // 时间循环组，默认线程数为 2 * cpu核心数
+        NettyTransport transport = NettyTransport.select(); // 有 epoll 时用 epoll，否则用 NIO
+        eventLoopGroup = transport.newEventLoopGroup(0); // 时间循环组，默认线程数为 2 * cpu核心数
+        // tcp 和 unix domain socket 上的连接使用同样的 pipeline
+        ChannelInitializer<Channel> channelInitializer = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ChannelPipeline p = ch.pipeline();
+                // If no data is sent to the server within 15 seconds, a heartbeat request is sent
+                // 利用心跳机制保持与服务端的长连接, 设置写超时时间为 5 秒，若5秒后没有写操作，NettyRpcClientHandler中的userEventTriggered函数将被触发
+                p.addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS));
+                p.addLast(new RpcMessageEncoder());     // 编码器
+                p.addLast(new RpcMessageDecoder());     // 解码器
+                // 每个连接有自己的未处理请求表，requestId 即协议头中的请求 Id
+                UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+                ch.attr(UnprocessedRequests.UNPROCESSED_REQUESTS_KEY).set(unprocessedRequests);
+                p.addLast(new NettyRpcClientHandler(unprocessedRequests));
+            }
+        };
         bootstrap = new Bootstrap(); // 服务端用 ServerBootstrap()
+        transport.configure(bootstrap);
         bootstrap.group(eventLoopGroup)
-                .channel(NioSocketChannel.class)
+                .channel(transport.socketChannelClass())
                 .handler(new LoggingHandler(LogLevel.INFO))
                 //  The timeout period of the connection.
                 //  If this time is exceeded or the connection cannot be established, the connection fails.
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000)
-                .handler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) {
-                        ChannelPipeline p = ch.pipeline();
-                        // If no data is sent to the server within 15 seconds, a heartbeat request is sent
-                        // 利用心跳机制保持与服务端的长连接, 设置写超时时间为 5 秒，若5秒后没有写操作，NettyRpcClientHandler中的userEventTriggered函数将被触发
-                        p.addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS));
-                        p.addLast(new RpcMessageEncoder());     // 编码器
-                        p.addLast(new RpcMessageDecoder());     // 解码器
-                        p.addLast(new NettyRpcClientHandler());
-                    }
-                });
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark)
+                .handler(channelInitializer);
+        // 与服务端在同一主机时优先走 unix domain socket
+        if (transport.supportsDomainSocket() && RpcPropertiesUtil.getBoolean(RpcConfigEnum.TRANSPORT_PREFER_UDS, true)) {
+            domainSocketBootstrap = new Bootstrap()
+                    .group(eventLoopGroup)
+                    .channel(transport.domainSocketChannelClass())
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000)
+                    .option(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark)
+                    .handler(channelInitializer);
+        } else {
+            domainSocketBootstrap = null;
+        }
         this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension("zk"); // zookeeper注册中心
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
         this.channelProvider = SingletonFactory.getInstance(ChannelProvider.class);
+        this.circuitBreakers = SingletonFactory.getInstance(CircuitBreakers.class);
+        this.rpcTimer = SingletonFactory.getInstance(RpcTimer.class);
+        this.pingTimeoutMillis = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_WARMUP_TIMEOUT_MILLIS, DEFAULT_PING_TIMEOUT_MILLIS);
     }
 
     /**
-     * connect server and get the channel ,so that you can send rpc message to server
-     * 链接服务器获得通道，发送数据给服务器
+     * connect server without blocking the caller, a server on this host is connected over its unix domain socket
+     * 异步连接服务器，连接结果由返回的 future 通知
      * @param inetSocketAddress server address
-     * @return the channel
+     * @return completed with the channel once connected
      */
-    @SneakyThrows
-    public Channel doConnect(InetSocketAddress inetSocketAddress) {
-        if (reconnectNum.get() > 3) {
-            throw new IllegalStateException();
-        }
+    public CompletableFuture<Channel> connect(InetSocketAddress inetSocketAddress) {
         CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
+        if (domainSocketBootstrap == null) {
+            connectTcp(inetSocketAddress, completableFuture);
+            return completableFuture;
+        }
+        domainSocketPathOf(inetSocketAddress).thenAccept(domainSocketPath -> {
+            if (domainSocketPath == null || !new File(domainSocketPath).exists()) {
+                connectTcp(inetSocketAddress, completableFuture);
+            } else {
+                connectDomainSocket(inetSocketAddress, domainSocketPath, completableFuture);
+            }
+        });
+        return completableFuture;
+    }
+
+    private void connectDomainSocket(InetSocketAddress inetSocketAddress, String domainSocketPath, CompletableFuture<Channel> completableFuture) {
+        domainSocketBootstrap.connect(new DomainSocketAddress(domainSocketPath)).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                log.info("客户端通过 unix domain socket [{}] 连接到 [{}] !", domainSocketPath, inetSocketAddress);
+                completableFuture.complete(future.channel());
+            } else {
+                log.warn("connect to unix domain socket [{}] of [{}] fail, use tcp", domainSocketPath, inetSocketAddress, future.cause());
+                domainSocketPaths.remove(inetSocketAddress); // 服务端可能换了 socket，下次重新查询
+                connectTcp(inetSocketAddress, completableFuture);
+            }
+        });
+    }
+
+    private void connectTcp(InetSocketAddress inetSocketAddress, CompletableFuture<Channel> completableFuture) {
         bootstrap.connect(inetSocketAddress).addListener((ChannelFutureListener) future -> { // 监听结果的回调函数
             if (future.isSuccess()) {
-                log.info("客户端经过[{}]次尝试，成功连接到 [{}] !", reconnectNum.getAndSet(0), inetSocketAddress.toString());
+                log.info("客户端成功连接到 [{}] !", inetSocketAddress);
                 completableFuture.complete(future.channel());
-            } else { // 链接失败，重试
-//                throw new IllegalStateException();
-                log.info("客户端连接服务器失败，5秒后尝试第[{}]次重新连接服务器！", reconnectNum.incrementAndGet());
-                future.channel().eventLoop().schedule(() -> {
-                    doConnect(inetSocketAddress);
-                }, 5, TimeUnit.SECONDS);
+            } else { // 连接失败，由 ChannelProvider 决定何时重连
+                log.info("客户端连接服务器 [{}] 失败", inetSocketAddress);
+                completableFuture.completeExceptionally(future.cause());
             }
         });
-        return completableFuture.get();
+    }
+
+    /**
+     * looked up once per address without blocking the caller, connect may run on an event loop
+     *
+     * @return completed with the unix domain socket the server advertised if it runs on this host, null otherwise
+     */
+    private CompletableFuture<String> domainSocketPathOf(InetSocketAddress inetSocketAddress) {
+        if (!isLocal(inetSocketAddress.getAddress())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return domainSocketPaths.computeIfAbsent(inetSocketAddress, address -> CuratorUtils.getDomainSocketPath(
+                address.getHostString() + ":" + address.getPort(), CuratorUtils.getZkClient()));
+    }
+
+    private boolean isLocal(InetAddress address) {
+        return address != null && (address.isLoopbackAddress() || address.isAnyLocalAddress() || localAddresses.contains(address));
+    }
+
+    /**
+     * addresses of the network interfaces of this host, enumerated once instead of on every connect
+     */
+    private static Set<InetAddress> localAddresses() {
+        Set<InetAddress> localAddresses = new HashSet<>();
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                localAddresses.addAll(Collections.list(networkInterface.getInetAddresses()));
+            }
+        } catch (SocketException e) {
+            log.warn("list the network interfaces fail, only loopback servers are reached over unix domain sockets", e);
+        }
+        return localAddresses;
     }
 
     /**
@@ -114,38 +244,210 @@ public final class NettyRpcClient implements RpcRequestTransport {
         CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
         // get server address 服务发现，通过负载均衡算法获取服务地址
         InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
-        // get  server address related channel 连接服务端，获取服务地址的相关通道
-        Channel channel = getChannel(inetSocketAddress);
-        if (channel.isActive()) {
-            // put unprocessed request 异步
-            unprocessedRequests.put(rpcRequest.getRequestId(), resultFuture); // 请求被发送前，将其放入未处理请求map，requestId是唯一的
-            RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest) // 封装请求信息
-                    .codec(SerializationTypeEnum.HESSIAN.getCode())
-                    .compress(CompressTypeEnum.GZIP.getCode())
-                    .messageType(RpcConstants.REQUEST_TYPE).build();
-            channel.writeAndFlush(rpcMessage).addListener((ChannelFutureListener) future -> { // 发送信息，添加处理返回的回调函数监听返回
-                if (future.isSuccess()) { // 链接成功
-                    log.info("客户端成功发送信息: [{}]", rpcMessage);
-                } else { // 连接失败，关闭通道
-                    future.channel().close();
-                    resultFuture.completeExceptionally(future.cause());
-                    log.error("客户端发送信息失败：", future.cause());
-                }
-            });
-        } else {
-            throw new IllegalStateException();
+        send(inetSocketAddress, rpcRequest, resultFuture);
+        return resultFuture;
+    }
+
+    @Override
+    public Object sendRpcRequest(RpcRequest rpcRequest, HedgePolicy hedgePolicy, RetryPolicy retryPolicy) {
+        // 对冲和重试的请求发往还没有试过的服务提供者，发给同一个没有意义
+        Set<InetSocketAddress> tried = ConcurrentHashMap.newKeySet();
+        Function<Boolean, CompletableFuture<RpcResponse<Object>>> sender = copy -> {
+            InetSocketAddress target = tried.isEmpty() ? serviceDiscovery.lookupService(rpcRequest) : serviceDiscovery.lookupService(rpcRequest, tried);
+            if (target == null && copy) {
+                return null;
+            }
+            // 重试时所有服务提供者都试过了，重新选择一个
+            target = target == null ? serviceDiscovery.lookupService(rpcRequest) : target;
+            tried.add(target);
+            CompletableFuture<RpcResponse<Object>> attemptFuture = new CompletableFuture<>();
+            send(target, rpcRequest, attemptFuture);
+            return attemptFuture;
+        };
+        Supplier<CompletableFuture<RpcResponse<Object>>> attempt = hedgePolicy == null
+                ? () -> sender.apply(false) : () -> hedgePolicy.call(sender, eventLoopGroup);
+        return retryPolicy == null ? attempt.get() : retryPolicy.call(attempt, eventLoopGroup);
+    }
+
+    private void send(InetSocketAddress inetSocketAddress, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> resultFuture) {
+        // get server address related channel 获取服务地址的相关通道，需要新建连接时不阻塞调用线程
+        getChannel(inetSocketAddress).whenComplete((channel, cause) -> {
+            if (cause != null) {
+                resultFuture.completeExceptionally(cause);
+            } else if (channel == null) {
+                overloaded(inetSocketAddress, rpcRequest, resultFuture);
+            } else {
+                send(channel, inetSocketAddress, rpcRequest, resultFuture);
+            }
+        });
+    }
+
+    /**
+     * the provider already has as many requests in flight as it may, or its connections cannot take more writes
+     */
+    private void overloaded(InetSocketAddress inetSocketAddress, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> resultFuture) {
+        switch (overloadPolicy) {
+            case WAIT:
+                // 不占用线程，某个请求完成后再试，超时由调用方负责
+                channelProvider.awaitRoom(inetSocketAddress).thenRun(() -> {
+                    if (resultFuture.isDone()) {
+                        channelProvider.release(inetSocketAddress); // 把空位让给下一个等待者
+                    } else {
+                        send(inetSocketAddress, rpcRequest, resultFuture);
+                    }
+                });
+                break;
+            case SPILL:
+                List<InetSocketAddress> others = new ArrayList<>(serviceDiscovery.lookupAll(rpcRequest.getRpcServiceName()));
+                others.remove(inetSocketAddress);
+                spill(others.iterator(), rpcRequest, resultFuture);
+                break;
+            default:
+                resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.CLIENT_OVERLOADED, inetSocketAddress.toString()));
         }
+    }
 
-        return resultFuture;
+    /**
+     * send the call to the first of the other providers that has room
+     */
+    private void spill(Iterator<InetSocketAddress> others, RpcRequest rpcRequest, CompletableFuture<RpcResponse<Object>> resultFuture) {
+        if (!others.hasNext()) {
+            resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.CLIENT_OVERLOADED,
+                    "every provider of " + rpcRequest.getRpcServiceName()));
+            return;
+        }
+        InetSocketAddress other = others.next();
+        getChannel(other).whenComplete((channel, cause) -> {
+            if (cause == null && channel != null) {
+                send(channel, other, rpcRequest, resultFuture);
+            } else {
+                spill(others, rpcRequest, resultFuture);
+            }
+        });
+    }
+
+    /**
+     * subscribe to the service, open the connections to all of its providers and ping each of them
+     */
+    @Override
+    public CompletableFuture<Void> warmUp(String rpcServiceName, int pings) {
+        List<CompletableFuture<Void>> providers = new ArrayList<>();
+        for (InetSocketAddress inetSocketAddress : serviceDiscovery.lookupAll(rpcServiceName)) {
+            providers.add(channelProvider.warmUp(inetSocketAddress, this::connect)
+                    .thenCompose(channels -> ping(channels, pings)));
+        }
+        return CompletableFuture.allOf(providers.toArray(new CompletableFuture[0]));
+    }
+
+    private CompletableFuture<Void> ping(List<Channel> channels, int pings) {
+        List<CompletableFuture<Void>> pongs = new ArrayList<>(channels.size());
+        for (Channel channel : channels) {
+            // 同一连接上的心跳依次发送，每次都走一遍完整的编解码和往返
+            CompletableFuture<Void> pong = CompletableFuture.completedFuture(null);
+            for (int i = 0; i < pings; i++) {
+                pong = pong.thenCompose(v -> ping(channel, rpcTimer, pingTimeoutMillis));
+            }
+            pongs.add(pong);
+        }
+        return CompletableFuture.allOf(pongs.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * @return completed when the server answers the heartbeat, or exceptionally after the timeout: a server older
+     * than warm-up answers with request id 0, its ping must not hold a slot of the connection for good
+     */
+    static CompletableFuture<Void> ping(Channel channel, RpcTimer rpcTimer, long timeoutMillis) {
+        CompletableFuture<RpcResponse<Object>> pong = new CompletableFuture<>();
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.of(channel);
+        int requestId = unprocessedRequests.put(pong);
+        // 先让出未处理请求表中的位置再完成：依赖 pong 的回调后注册先执行，调用方看到超时时位置必须已经空出
+        Timeout timeout = rpcTimer.schedule(t -> {
+            unprocessedRequests.remove(requestId);
+            pong.completeExceptionally(new RpcException(RpcErrorMessageEnum.REQUEST_TIMEOUT,
+                    "ping " + channel.remoteAddress() + " after " + timeoutMillis + "ms"));
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        pong.whenComplete((rpcResponse, throwable) -> timeout.cancel());
+        RpcMessage rpcMessage = NettyRpcClientHandler.heartbeat(NettyRpcClientHandler.protocolVersion(channel));
+        rpcMessage.setRequestId(requestId);
+        CoalescingWriter.of(channel).write(rpcMessage).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                unprocessedRequests.remove(requestId);
+                pong.completeExceptionally(future.cause());
+            }
+        });
+        return pong.thenApply(rpcResponse -> null);
+    }
+
+    private void send(Channel channel, InetSocketAddress inetSocketAddress, RpcRequest rpcRequest,
+                      CompletableFuture<RpcResponse<Object>> resultFuture) {
+        // 以下提前返回的情况都没有占用空位，把唤醒传给下一个等待者，否则它们要等到自己超时
+        if (resultFuture.isDone()) { // 等待连接时已经超时
+            channelProvider.release(inetSocketAddress);
+            return;
+        }
+        if (!channel.isActive()) {
+            channelProvider.release(inetSocketAddress);
+            resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE,
+                    "channel closed: " + channel.remoteAddress()));
+            return;
+        }
+        // put unprocessed request 异步
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.of(channel);
+        int requestId;
+        try {
+            requestId = unprocessedRequests.put(resultFuture); // 请求被发送前，将其放入该连接的未处理请求表，得到唯一的requestId
+        } catch (IllegalStateException e) {
+            channelProvider.release(inetSocketAddress);
+            resultFuture.completeExceptionally(new RpcException(RpcErrorMessageEnum.CLIENT_OVERLOADED, e.getMessage()));
+            return;
+        }
+        CircuitBreaker circuitBreaker = circuitBreakers.of(inetSocketAddress);
+        boolean probe = circuitBreaker.onSend();
+        long start = System.nanoTime();
+        resultFuture.whenComplete((rpcResponse, throwable) -> {
+            channelProvider.release(inetSocketAddress); // 唤醒一个等待空位的请求
+            // 被对冲请求比下去而取消的调用说明不了服务提供者的好坏，探测除外
+            if (probe || !(throwable instanceof CancellationException)) {
+                boolean failed = throwable != null || rpcResponse.getCode() == null || rpcResponse.getCode() != RpcResponseCodeEnum.SUCCESS.getCode();
+                circuitBreaker.record(probe, System.nanoTime() - start, failed);
+            }
+        });
+        RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest) // 封装请求信息
+                .version(NettyRpcClientHandler.protocolVersion(channel))
+                .codec(codecOf(rpcRequest, channel))
+                .compress(compressType)
+                .requestId(requestId)
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        CoalescingWriter.of(channel).write(rpcMessage).addListener((ChannelFutureListener) future -> { // 发送信息，添加处理返回的回调函数监听返回
+            if (future.isSuccess()) { // 链接成功
+                log.info("客户端成功发送信息: [{}]", rpcMessage);
+            } else { // 连接失败，关闭通道
+                unprocessedRequests.remove(requestId);
+                future.channel().close();
+                resultFuture.completeExceptionally(future.cause());
+                log.error("客户端发送信息失败：", future.cause());
+            }
+        });
     }
 
-    public Channel getChannel(InetSocketAddress inetSocketAddress) {
-        Channel channel = channelProvider.get(inetSocketAddress); // 从 channelProvider 中查看是否已经有该channel
-        if (channel == null) { // 如果没有，重新连接服务端获得channel
-            channel = doConnect(inetSocketAddress); // 连接服务端
-            channelProvider.set(inetSocketAddress, channel); // 将通道注册到channelProvider
+    /**
+     * use the generated codec once the server has shown it has the same one, until then tell it our fingerprint
+     */
+    private byte codecOf(RpcRequest rpcRequest, Channel channel) {
+        Integer fingerprint = serviceCodecs.fingerprintOf(rpcRequest.getInterfaceName());
+        if (fingerprint == null || !serviceCodecs.supports(rpcRequest)) {
+            return codec;
+        }
+        if (ServiceCodecs.peerHas(channel, fingerprint)) {
+            return SerializationTypeEnum.TYPED.getCode();
         }
-        return channel;
+        rpcRequest.setCodecFingerprint(fingerprint);
+        return codec;
+    }
+
+    public CompletableFuture<Channel> getChannel(InetSocketAddress inetSocketAddress) {
+        // 从 channelProvider 的连接池中取负载最低的 channel，池未满且都在忙时才连接服务端
+        return channelProvider.get(inetSocketAddress, this::connect);
     }
 
     public void close() {
@@ -1,11 +1,14 @@
 package github.javaguide.remoting.transport.netty.client;
 
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
 import github.javaguide.enums.SerializationTypeEnum;
-import github.javaguide.factory.SingletonFactory;
+import github.javaguide.exception.RpcException;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.utils.RpcPropertiesUtil;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -13,10 +16,11 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.AttributeKey;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Customize the client ChannelHandler to process the data sent by the server
@@ -30,12 +34,49 @@ import java.net.InetSocketAddress;
  */
 @Slf4j
 public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
+    /**
+     * protocol version the server agreed to, absent until it answers the probe
+     */
+    private static final AttributeKey<Byte> PROTOCOL_VERSION_KEY = AttributeKey.valueOf("protocolVersion");
+
     private final UnprocessedRequests unprocessedRequests;
-    private final NettyRpcClient nettyRpcClient;
+    private final int protocolVersion;
+
+    public NettyRpcClientHandler(UnprocessedRequests unprocessedRequests) {
+        this.unprocessedRequests = unprocessedRequests;
+        this.protocolVersion = RpcPropertiesUtil.getInt(RpcConfigEnum.PROTOCOL_VERSION, RpcConstants.VERSION);
+    }
+
+    /**
+     * @return protocol version to write to the channel, version 1 until the server has answered the probe
+     */
+    public static byte protocolVersion(Channel channel) {
+        Byte version = channel.attr(PROTOCOL_VERSION_KEY).get();
+        return version == null ? RpcConstants.VERSION_1 : version;
+    }
+
+    /**
+     * probe the server with a version 1 heartbeat, a server that speaks version 2 answers with a version 2 pong,
+     * an older one echoes a version 1 pong and the connection stays on version 1
+     */
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (protocolVersion >= RpcConstants.VERSION) {
+            RpcMessage probe = heartbeat(RpcConstants.VERSION_1);
+            probe.setRequestId(RpcConstants.VERSION_PROBE_REQUEST_ID);
+            ctx.writeAndFlush(probe).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+        super.channelActive(ctx);
+    }
 
-    public NettyRpcClientHandler() {
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-        this.nettyRpcClient = SingletonFactory.getInstance(NettyRpcClient.class);
+    /**
+     * the connection is gone, so are the responses of the requests still waiting on it
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        unprocessedRequests.failAll(new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE,
+                "connection closed: " + ctx.channel().remoteAddress()));
+        super.channelInactive(ctx);
     }
 
     /**
@@ -51,10 +92,23 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
                 byte messageType = tmp.getMessageType();
                 if (messageType == RpcConstants.HEARTBEAT_RESPONSE_TYPE) { // 接收到服务端对心跳请求的回应
                     log.info("heart [{}]", tmp.getData());
+                    if (tmp.getVersion() == RpcConstants.VERSION && protocolVersion >= RpcConstants.VERSION) {
+                        ctx.channel().attr(PROTOCOL_VERSION_KEY).set(RpcConstants.VERSION);
+                    }
+                    if (tmp.getRequestId() != 0 && tmp.getRequestId() != RpcConstants.VERSION_PROBE_REQUEST_ID) {
+                        // 预热时发出的心跳，带有请求id，等待它的回应
+                        CompletableFuture<RpcResponse<Object>> pong = unprocessedRequests.remove(tmp.getRequestId());
+                        if (pong != null) {
+                            pong.complete(null);
+                        }
+                    }
                 } else if (messageType == RpcConstants.RESPONSE_TYPE) { // 接收到服务端对某请求的回应
                     RpcResponse<Object> rpcResponse = (RpcResponse<Object>) tmp.getData();
                     // 把服务端响应交给 unprocessedRequests
-                    unprocessedRequests.complete(rpcResponse); // 接收到对应请求id，将该请求从未处理请求map中删除
+                    // 接收到对应请求id，将该请求从未处理请求表中删除；调用已经超时或被取消的迟到响应直接丢弃，连接上的其他请求不受影响
+                    if (!unprocessedRequests.complete(tmp.getRequestId(), rpcResponse)) {
+                        log.debug("drop late response of request [{}]", tmp.getRequestId());
+                    }
                 }
             }
         } finally {
@@ -74,12 +128,8 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
             IdleState state = ((IdleStateEvent) evt).state();
             if (state == IdleState.WRITER_IDLE) {
                 log.info("write idle happen [{}]", ctx.channel().remoteAddress());
-                Channel channel = nettyRpcClient.getChannel((InetSocketAddress) ctx.channel().remoteAddress());
-                RpcMessage rpcMessage = new RpcMessage();
-                rpcMessage.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
-                rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
-                rpcMessage.setMessageType(RpcConstants.HEARTBEAT_REQUEST_TYPE); // 设置请求类型为心跳请求
-                rpcMessage.setData(RpcConstants.PING);
+                Channel channel = ctx.channel(); // 也可能是 unix domain socket 连接，没有 InetSocketAddress
+                RpcMessage rpcMessage = heartbeat(protocolVersion(channel));
                 channel.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE); // 发送心跳信息
             }
         } else {
@@ -87,6 +137,16 @@ public class NettyRpcClientHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    static RpcMessage heartbeat(byte version) {
+        RpcMessage rpcMessage = new RpcMessage();
+        rpcMessage.setVersion(version);
+        rpcMessage.setCodec(SerializationTypeEnum.PROTOSTUFF.getCode());
+        rpcMessage.setCompress(CompressTypeEnum.NONE.getCode());
+        rpcMessage.setMessageType(RpcConstants.HEARTBEAT_REQUEST_TYPE); // 设置请求类型为心跳请求
+        rpcMessage.setData(RpcConstants.PING);
+        return rpcMessage;
+    }
+
     /**
      * Called when an exception occurs in processing a client message
      */
@@ -1,31 +1,152 @@
 package github.javaguide.remoting.transport.netty.client;
 
 import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
 
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * unprocessed requests by the server.
  * 服务器未处理的请求类
+ * <p>
+ * One table per channel, keyed by the request id written in the protocol header. The id is handed out by the table
+ * itself and maps directly to a slot ({@code id & mask}), so neither putting nor completing a request allocates
+ * a key object or a map entry. The slot is owned through a CAS on a primitive long key that remembers the id it was
+ * taken for, so a late response for an id whose slot has been reused is rejected instead of completing the wrong call.
+ *
  * @author shuang.kou
  * @createTime 2020年06月04日 17:30:00
  */
 public class UnprocessedRequests {
-    // 用map保存服务器未处理的请求
-    private static final Map<String, CompletableFuture<RpcResponse<Object>>> UNPROCESSED_RESPONSE_FUTURES = new ConcurrentHashMap<>();
 
-    public void put(String requestId, CompletableFuture<RpcResponse<Object>> future) {
-        UNPROCESSED_RESPONSE_FUTURES.put(requestId, future);
+    public static final AttributeKey<UnprocessedRequests> UNPROCESSED_REQUESTS_KEY = AttributeKey.valueOf("unprocessedRequests");
+
+    /**
+     * id 0 is never handed out, it is what heartbeat messages carry
+     */
+    private static final int NO_REQUEST_ID = 0;
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final long FREE = 0L;
+    private static final long REMOVING = -1L;
+    private static final long KEY_TAG = 1L << 32;
+
+    private final int mask;
+    private final AtomicReferenceArray<CompletableFuture<RpcResponse<Object>>> futures;
+    private final AtomicLongArray keys;
+    private final AtomicInteger nextRequestId = new AtomicInteger(NO_REQUEST_ID);
+    private final AtomicInteger size = new AtomicInteger();
+
+    public UnprocessedRequests() {
+        this(DEFAULT_CAPACITY);
     }
 
-    public void complete(RpcResponse<Object> rpcResponse) { // 处理完成，从map中删除请求
-        CompletableFuture<RpcResponse<Object>> future = UNPROCESSED_RESPONSE_FUTURES.remove(rpcResponse.getRequestId());
-        if (null != future) {
-            future.complete(rpcResponse);
-        } else {
-            throw new IllegalStateException();
+    /**
+     * @param capacity max number of requests waiting for a response on one channel, rounded up to a power of two
+     */
+    public UnprocessedRequests(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.futures = new AtomicReferenceArray<>(size);
+        this.keys = new AtomicLongArray(size);
+    }
+
+    public static UnprocessedRequests of(Channel channel) {
+        return channel.attr(UNPROCESSED_REQUESTS_KEY).get();
+    }
+
+    /**
+     * 请求被发送前放入未处理请求表；调用方让 future 异常完成（超时、取消）时请求让出位置，之后到达的响应被丢弃
+     *
+     * @param future completed when the response arrives
+     * @return the request id that must be written into the message header
+     * @throws IllegalStateException if every slot is taken
+     */
+    public int put(CompletableFuture<RpcResponse<Object>> future) {
+        for (int attempt = 0; attempt <= mask; attempt++) {
+            int requestId = nextRequestId.incrementAndGet();
+            if (requestId == NO_REQUEST_ID) {
+                continue;
+            }
+            int slot = requestId & mask;
+            // a slot still taken means that request is very slow, just move on to the next id
+            if (keys.get(slot) == FREE && keys.compareAndSet(slot, FREE, key(requestId))) {
+                size.incrementAndGet();
+                futures.set(slot, future);
+                future.whenComplete((rpcResponse, throwable) -> {
+                    if (throwable != null) {
+                        remove(requestId);
+                    }
+                });
+                return requestId;
+            }
         }
+        throw new IllegalStateException("too many unprocessed requests: " + (mask + 1));
+    }
+
+    /**
+     * 处理完成，从表中删除请求
+     *
+     * @param requestId   request id from the response header
+     * @param rpcResponse response
+     * @return false if the request is no longer waiting, eg: its call timed out or was cancelled before the
+     * response arrived
+     */
+    public boolean complete(int requestId, RpcResponse<Object> rpcResponse) {
+        CompletableFuture<RpcResponse<Object>> future = remove(requestId);
+        if (null == future) {
+            return false;
+        }
+        future.complete(rpcResponse);
+        return true;
+    }
+
+    /**
+     * @param requestId request id
+     * @return the future of the request, or null if it is not (or no longer) waiting
+     */
+    public CompletableFuture<RpcResponse<Object>> remove(int requestId) {
+        int slot = requestId & mask;
+        if (!keys.compareAndSet(slot, key(requestId), REMOVING)) {
+            return null;
+        }
+        CompletableFuture<RpcResponse<Object>> future;
+        // failAll may find the key before put stored the future, put is about to store it
+        while ((future = futures.getAndSet(slot, null)) == null) {
+            Thread.yield();
+        }
+        keys.set(slot, FREE);
+        size.decrementAndGet();
+        return future;
+    }
+
+    /**
+     * @return number of requests waiting for a response
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * fails every request still waiting, eg: when the connection they were sent on is gone
+     */
+    public void failAll(Throwable cause) {
+        for (int slot = 0; slot <= mask; slot++) {
+            long key = keys.get(slot);
+            if (key != FREE && key != REMOVING) {
+                CompletableFuture<RpcResponse<Object>> future = remove((int) key);
+                if (future != null) {
+                    future.completeExceptionally(cause);
+                }
+            }
+        }
+    }
+
+    private static long key(int requestId) {
+        // tag the unsigned id so that no key is ever equal to FREE or REMOVING
+        return (requestId & 0xFFFFFFFFL) | KEY_TAG;
     }
 }
@@ -1,20 +1,29 @@
 package github.javaguide.remoting.transport.netty.codec;
 
+import github.javaguide.codec.CodecSupport;
+import github.javaguide.codec.ServiceCodecs;
 import github.javaguide.compress.Compress;
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.exception.SerializeException;
 import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.factory.SingletonFactory;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.serialize.Serializer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * custom protocol decoder 自定义的编码协议
@@ -35,6 +44,8 @@ import java.util.Arrays;
  * <p>
  * {@link LengthFieldBasedFrameDecoder} is a length-based decoder , used to solve TCP unpacking and sticking problems.
  * </p>
+ * Version 2 frames (see {@link RpcMessageEncoder}) carry a varint length, the decoder frames them itself and resolves
+ * the method ids with the definitions the peer's encoder sent earlier on the same connection.
  *
  * @author wangtao
  * @createTime on 2020/10/2
@@ -42,6 +53,23 @@ import java.util.Arrays;
  */
 @Slf4j
 public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
+
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<>();
+
+    static {
+        Class<?>[] primitiveTypes = {boolean.class, byte.class, char.class, short.class, int.class, long.class,
+            float.class, double.class, void.class};
+        for (Class<?> type : primitiveTypes) {
+            PRIMITIVE_TYPES.put(type.getName(), type);
+        }
+    }
+
+    private final ServiceCodecs serviceCodecs = SingletonFactory.getInstance(ServiceCodecs.class);
+    /**
+     * v2 methods defined by the peer on this connection, key: method id
+     */
+    private final Map<Integer, RpcRequest> methods = new HashMap<>();
+
     public RpcMessageDecoder() {
         // lengthFieldOffset: magic code is 4B, and version is 1B, and then full length. so value is 5
         // lengthFieldLength: full length is 4B. so value is 4
@@ -67,12 +95,18 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
 
     @Override
     protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        if (in.readableBytes() <= RpcConstants.MAGIC_NUMBER.length) {
+            return null;
+        }
+        if (in.getByte(in.readerIndex() + RpcConstants.MAGIC_NUMBER.length) == RpcConstants.VERSION) {
+            return decodeV2(ctx, in);
+        }
         Object decoded = super.decode(ctx, in);
         if (decoded instanceof ByteBuf) {
             ByteBuf frame = (ByteBuf) decoded;
             if (frame.readableBytes() >= RpcConstants.TOTAL_LENGTH) {
                 try {
-                    return decodeFrame(frame);
+                    return decodeFrame(ctx, frame);
                 } catch (Exception e) {
                     log.error("Decode frame error!", e);
                     throw e;
@@ -86,12 +120,58 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
     }
 
 
+    private Object decodeV2(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        // peek the varint length, the frame is complete once that many bytes follow it
+        int index = in.readerIndex() + RpcConstants.MAGIC_NUMBER.length + 1;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (index >= in.writerIndex()) {
+                return null;
+            }
+            byte b = in.getByte(index++);
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+            if (shift >= 21) {
+                throw new CorruptedFrameException("malformed frame length");
+            }
+        }
+        if (length > RpcConstants.MAX_FRAME_LENGTH) {
+            throw new TooLongFrameException("Adjusted frame length exceeds " + RpcConstants.MAX_FRAME_LENGTH + ": " + length);
+        }
+        if (in.writerIndex() - index < length) {
+            return null;
+        }
+        ByteBuf frame = in.readRetainedSlice(index + length - in.readerIndex());
+        try {
+            checkMagicNumber(frame);
+            frame.skipBytes(1);
+            CodecSupport.readVarInt(frame);
+            byte messageType = frame.readByte();
+            byte codecType = frame.readByte();
+            byte compressType = frame.readByte();
+            RpcMessage rpcMessage = RpcMessage.builder()
+                    .version(RpcConstants.VERSION)
+                    .codec(codecType)
+                    .requestId(CodecSupport.readVarInt(frame))
+                    .messageType(messageType).build();
+            return decodeBody(ctx, rpcMessage, compressType, frame);
+        } catch (Exception e) {
+            log.error("Decode frame error!", e);
+            throw e;
+        } finally {
+            frame.release();
+        }
+    }
+
     /**
      * 解碼，反序列化操作
+     * @param ctx
      * @param in
      * @return
      */
-    private Object decodeFrame(ByteBuf in) {
+    private Object decodeFrame(ChannelHandlerContext ctx, ByteBuf in) {
         // note: must read ByteBuf in order
         checkMagicNumber(in);
         checkVersion(in);
@@ -102,9 +182,19 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
         byte compressType = in.readByte();
         int requestId = in.readInt();
         RpcMessage rpcMessage = RpcMessage.builder()
+                .version(RpcConstants.VERSION_1)
                 .codec(codecType)
                 .requestId(requestId)
                 .messageType(messageType).build();
+        return decodeBody(ctx, rpcMessage, compressType, in.readSlice(fullLength - RpcConstants.HEAD_LENGTH));
+
+    }
+
+    /**
+     * @param body the rest of the frame
+     */
+    private RpcMessage decodeBody(ChannelHandlerContext ctx, RpcMessage rpcMessage, byte compressType, ByteBuf body) {
+        byte messageType = rpcMessage.getMessageType();
         if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE) {
             rpcMessage.setData(RpcConstants.PING);
             return rpcMessage;
@@ -113,36 +203,122 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
             rpcMessage.setData(RpcConstants.PONG);
             return rpcMessage;
         }
-        int bodyLength = fullLength - RpcConstants.HEAD_LENGTH;
+        int bodyLength = body.readableBytes();
         if (bodyLength > 0) {
-            byte[] bs = new byte[bodyLength];
-            in.readBytes(bs);
-            // decompress the bytes
-            String compressName = CompressTypeEnum.getName(compressType);
-            Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
-                    .getExtension(compressName);
-            bs = compress.decompress(bs);
-            // deserialize the object
-            String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
-            log.info("codec name: [{}] ", codecName);
-            Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
-                    .getExtension(codecName);
-            if (messageType == RpcConstants.REQUEST_TYPE) {
-                RpcRequest tmpValue = serializer.deserialize(bs, RpcRequest.class); // 反序列化
-                rpcMessage.setData(tmpValue);
+            // the body is a slice of the frame: an uncompressed body is deserialized from it in place,
+            // a compressed one is decompressed straight into a pooled buffer
+            if (compressType == CompressTypeEnum.NONE.getCode()) {
+                deserializeBody(ctx, rpcMessage, body);
             } else {
-                RpcResponse tmpValue = serializer.deserialize(bs, RpcResponse.class);
-                rpcMessage.setData(tmpValue);
+                String compressName = CompressTypeEnum.getName(compressType);
+                Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
+                        .getExtension(compressName);
+                ByteBuf decompressed = ctx.alloc().ioBuffer(bodyLength);
+                try {
+                    compress.decompress(body, decompressed);
+                    deserializeBody(ctx, rpcMessage, decompressed);
+                } finally {
+                    decompressed.release();
+                }
             }
         }
         return rpcMessage;
+    }
+
+    private void deserializeBody(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf body) {
+        if (rpcMessage.getCodec() == SerializationTypeEnum.TYPED.getCode()) {
+            // 编译期生成的编解码器，不需要反射
+            if (rpcMessage.getMessageType() == RpcConstants.REQUEST_TYPE) {
+                rpcMessage.setData(serviceCodecs.readRequest(body));
+            } else {
+                // a typed response proves the peer has the same codec, later requests can be typed too
+                ServiceCodecs.markPeer(ctx.channel(), body.getInt(body.readerIndex()));
+                rpcMessage.setData(serviceCodecs.readResponse(body));
+            }
+            return;
+        }
+        // deserialize the object
+        String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
+        log.info("codec name: [{}] ", codecName);
+        Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
+                .getExtension(codecName);
+        if (rpcMessage.getVersion() == RpcConstants.VERSION) {
+            rpcMessage.setData(rpcMessage.getMessageType() == RpcConstants.REQUEST_TYPE
+                    ? readRequestV2(serializer, body) : readResponseV2(serializer, body));
+        } else if (rpcMessage.getMessageType() == RpcConstants.REQUEST_TYPE) {
+            RpcRequest tmpValue = serializer.deserialize(body, RpcRequest.class); // 反序列化
+            rpcMessage.setData(tmpValue);
+        } else {
+            RpcResponse tmpValue = serializer.deserialize(body, RpcResponse.class);
+            rpcMessage.setData(tmpValue);
+        }
+    }
 
+    private RpcRequest readRequestV2(Serializer serializer, ByteBuf body) {
+        int methodRef = CodecSupport.readVarInt(body);
+        int methodId = methodRef >>> 1;
+        RpcRequest method;
+        if ((methodRef & 1) != 0) {
+            method = readMethod(body);
+            if (methodId != 0) {
+                methods.put(methodId, method);
+            }
+        } else {
+            method = methods.get(methodId);
+            if (method == null) {
+                throw new SerializeException("unknown method id: " + methodId);
+            }
+        }
+        RpcRequest stripped = serializer.deserialize(body, RpcRequest.class);
+        return RpcRequest.builder()
+                .interfaceName(method.getInterfaceName())
+                .methodName(method.getMethodName())
+                .group(method.getGroup())
+                .version(method.getVersion())
+                .paramTypes(method.getParamTypes())
+                .parameters(stripped.getParameters())
+                .codecFingerprint(stripped.getCodecFingerprint())
+                .build();
+    }
+
+    private static RpcRequest readMethod(ByteBuf body) {
+        RpcRequest.RpcRequestBuilder method = RpcRequest.builder()
+                .interfaceName(CodecSupport.readString(body))
+                .methodName(CodecSupport.readString(body))
+                .group(CodecSupport.readString(body))
+                .version(CodecSupport.readString(body));
+        Class<?>[] paramTypes = new Class<?>[CodecSupport.readVarInt(body)];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramTypes[i] = classOf(CodecSupport.readString(body));
+        }
+        return method.paramTypes(paramTypes).build();
+    }
+
+    private static Class<?> classOf(String name) {
+        Class<?> primitive = PRIMITIVE_TYPES.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+        try {
+            return Class.forName(name, false, RpcMessageDecoder.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new SerializeException("unknown parameter type: " + name);
+        }
+    }
+
+    private static RpcResponse<Object> readResponseV2(Serializer serializer, ByteBuf body) {
+        @SuppressWarnings("unchecked")
+        RpcResponse<Object> rpcResponse = serializer.deserialize(body, RpcResponse.class);
+        if (rpcResponse.getMessage() == null) {
+            rpcResponse.setMessage(RpcResponseCodeEnum.messageOf(rpcResponse.getCode()));
+        }
+        return rpcResponse;
     }
 
     private void checkVersion(ByteBuf in) {
         // read the version and compare
         byte version = in.readByte();
-        if (version != RpcConstants.VERSION) {
+        if (version != RpcConstants.VERSION_1) {
             throw new RuntimeException("version isn't compatible" + version);
         }
     }
@@ -150,13 +326,12 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
     private void checkMagicNumber(ByteBuf in) {
         // read the first 4 bit, which is the magic number, and compare
         int len = RpcConstants.MAGIC_NUMBER.length;
-        byte[] tmp = new byte[len];
-        in.readBytes(tmp);
         for (int i = 0; i < len; i++) {
-            if (tmp[i] != RpcConstants.MAGIC_NUMBER[i]) {
-                throw new IllegalArgumentException("Unknown magic code: " + Arrays.toString(tmp));
+            if (in.getByte(in.readerIndex() + i) != RpcConstants.MAGIC_NUMBER[i]) {
+                throw new IllegalArgumentException("Unknown magic code: " + ByteBufUtil.hexDump(in, in.readerIndex(), len));
             }
         }
+        in.skipBytes(len);
     }
 
 }
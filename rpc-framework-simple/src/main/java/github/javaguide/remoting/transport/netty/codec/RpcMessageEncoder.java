@@ -1,19 +1,28 @@
 package github.javaguide.remoting.transport.netty.codec;
 
 
+import github.javaguide.codec.CodecSupport;
+import github.javaguide.codec.MethodCodec;
+import github.javaguide.codec.ServiceCodecs;
 import github.javaguide.compress.Compress;
+import github.javaguide.compress.CompressPolicy;
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.factory.SingletonFactory;
 import github.javaguide.remoting.constants.RpcConstants;
 import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.serialize.Serializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.HashMap;
+import java.util.Map;
 
 
 /**
@@ -35,6 +44,14 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
  * body（object类型数据）
  * </pre>
+ * version 2 drops the fixed width fields and the names repeated by every call:
+ * <pre>
+ *   4B magic code | 1B version=2 | varint length of the rest | 1B messageType | 1B codec | 1B compress | varint requestId | body
+ * </pre>
+ * The first request of a method on a connection defines it under a new method id, later requests only carry the id.
+ * The rest of the request body and the response body are the dto without the fields the id or the code implies.
+ * Both tables belong to the encoder / decoder pair of one connection.
+ *
  *
  * @author WangTao
  * @createTime on 2020/10/2
@@ -43,7 +60,22 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
-    private static final AtomicInteger ATOMIC_INTEGER = new AtomicInteger(0);
+
+    private final CompressPolicy compressPolicy;
+    private final ServiceCodecs serviceCodecs;
+    /**
+     * v2 method ids of this connection, key: rpcServiceName + {@link MethodCodec#key(String, Class[])}
+     */
+    private final Map<String, Integer> methodIds = new HashMap<>();
+    /**
+     * key of the method id the message being encoded defines, it is only kept if the whole frame is encoded
+     */
+    private String definedMethod;
+
+    public RpcMessageEncoder() {
+        this.compressPolicy = SingletonFactory.getInstance(CompressPolicy.class);
+        this.serviceCodecs = SingletonFactory.getInstance(ServiceCodecs.class);
+    }
 
     /**
      * 編碼，序列化操作
@@ -54,46 +86,148 @@ public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
     @Override
     protected void encode(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf out) {
         try {
+            if (rpcMessage.getVersion() == RpcConstants.VERSION) {
+                encodeV2(ctx, rpcMessage, out);
+                return;
+            }
+            int startIndex = out.writerIndex();
             out.writeBytes(RpcConstants.MAGIC_NUMBER);
-            out.writeByte(RpcConstants.VERSION);
+            out.writeByte(RpcConstants.VERSION_1);
             // leave a place to write the value of full length
             out.writerIndex(out.writerIndex() + 4);
-            byte messageType = rpcMessage.getMessageType();
-            out.writeByte(messageType);
+            out.writeByte(rpcMessage.getMessageType());
             out.writeByte(rpcMessage.getCodec());
-            out.writeByte(CompressTypeEnum.GZIP.getCode());
-            out.writeInt(ATOMIC_INTEGER.getAndIncrement());
-            // build full length
-            byte[] bodyBytes = null;
-            int fullLength = RpcConstants.HEAD_LENGTH;
+            int compressIndex = out.writerIndex();
+            out.writeByte(CompressTypeEnum.NONE.getCode());
+            out.writeInt(rpcMessage.getRequestId());
             // if messageType is not heartbeat message,fullLength = head length + body length
-            if (messageType != RpcConstants.HEARTBEAT_REQUEST_TYPE
-                    && messageType != RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
-                // serialize the object
-                String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
-                log.info("codec name: [{}] ", codecName);
-                Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
-                        .getExtension(codecName);
-                bodyBytes = serializer.serialize(rpcMessage.getData()); // 序列化操作
-                // compress the bytes
-                String compressName = CompressTypeEnum.getName(rpcMessage.getCompress());
-                Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
-                        .getExtension(compressName);
-                bodyBytes = compress.compress(bodyBytes); // 压缩
-                fullLength += bodyBytes.length;
+            writeBody(ctx, rpcMessage, compressIndex, out);
+            // build full length
+            int fullLength = out.writerIndex() - startIndex;
+            out.setInt(startIndex + RpcConstants.MAGIC_NUMBER.length + 1, fullLength);
+        } catch (Exception e) {
+            // 定义方法 id 的报文没有发出去，服务端不认识这个 id，下次调用重新定义
+            if (definedMethod != null) {
+                methodIds.remove(definedMethod);
+            }
+            log.error("Encode request error!", e);
+        } finally {
+            definedMethod = null;
+        }
+    }
+
+    /**
+     * the length comes before the rest of the frame and its width depends on it, so the rest is encoded first
+     */
+    private void encodeV2(ChannelHandlerContext ctx, RpcMessage rpcMessage, ByteBuf out) {
+        ByteBuf rest = ctx.alloc().ioBuffer();
+        try {
+            rest.writeByte(rpcMessage.getMessageType());
+            rest.writeByte(rpcMessage.getCodec());
+            rest.writeByte(CompressTypeEnum.NONE.getCode());
+            CodecSupport.writeVarInt(rest, rpcMessage.getRequestId());
+            writeBody(ctx, rpcMessage, 2, rest);
+            out.writeBytes(RpcConstants.MAGIC_NUMBER);
+            out.writeByte(RpcConstants.VERSION);
+            CodecSupport.writeVarInt(out, rest.readableBytes());
+            out.writeBytes(rest);
+        } finally {
+            rest.release();
+        }
+    }
+
+    private void writeBody(ChannelHandlerContext ctx, RpcMessage rpcMessage, int compressIndex, ByteBuf out) {
+        byte messageType = rpcMessage.getMessageType();
+        if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE || messageType == RpcConstants.HEARTBEAT_RESPONSE_TYPE) {
+            return;
+        }
+        RpcRequest call = rpcMessage.getData() instanceof RpcRequest
+                ? (RpcRequest) rpcMessage.getData() : rpcMessage.getRequest();
+        // 先直接序列化进 out，由压缩策略根据报文大小和该方法的历史压缩率决定是否压缩
+        int bodyIndex = out.writerIndex();
+        serializeBody(rpcMessage, call, out);
+        int bodyLength = out.writerIndex() - bodyIndex;
+        String interfaceName = call == null ? null : call.getInterfaceName();
+        String methodName = call == null ? null : call.getMethodName();
+        byte compressType = compressPolicy.select(interfaceName, methodName, rpcMessage.getCompress(), bodyLength);
+        if (compressType != CompressTypeEnum.NONE.getCode()) {
+            Compress compress = ExtensionLoader.getExtensionLoader(Compress.class)
+                    .getExtension(CompressTypeEnum.getName(compressType));
+            ByteBuf body = ctx.alloc().ioBuffer(bodyLength);
+            try {
+                body.writeBytes(out, bodyIndex, bodyLength);
+                out.writerIndex(bodyIndex);
+                compress.compress(body, out, call == null ? null : call.getRpcServiceName()); // 压缩并写入携带的数据
+            } finally {
+                body.release();
             }
+            compressPolicy.record(interfaceName, methodName, bodyLength, out.writerIndex() - bodyIndex);
+            out.setByte(compressIndex, compressType);
+        }
+    }
 
-            if (bodyBytes != null) {
-                out.writeBytes(bodyBytes); // 写入携带的数据
+    private void serializeBody(RpcMessage rpcMessage, RpcRequest call, ByteBuf out) {
+        if (rpcMessage.getCodec() == SerializationTypeEnum.TYPED.getCode()) {
+            // 编译期生成的编解码器，不需要反射
+            if (rpcMessage.getData() instanceof RpcRequest) {
+                serviceCodecs.writeRequest(call, out);
+            } else {
+                serviceCodecs.writeResponse((RpcResponse<?>) rpcMessage.getData(), call, out);
             }
-            int writeIndex = out.writerIndex();
-            out.writerIndex(writeIndex - fullLength + RpcConstants.MAGIC_NUMBER.length + 1);
-            out.writeInt(fullLength);
-            out.writerIndex(writeIndex);
-        } catch (Exception e) {
-            log.error("Encode request error!", e);
+            return;
         }
+        // serialize the object
+        String codecName = SerializationTypeEnum.getName(rpcMessage.getCodec());
+        log.info("codec name: [{}] ", codecName);
+        Serializer serializer = ExtensionLoader.getExtensionLoader(Serializer.class)
+                .getExtension(codecName);
+        if (rpcMessage.getVersion() != RpcConstants.VERSION) {
+            serializer.serialize(rpcMessage.getData(), out);
+        } else if (rpcMessage.getData() instanceof RpcRequest) {
+            writeMethodRef(call, out);
+            serializer.serialize(RpcRequest.builder()
+                    .parameters(call.getParameters())
+                    .codecFingerprint(call.getCodecFingerprint()).build(), out);
+        } else {
+            // requestId is in the head, the standard message of the code is implied
+            RpcResponse<?> rpcResponse = (RpcResponse<?>) rpcMessage.getData();
+            RpcResponse<Object> stripped = new RpcResponse<>();
+            stripped.setCode(rpcResponse.getCode());
+            String message = rpcResponse.getMessage();
+            stripped.setMessage(message != null && message.equals(RpcResponseCodeEnum.messageOf(rpcResponse.getCode())) ? null : message);
+            stripped.setData(rpcResponse.getData());
+            serializer.serialize(stripped, out);
+        }
+    }
 
+    /**
+     * varint (method id << 1 | 1) followed by the definition the first time, varint (method id << 1) afterwards.
+     * id 0 is never stored, it defines the method of this request only once the table is full
+     */
+    private void writeMethodRef(RpcRequest call, ByteBuf out) {
+        String key = call.getRpcServiceName() + MethodCodec.key(call.getMethodName(), call.getParamTypes());
+        Integer methodId = methodIds.get(key);
+        if (methodId != null) {
+            CodecSupport.writeVarInt(out, methodId << 1);
+            return;
+        }
+        if (methodIds.size() < RpcConstants.MAX_METHOD_IDS) {
+            methodId = methodIds.size() + 1;
+            methodIds.put(key, methodId);
+            definedMethod = key;
+        } else {
+            methodId = 0;
+        }
+        CodecSupport.writeVarInt(out, methodId << 1 | 1);
+        CodecSupport.writeString(out, call.getInterfaceName());
+        CodecSupport.writeString(out, call.getMethodName());
+        CodecSupport.writeString(out, call.getGroup());
+        CodecSupport.writeString(out, call.getVersion());
+        Class<?>[] paramTypes = call.getParamTypes() == null ? new Class<?>[0] : call.getParamTypes();
+        CodecSupport.writeVarInt(out, paramTypes.length);
+        for (Class<?> paramType : paramTypes) {
+            CodecSupport.writeString(out, paramType.getName());
+        }
     }
 
 
@@ -2,23 +2,26 @@ package github.javaguide.remoting.transport.netty.server;
 
 import github.javaguide.config.CustomShutdownHook;
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
 import github.javaguide.registry.zk.util.CuratorUtils;
+import github.javaguide.remoting.transport.netty.NettyTransport;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageDecoder;
 import github.javaguide.remoting.transport.netty.codec.RpcMessageEncoder;
+import github.javaguide.remoting.transport.shm.ShmRpcServer;
+import github.javaguide.utils.RpcPropertiesUtil;
 import github.javaguide.utils.RuntimeUtil;
 import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import github.javaguide.utils.concurrent.threadpool.VirtualThreads;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
@@ -28,8 +31,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -78,16 +85,43 @@ public class NettyRpcServer {
         CustomShutdownHook.getCustomShutdownHook().clearAll();
         String host = InetAddress.getLocalHost().getHostAddress();
 //        new Thread(this.updateConnectInfo).start(); // 定时发送负载数据
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1); // 主reactor 线程组
-        EventLoopGroup workerGroup = new NioEventLoopGroup(); // 从reactor线程组
-        DefaultEventExecutorGroup serviceHandlerGroup = new DefaultEventExecutorGroup(
+        NettyTransport transport = NettyTransport.select(); // 有 epoll 时用 epoll，否则用 NIO
+        int binds = transport.reusePortBinds(); // SO_REUSEPORT 时每次绑定各有一个 acceptor 线程
+        EventLoopGroup bossGroup = transport.newEventLoopGroup(binds); // 主reactor 线程组
+        EventLoopGroup workerGroup = transport.newEventLoopGroup(0); // 从reactor线程组
+        // 有虚拟线程时每个请求一个虚拟线程，否则由固定大小的 serviceHandlerGroup 执行
+        ExecutorService requestExecutor = VirtualThreads.newVirtualThreadPerTaskExecutorIfEnabled(
+                RpcPropertiesUtil.getBoolean(RpcConfigEnum.SERVER_VIRTUAL_THREADS, false), "service-handler-");
+        DefaultEventExecutorGroup serviceHandlerGroup = requestExecutor != null ? null : new DefaultEventExecutorGroup(
                 RuntimeUtil.cpus() * 2,
                 ThreadPoolFactoryUtil.createThreadFactory("service-handler-group", false)
         );
+        // tcp 和 unix domain socket 上的连接使用同样的 pipeline
+        ChannelInitializer<Channel> childHandler = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                // 30 秒之内没有收到客户端请求的话就关闭连接
+                ChannelPipeline p = ch.pipeline();
+                // 设置读超时时间为30秒，也即30秒内没有请求可读就触发userEventTriggered函数关闭连接
+                p.addLast(new IdleStateHandler(30, 0, 0, TimeUnit.SECONDS));
+                p.addLast(new RpcMessageEncoder());
+                p.addLast(new RpcMessageDecoder());
+                if (requestExecutor != null) {
+                    p.addLast(new NettyRpcServerHandler(requestExecutor));
+                } else {
+                    p.addLast(serviceHandlerGroup, new NettyRpcServerHandler());
+                }
+                p.addLast(new ConnectServerHandler(connectNum, zkClient, path)); // 统计连接数
+            }
+        };
+        String domainSocketPath = transport.supportsDomainSocket()
+                ? RpcPropertiesUtil.getString(RpcConfigEnum.TRANSPORT_UDS_PATH, defaultDomainSocketPath()) : "";
+        // 同一主机上的客户端也可以通过共享内存连接
+        ShmRpcServer shmRpcServer = RpcPropertiesUtil.getBoolean(RpcConfigEnum.SHM_ENABLED, false) ? new ShmRpcServer() : null;
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(transport.serverChannelClass())
                     // TCP默认开启了 Nagle 算法，该算法的作用是尽可能的发送大数据快，减少网络传输。TCP_NODELAY 参数的作用就是控制是否启用 Nagle 算法。
                     .childOption(ChannelOption.TCP_NODELAY, true)
                     // 是否开启 TCP 底层心跳机制
@@ -96,33 +130,67 @@ public class NettyRpcServer {
                     .option(ChannelOption.SO_BACKLOG, 128)
                     .handler(new LoggingHandler(LogLevel.INFO))
                     // 当客户端第一次进行请求的时候才会进行初始化
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            // 30 秒之内没有收到客户端请求的话就关闭连接
-                            ChannelPipeline p = ch.pipeline();
-                            // 设置读超时时间为30秒，也即30秒内没有请求可读就触发userEventTriggered函数关闭连接
-                            p.addLast(new IdleStateHandler(30, 0, 0, TimeUnit.SECONDS));
-                            p.addLast(new RpcMessageEncoder());
-                            p.addLast(new RpcMessageDecoder());
-                            p.addLast(serviceHandlerGroup, new NettyRpcServerHandler());
-                            p.addLast(new ConnectServerHandler(connectNum, zkClient, path)); // 统计连接数
-                        }
-                    });
+                    .childHandler(childHandler);
+
+            transport.configure(b);
 
             // 绑定端口，同步等待绑定成功
-            ChannelFuture f = b.bind(host, PORT).sync();
+            List<Channel> serverChannels = new ArrayList<>(binds);
+            for (int i = 0; i < binds; i++) {
+                serverChannels.add(b.bind(host, PORT).sync().channel());
+            }
+            if (shmRpcServer != null) {
+                shmRpcServer.start(host + ":" + PORT);
+            }
+            if (!domainSocketPath.isEmpty()) {
+                serverChannels.add(bindDomainSocket(transport, bossGroup, workerGroup, childHandler, domainSocketPath));
+            }
             // 等待服务端监听端口关闭
-            f.channel().closeFuture().sync();
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.closeFuture().sync();
+            }
         } catch (InterruptedException e) {
             log.error("occur exception when start server:", e);
         } finally {
             log.error("shutdown bossGroup and workerGroup");
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
-            serviceHandlerGroup.shutdownGracefully();
+            if (serviceHandlerGroup != null) {
+                serviceHandlerGroup.shutdownGracefully();
+            } else {
+                requestExecutor.shutdown();
+            }
+            if (shmRpcServer != null) {
+                shmRpcServer.stop();
+            }
+            if (!domainSocketPath.isEmpty()) {
+                new File(domainSocketPath).delete();
+            }
         }
     }
 
+    /**
+     * 同一主机上的客户端通过 unix domain socket 调用，绕过 TCP/IP 协议栈。监听的路径登记在注册中心，客户端据此找到它
+     */
+    private Channel bindDomainSocket(NettyTransport transport, EventLoopGroup bossGroup, EventLoopGroup workerGroup,
+                                     ChannelInitializer<Channel> childHandler, String domainSocketPath) throws InterruptedException {
+        // a socket file left behind by a previous run would fail the bind
+        new File(domainSocketPath).delete();
+        Channel channel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(transport.serverDomainSocketChannelClass())
+                .childHandler(childHandler)
+                .bind(new DomainSocketAddress(domainSocketPath)).sync().channel();
+        String nodePath = CuratorUtils.ZK_DOMAIN_SOCKET_ROOT_PATH + '/' + address;
+        CuratorUtils.createPersistentNode(zkClient, nodePath);
+        CuratorUtils.setNodeData(nodePath, domainSocketPath, zkClient);
+        log.info("listen on unix domain socket [{}]", domainSocketPath);
+        return channel;
+    }
+
+    private static String defaultDomainSocketPath() {
+        return new File(System.getProperty("java.io.tmpdir"), "guide-rpc-" + PORT + ".sock").getPath();
+    }
+
 
 }
@@ -1,6 +1,8 @@
 package github.javaguide.remoting.transport.netty.server;
 
+import github.javaguide.codec.ServiceCodecs;
 import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.enums.RpcResponseCodeEnum;
 import github.javaguide.enums.SerializationTypeEnum;
 import github.javaguide.factory.SingletonFactory;
@@ -9,6 +11,8 @@ import github.javaguide.remoting.dto.RpcMessage;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.remoting.handler.RpcRequestHandler;
+import github.javaguide.remoting.transport.netty.CoalescingWriter;
+import github.javaguide.utils.RpcPropertiesUtil;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -18,6 +22,9 @@ import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
 /**
  * Customize the ChannelHandler of the server to process the data sent by the client.
  * <p>
@@ -31,9 +38,26 @@ import lombok.extern.slf4j.Slf4j;
 public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
 
     private final RpcRequestHandler rpcRequestHandler;
+    private final byte compressType;
+    private final ServiceCodecs serviceCodecs;
+    private final int protocolVersion; // 能协商的最高协议版本
+    private final Executor requestExecutor; // 执行请求的线程池，null 时在处理器所在的线程上执行
 
     public NettyRpcServerHandler() {
+        this(null);
+    }
+
+    /**
+     * @param requestExecutor runs every request in a task of its own, eg: on a virtual thread, while the handler
+     *                        stays on the I/O thread; null runs them on the thread of the handler
+     */
+    public NettyRpcServerHandler(Executor requestExecutor) {
+        this.requestExecutor = requestExecutor;
         this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+        this.serviceCodecs = SingletonFactory.getInstance(ServiceCodecs.class);
+        this.compressType = CompressTypeEnum.getCode(
+                RpcPropertiesUtil.getString(RpcConfigEnum.COMPRESS_TYPE, CompressTypeEnum.GZIP.getName()));
+        this.protocolVersion = RpcPropertiesUtil.getInt(RpcConfigEnum.PROTOCOL_VERSION, RpcConstants.VERSION);
     }
 
     /**
@@ -48,28 +72,35 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
                 log.info("server receive msg: [{}] ", msg);
                 byte messageType = ((RpcMessage) msg).getMessageType();
                 RpcMessage rpcMessage = new RpcMessage();
-                rpcMessage.setCodec(SerializationTypeEnum.HESSIAN.getCode());
-                rpcMessage.setCompress(CompressTypeEnum.GZIP.getCode());
+                rpcMessage.setRequestId(((RpcMessage) msg).getRequestId()); // 回应携带请求的Id，客户端据此找到对应的请求
+                rpcMessage.setCodec(((RpcMessage) msg).getCodec()); // 按请求的序列化方式回应
+                rpcMessage.setVersion(((RpcMessage) msg).getVersion()); // 按请求的协议版本回应
                 if (messageType == RpcConstants.HEARTBEAT_REQUEST_TYPE) { // 是心跳信息
+                    if (rpcMessage.getRequestId() == RpcConstants.VERSION_PROBE_REQUEST_ID
+                            && protocolVersion >= RpcConstants.VERSION) {
+                        // 客户端的版本探测，以 v2 心跳回应表示同意使用 v2
+                        rpcMessage.setVersion(RpcConstants.VERSION);
+                    }
                     rpcMessage.setMessageType(RpcConstants.HEARTBEAT_RESPONSE_TYPE);
                     rpcMessage.setData(RpcConstants.PONG);
+                    rpcMessage.setCompress(CompressTypeEnum.NONE.getCode());
+                    CoalescingWriter.of(ctx.channel()).write(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
                 } else {
                     RpcRequest rpcRequest = (RpcRequest) ((RpcMessage) msg).getData();
-                    // Execute the target method (the method the client needs to execute) and return the method result
-                    // RPC 请求处理，负责通过zookeeper获得调用服务端的被客户端调用的本地方法
-                    Object result = rpcRequestHandler.handle(rpcRequest);
-                    log.info(String.format("server get result: %s", result.toString()));
-                    rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
-                    if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-                        RpcResponse<Object> rpcResponse = RpcResponse.success(result, rpcRequest.getRequestId());
-                        rpcMessage.setData(rpcResponse);
+                    if (requestExecutor == null) {
+                        handle(ctx, rpcMessage, rpcRequest);
                     } else {
-                        RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
-                        rpcMessage.setData(rpcResponse);
-                        log.error("not writable now, message dropped");
+                        // 每个请求一个虚拟线程，业务方法阻塞时不占用平台线程
+                        Runnable task = () -> {
+                            try {
+                                handle(ctx, rpcMessage, rpcRequest);
+                            } catch (RuntimeException e) {
+                                respond(ctx, rpcMessage, rpcRequest, null, e);
+                            }
+                        };
+                        requestExecutor.execute(task);
                     }
                 }
-                ctx.writeAndFlush(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
             }
         } finally {
             //Ensure that ByteBuf is released, otherwise there may be memory leaks
@@ -77,6 +108,45 @@ public class NettyRpcServerHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    private void handle(ChannelHandlerContext ctx, RpcMessage rpcMessage, RpcRequest rpcRequest) {
+        // Execute the target method (the method the client needs to execute) and return the method result
+        // RPC 请求处理，负责通过zookeeper获得调用服务端的被客户端调用的本地方法
+        Object result = rpcRequestHandler.handle(rpcRequest);
+        if (result instanceof CompletionStage) {
+            // 异步方法：结果就绪时再回应，不占用业务线程等待
+            ((CompletionStage<?>) result).whenComplete((value, throwable) ->
+                    respond(ctx, rpcMessage, rpcRequest, value, throwable));
+        } else {
+            respond(ctx, rpcMessage, rpcRequest, result, null);
+        }
+    }
+
+    /**
+     * @param cause the exception the async method completed with, null if it succeeded
+     */
+    private void respond(ChannelHandlerContext ctx, RpcMessage rpcMessage, RpcRequest rpcRequest, Object result, Throwable cause) {
+        log.info("server get result: [{}]", result);
+        rpcMessage.setMessageType(RpcConstants.RESPONSE_TYPE);
+        rpcMessage.setCompress(compressType);
+        rpcMessage.setRequest(rpcRequest); // 编码器据此按方法统计压缩率
+        if (serviceCodecs.accepts(rpcRequest)) {
+            // 客户端有相同的编解码器，以 typed 格式回应，客户端之后的请求也会改用 typed 格式
+            rpcMessage.setCodec(SerializationTypeEnum.TYPED.getCode());
+        }
+        if (cause != null) {
+            rpcMessage.setData(RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+            log.error("async method of [{}] failed", rpcRequest.getRpcServiceName(), cause);
+        } else if (ctx.channel().isActive() && ctx.channel().isWritable()) {
+            RpcResponse<Object> rpcResponse = RpcResponse.success(result, rpcRequest.getRequestId());
+            rpcMessage.setData(rpcResponse);
+        } else {
+            RpcResponse<Object> rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
+            rpcMessage.setData(rpcResponse);
+            log.error("not writable now, message dropped");
+        }
+        CoalescingWriter.of(ctx.channel()).write(rpcMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
     /**
      * 心跳机制，长时间客户端无请求就断开连接，避免资源浪费
      * @param ctx
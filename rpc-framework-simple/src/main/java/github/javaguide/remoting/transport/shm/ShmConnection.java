@@ -0,0 +1,200 @@
+package github.javaguide.remoting.transport.shm;
+
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageDecoder;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageEncoder;
+import github.javaguide.utils.RpcPropertiesUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 一对共享内存环形缓冲区上的连接，报文就是 netty 传输的 RpcMessage 帧，由同样的编解码器处理
+ * <p>
+ * Writers are serialized on the connection, so the outbound ring has a single producer. One reader thread per
+ * connection drains the inbound ring: it spins for {@code rpc.shm.spin-iterations} empty polls, then yields a few
+ * times, then parks for short periods until the next frame arrives. Nothing can wake a thread of the other process,
+ * so the park period bounds the latency of a connection that went idle.
+ * The reader thread owns the mappings and releases them when either side closes the connection.
+ * <p>
+ * A process killed without closing its connections is found by the heartbeat of the rings: the reader thread bumps
+ * the one of the outbound ring and closes the connection once the one of the inbound ring stopped for
+ * {@code PEER_TIMEOUT_MILLIS}. A writer waits as long for room in a full ring before it closes the connection too.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 19:50:00
+ */
+@Slf4j
+public class ShmConnection {
+
+    private static final int YIELD_ROUNDS = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long HEARTBEAT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long PEER_TIMEOUT_MILLIS = 3000;
+    /**
+     * the reader looks at the heartbeats once every 1024 polls, often enough when it parks and cheap when it spins
+     */
+    private static final int LIVENESS_CHECK_MASK = 1023;
+
+    private final ShmRingBuffer outbound;
+    private final ShmRingBuffer inbound;
+    private final Consumer<RpcMessage> handler;
+    private final Runnable onClose;
+    private final int spinIterations;
+    // the codec of one connection keeps per connection state (v2 method ids), like a netty pipeline
+    private final EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+    private final EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+    private volatile boolean closed;
+    /**
+     * owned by the reader thread
+     */
+    private long lastHeartbeatNanos;
+    private long peerHeartbeat;
+    private long peerHeartbeatNanos;
+
+    /**
+     * @param handler called on the reader thread for every message received
+     * @param onClose called on the reader thread once the connection is closed and unmapped
+     */
+    public ShmConnection(String name, ShmRingBuffer outbound, ShmRingBuffer inbound,
+                         Consumer<RpcMessage> handler, Runnable onClose) {
+        this.outbound = outbound;
+        this.inbound = inbound;
+        this.handler = handler;
+        this.onClose = onClose;
+        this.spinIterations = RpcPropertiesUtil.getInt(RpcConfigEnum.SHM_SPIN_ITERATIONS, 20000);
+        // the peer gets a full timeout to start beating
+        this.peerHeartbeat = inbound.getHeartbeat();
+        this.peerHeartbeatNanos = System.nanoTime();
+        this.lastHeartbeatNanos = peerHeartbeatNanos - HEARTBEAT_INTERVAL_NANOS;
+        Thread reader = new Thread(this::read, name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * encodes the message into the outbound ring, waits while the ring is full
+     *
+     * @throws IllegalStateException if the connection is closed, or the ring stayed full for PEER_TIMEOUT_MILLIS
+     */
+    public synchronized void write(RpcMessage rpcMessage) {
+        if (closed) {
+            throw new IllegalStateException("shared memory connection is closed");
+        }
+        encoder.writeOutbound(rpcMessage);
+        ByteBuf frame = encoder.readOutbound();
+        try {
+            long deadline = 0;
+            for (int round = 0; !outbound.offer(frame); round++) {
+                if (closed) {
+                    throw new IllegalStateException("shared memory connection is closed");
+                }
+                // the clock is only read once the writer stops spinning
+                if (round == spinIterations) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PEER_TIMEOUT_MILLIS);
+                } else if (round > spinIterations && System.nanoTime() - deadline > 0) {
+                    close();
+                    throw new IllegalStateException("shared memory ring stayed full for " + PEER_TIMEOUT_MILLIS + " ms");
+                }
+                idle(round);
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * the reader thread releases the connection the next time it wakes up
+     */
+    public void close() {
+        closed = true;
+    }
+
+    private void read() {
+        try {
+            int round = 0;
+            for (int polls = 0; !closed; polls++) {
+                if ((polls & LIVENESS_CHECK_MASK) == 0 && !checkLiveness()) {
+                    log.warn("peer of shared memory connection [{}] stopped beating for [{}]ms, close it",
+                            inbound.getFile(), PEER_TIMEOUT_MILLIS);
+                    break;
+                }
+                ByteBuf frame = inbound.poll(PooledByteBufAllocator.DEFAULT);
+                if (frame == null) {
+                    if (inbound.isClosed()) {
+                        break;
+                    }
+                    idle(round++);
+                    continue;
+                }
+                round = 0;
+                decoder.writeInbound(frame);
+                for (Object msg = decoder.readInbound(); msg != null; msg = decoder.readInbound()) {
+                    try {
+                        handler.accept((RpcMessage) msg);
+                    } catch (Exception e) {
+                        log.error("handle shared memory message fail", e);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("read shared memory connection [{}] fail", inbound.getFile(), e);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * bumps our heartbeat when it is due and looks at the one of the peer
+     *
+     * @return false if the peer has not beaten for PEER_TIMEOUT_MILLIS
+     */
+    private boolean checkLiveness() {
+        long now = System.nanoTime();
+        if (now - lastHeartbeatNanos >= HEARTBEAT_INTERVAL_NANOS) {
+            outbound.heartbeat();
+            lastHeartbeatNanos = now;
+        }
+        long heartbeat = inbound.getHeartbeat();
+        if (heartbeat != peerHeartbeat) {
+            peerHeartbeat = heartbeat;
+            peerHeartbeatNanos = now;
+            return true;
+        }
+        return now - peerHeartbeatNanos < TimeUnit.MILLISECONDS.toNanos(PEER_TIMEOUT_MILLIS);
+    }
+
+    private void release() {
+        closed = true;
+        synchronized (this) {
+            // writers give up once closed is set, after that nobody touches the outbound mapping
+            outbound.markClosed();
+            outbound.unmap();
+        }
+        inbound.unmap();
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+        onClose.run();
+    }
+
+    private void idle(int round) {
+        if (round < spinIterations) {
+            return;
+        }
+        if (round < spinIterations + YIELD_ROUNDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package github.javaguide.remoting.transport.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 映射到内存文件上的单生产者单消费者环形缓冲区，两个进程各映射同一个文件，一个写一个读
+ * <pre>
+ *   0        4        8          16          64         128        192
+ *   +--------+--------+----------+-----------+----------+----------+--------------------------------+
+ *   | magic  | closed | accepted | heartbeat | head     | tail     | data (capacity, power of two)  |
+ *   +--------+--------+----------+-----------+----------+----------+--------------------------------+
+ * </pre>
+ * heartbeat is a counter the writing process bumps while it runs, the only way to tell that the other process died
+ * without marking the ring closed.
+ * head and tail are byte positions that only grow, on their own cache lines. A record is a 4B length and the frame,
+ * padded to 8 bytes. A record never wraps: when it does not fit before the end of the data area, a padding marker
+ * fills the rest and the record starts at 0. The producer writes the record and then publishes the new tail with an
+ * ordered store; the consumer reads the tail with a volatile load, copies the record out and publishes the new head
+ * the same way, which frees the space. Several producers must be serialized by the caller.
+ * <p>
+ * Netty's PlatformDependent only has plain accesses to memory, the volatile and ordered ones are method handles of
+ * sun.misc.Unsafe looked up by name, so the class compiles without referring to the internal API. Being static
+ * final, the handles are inlined by the JIT like direct calls.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 19:30:00
+ */
+public final class ShmRingBuffer {
+
+    /**
+     * (Object, long)int of Unsafe.getIntVolatile, (Object, long, int)void of Unsafe.putIntVolatile, and so on
+     */
+    private static final MethodHandle GET_INT_VOLATILE;
+    private static final MethodHandle PUT_INT_VOLATILE;
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle PUT_ORDERED_LONG;
+    private static final int MAGIC = 0x67727063;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CLOSED_OFFSET = 4;
+    private static final int ACCEPTED_OFFSET = 8;
+    private static final int HEARTBEAT_OFFSET = 16;
+    private static final int HEAD_OFFSET = 64;
+    private static final int TAIL_OFFSET = 128;
+    private static final int DATA_OFFSET = 192;
+    private static final int PADDING = -1;
+    private static final int RECORD_ALIGNMENT = 8;
+
+    static {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            GET_INT_VOLATILE = lookup.findVirtual(unsafeClass, "getIntVolatile",
+                    MethodType.methodType(int.class, Object.class, long.class)).bindTo(unsafe);
+            PUT_INT_VOLATILE = lookup.findVirtual(unsafeClass, "putIntVolatile",
+                    MethodType.methodType(void.class, Object.class, long.class, int.class)).bindTo(unsafe);
+            GET_LONG_VOLATILE = lookup.findVirtual(unsafeClass, "getLongVolatile",
+                    MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            PUT_ORDERED_LONG = lookup.findVirtual(unsafeClass, "putOrderedLong",
+                    MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    /**
+     * view of the data area for copying records in and out, only used by the one producer or the one consumer
+     */
+    private final ByteBuffer view;
+    private final long address;
+    private final int capacity;
+    private final int mask;
+    /**
+     * position cached by the side that owns it
+     */
+    private long position;
+
+    private ShmRingBuffer(File file, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.view = buffer.duplicate();
+        this.address = PlatformDependent.directBufferAddress(buffer);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * creates the file and marks it ready once it is initialized
+     *
+     * @param capacity size of the data area, rounded up to a power of two
+     */
+    public static ShmRingBuffer create(File file, int capacity) throws IOException {
+        int size = Integer.highestOneBit(Math.max(capacity, 1024) - 1) << 1;
+        ShmRingBuffer ring = new ShmRingBuffer(file, map(file, DATA_OFFSET + size), size);
+        putIntVolatile(ring.address + MAGIC_OFFSET, MAGIC);
+        return ring;
+    }
+
+    /**
+     * @return the ring in the file, null if it is not ready yet
+     */
+    public static ShmRingBuffer open(File file) throws IOException {
+        long length = file.length();
+        if (length <= DATA_OFFSET || Long.bitCount(length - DATA_OFFSET) != 1) {
+            return null;
+        }
+        ShmRingBuffer ring = new ShmRingBuffer(file, map(file, length), (int) (length - DATA_OFFSET));
+        if (getIntVolatile(ring.address + MAGIC_OFFSET) != MAGIC) {
+            ring.unmap();
+            return null;
+        }
+        return ring;
+    }
+
+    private static MappedByteBuffer map(File file, long length) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            if (randomAccessFile.length() < length) {
+                randomAccessFile.setLength(length);
+            }
+            // the mapping stays valid after the channel is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    /**
+     * @return false if the ring has no room for the frame right now
+     * @throws IllegalArgumentException if the frame could never fit
+     */
+    public boolean offer(ByteBuf frame) {
+        int length = frame.readableBytes();
+        int need = align(4 + length);
+        if (need > capacity) {
+            throw new IllegalArgumentException("frame of " + length + " bytes is larger than the ring: " + capacity);
+        }
+        long tail = position;
+        long head = getLongVolatile(address + HEAD_OFFSET);
+        int index = (int) (tail & mask);
+        int toEnd = capacity - index;
+        int claim = need <= toEnd ? need : toEnd + need;
+        if (tail + claim - head > capacity) {
+            return false;
+        }
+        if (need > toEnd) {
+            PlatformDependent.putInt(address + DATA_OFFSET + index, PADDING);
+            index = 0;
+        }
+        PlatformDependent.putInt(address + DATA_OFFSET + index, length);
+        view.clear();
+        view.position(DATA_OFFSET + index + 4).limit(DATA_OFFSET + index + 4 + length);
+        frame.getBytes(frame.readerIndex(), view);
+        position = tail + claim;
+        putOrderedLong(address + TAIL_OFFSET, position);
+        return true;
+    }
+
+    /**
+     * @return the next frame, null if the ring is empty
+     */
+    public ByteBuf poll(ByteBufAllocator allocator) {
+        long head = position;
+        if (head == getLongVolatile(address + TAIL_OFFSET)) {
+            return null;
+        }
+        int index = (int) (head & mask);
+        int length = PlatformDependent.getInt(address + DATA_OFFSET + index);
+        if (length == PADDING) {
+            head += capacity - index;
+            index = 0;
+            length = PlatformDependent.getInt(address + DATA_OFFSET);
+        }
+        view.clear();
+        view.position(DATA_OFFSET + index + 4).limit(DATA_OFFSET + index + 4 + length);
+        ByteBuf frame = allocator.directBuffer(length);
+        frame.writeBytes(view);
+        position = head + align(4 + length);
+        putOrderedLong(address + HEAD_OFFSET, position);
+        return frame;
+    }
+
+    public void markClosed() {
+        putIntVolatile(address + CLOSED_OFFSET, 1);
+    }
+
+    public boolean isClosed() {
+        return getIntVolatile(address + CLOSED_OFFSET) != 0;
+    }
+
+    /**
+     * set by the server once it reads the requests of a new connection
+     */
+    public void markAccepted() {
+        putIntVolatile(address + ACCEPTED_OFFSET, 1);
+    }
+
+    public boolean isAccepted() {
+        return getIntVolatile(address + ACCEPTED_OFFSET) != 0;
+    }
+
+    /**
+     * bumps the heartbeat, only one thread of the writing process may call it
+     */
+    public void heartbeat() {
+        putOrderedLong(address + HEARTBEAT_OFFSET, getLongVolatile(address + HEARTBEAT_OFFSET) + 1);
+    }
+
+    public long getHeartbeat() {
+        return getLongVolatile(address + HEARTBEAT_OFFSET);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * releases the mapping, the ring must not be used afterwards
+     */
+    public void unmap() {
+        PlatformDependent.freeDirectBuffer(buffer);
+    }
+
+    private static int getIntVolatile(long address) {
+        try {
+            return (int) GET_INT_VOLATILE.invokeExact((Object) null, address);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void putIntVolatile(long address, int value) {
+        try {
+            PUT_INT_VOLATILE.invokeExact((Object) null, address, value);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long getLongVolatile(long address) {
+        try {
+            return (long) GET_LONG_VOLATILE.invokeExact((Object) null, address);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * a store that is not reordered with the stores before it, cheaper than a volatile one
+     */
+    private static void putOrderedLong(long address, long value) {
+        try {
+            PUT_ORDERED_LONG.invokeExact((Object) null, address, value);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int align(int length) {
+        return (length + RECORD_ALIGNMENT - 1) & -RECORD_ALIGNMENT;
+    }
+}
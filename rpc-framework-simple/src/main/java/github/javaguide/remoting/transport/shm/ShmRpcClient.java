@@ -0,0 +1,248 @@
+package github.javaguide.remoting.transport.shm;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcErrorMessageEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.extension.ExtensionLoader;
+import github.javaguide.registry.ServiceDiscovery;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.HedgePolicy;
+import github.javaguide.remoting.transport.RetryPolicy;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.remoting.transport.netty.client.UnprocessedRequests;
+import github.javaguide.utils.RpcPropertiesUtil;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 与同一主机上的服务端通过共享内存环形缓冲区通信的客户端
+ * <p>
+ * Calls to a provider on this host that listens for shared memory connections (see {@link ShmRpcServer}) go through
+ * one pair of rings per provider; every other call, and every call to a provider that does not accept the connection
+ * in time, goes to the netty transport. Like the netty client it returns a future completed by the reader thread.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 20:30:00
+ */
+@Slf4j
+public class ShmRpcClient implements RpcRequestTransport {
+
+    private static final long ACCEPT_TIMEOUT_MILLIS = 1000;
+    /**
+     * how long calls to a provider that did not accept a connection go to the netty transport before trying again
+     */
+    private static final long NOT_LOCAL_RETRY_MILLIS = 30_000;
+    private static final Object CONNECTING = new Object();
+
+    private final ServiceDiscovery serviceDiscovery;
+    private final RpcRequestTransport fallback;
+    private final byte codec;
+    private final int ringBytes;
+    /**
+     * key: provider address, value: its connection, CONNECTING while a caller connects to it, or NotLocal once it
+     * turned out not to accept one
+     */
+    private final Map<InetSocketAddress, Object> peers = new ConcurrentHashMap<>();
+
+    public ShmRpcClient() {
+        this.serviceDiscovery = ExtensionLoader.getExtensionLoader(ServiceDiscovery.class).getExtension("zk");
+        this.fallback = ExtensionLoader.getExtensionLoader(RpcRequestTransport.class).getExtension("netty");
+        this.codec = SerializationTypeEnum.getCode(
+                RpcPropertiesUtil.getString(RpcConfigEnum.SERIALIZE_TYPE, SerializationTypeEnum.HESSIAN2.getName()));
+        this.ringBytes = RpcPropertiesUtil.getInt(RpcConfigEnum.SHM_RING_BYTES, 1 << 20);
+    }
+
+    /**
+     * @return a CompletableFuture of the RpcResponse
+     */
+    @Override
+    public Object sendRpcRequest(RpcRequest rpcRequest) {
+        InetSocketAddress inetSocketAddress = serviceDiscovery.lookupService(rpcRequest);
+        Peer peer = getPeer(inetSocketAddress);
+        if (peer == null) {
+            return fallback.sendRpcRequest(rpcRequest);
+        }
+        return send(peer, rpcRequest);
+    }
+
+    /**
+     * calls to a provider on this host are not hedged nor retried, the netty transport does both for the others
+     */
+    @Override
+    public Object sendRpcRequest(RpcRequest rpcRequest, HedgePolicy hedgePolicy, RetryPolicy retryPolicy) {
+        Peer peer = getPeer(serviceDiscovery.lookupService(rpcRequest));
+        if (peer == null) {
+            return fallback.sendRpcRequest(rpcRequest, hedgePolicy, retryPolicy);
+        }
+        return send(peer, rpcRequest);
+    }
+
+    private CompletableFuture<RpcResponse<Object>> send(Peer peer, RpcRequest rpcRequest) {
+        CompletableFuture<RpcResponse<Object>> resultFuture = new CompletableFuture<>();
+        UnprocessedRequests unprocessedRequests = peer.unprocessedRequests;
+        int requestId = unprocessedRequests.put(resultFuture);
+        try {
+            // nothing to gain from compressing a copy between two processes
+            peer.connection.write(RpcMessage.builder().data(rpcRequest)
+                    .version(RpcConstants.VERSION)
+                    .codec(codec)
+                    .compress(CompressTypeEnum.NONE.getCode())
+                    .requestId(requestId)
+                    .messageType(RpcConstants.REQUEST_TYPE).build());
+        } catch (RuntimeException e) {
+            unprocessedRequests.remove(requestId);
+            resultFuture.completeExceptionally(e);
+        }
+        return resultFuture;
+    }
+
+    /**
+     * connect to the providers on this host, the others are warmed up by the netty transport
+     */
+    @Override
+    public CompletableFuture<Void> warmUp(String rpcServiceName, int pings) {
+        boolean remote = false;
+        for (InetSocketAddress inetSocketAddress : serviceDiscovery.lookupAll(rpcServiceName)) {
+            remote |= getPeer(inetSocketAddress) == null;
+        }
+        return remote ? fallback.warmUp(rpcServiceName, pings) : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * The caller that claims the address connects on its own thread, the others go over the network meanwhile
+     * instead of waiting for the provider to accept.
+     *
+     * @return the connection to the provider, null if calls to it go over the network
+     */
+    private Peer getPeer(InetSocketAddress inetSocketAddress) {
+        Object peer = peers.get(inetSocketAddress);
+        if (peer instanceof Peer && !((Peer) peer).connection.isClosed()) {
+            return (Peer) peer;
+        }
+        if (peer == CONNECTING || peer instanceof NotLocal && !((NotLocal) peer).expired()) {
+            return null;
+        }
+        boolean claimed = peer == null
+                ? peers.putIfAbsent(inetSocketAddress, CONNECTING) == null
+                : peers.replace(inetSocketAddress, peer, CONNECTING);
+        if (!claimed) {
+            return null;
+        }
+        Peer connected = null;
+        try {
+            connected = connect(inetSocketAddress);
+        } finally {
+            peers.put(inetSocketAddress, connected == null ? new NotLocal() : connected);
+        }
+        return connected;
+    }
+
+    private Peer connect(InetSocketAddress inetSocketAddress) {
+        if (!isLocal(inetSocketAddress.getAddress())) {
+            return null;
+        }
+        File directory = ShmRpcServer.directoryOf(inetSocketAddress.getHostString() + ":" + inetSocketAddress.getPort());
+        if (!directory.isDirectory()) {
+            return null;
+        }
+        String id = UUID.randomUUID().toString();
+        File responseFile = new File(directory, id + ShmRpcServer.RESPONSE_SUFFIX);
+        File requestFile = new File(directory, id + ShmRpcServer.REQUEST_SUFFIX);
+        ShmRingBuffer responses = null;
+        ShmRingBuffer requests = null;
+        try {
+            // the server picks up the request ring, so it must be the last one to appear
+            responses = ShmRingBuffer.create(responseFile, ringBytes);
+            requests = ShmRingBuffer.create(requestFile, ringBytes);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACCEPT_TIMEOUT_MILLIS);
+            while (!responses.isAccepted()) {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("not accepted within " + ACCEPT_TIMEOUT_MILLIS + " ms");
+                }
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+        } catch (IOException | InterruptedException e) {
+            log.warn("connect to [{}] through shared memory fail, use netty", directory, e);
+            if (requests != null) {
+                requests.unmap();
+            }
+            if (responses != null) {
+                responses.unmap();
+            }
+            requestFile.delete();
+            responseFile.delete();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+        ShmConnection connection = new ShmConnection("shm-rpc-client-" + id, requests, responses, rpcMessage -> {
+            if (rpcMessage.getMessageType() == RpcConstants.RESPONSE_TYPE) {
+                @SuppressWarnings("unchecked")
+                RpcResponse<Object> rpcResponse = (RpcResponse<Object>) rpcMessage.getData();
+                unprocessedRequests.complete(rpcMessage.getRequestId(), rpcResponse);
+            }
+        }, () -> {
+            unprocessedRequests.failAll(new RpcException(RpcErrorMessageEnum.CLIENT_CONNECT_SERVER_FAILURE,
+                    "shared memory connection closed: " + requestFile));
+            requestFile.delete();
+            responseFile.delete();
+        });
+        log.info("客户端通过共享内存 [{}] 连接到 [{}] !", requestFile, inetSocketAddress);
+        return new Peer(connection, unprocessedRequests);
+    }
+
+    private static boolean isLocal(InetAddress address) {
+        try {
+            return address != null && (address.isLoopbackAddress() || address.isAnyLocalAddress()
+                    || NetworkInterface.getByInetAddress(address) != null);
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+
+    public void close() {
+        peers.values().stream()
+                .filter(Peer.class::isInstance)
+                .forEach(peer -> ((Peer) peer).connection.close());
+        peers.clear();
+    }
+
+    /**
+     * a provider that did not accept a connection, calls to it go over the network until the entry expires
+     */
+    private static final class NotLocal {
+        private final long expireNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(NOT_LOCAL_RETRY_MILLIS);
+
+        private boolean expired() {
+            return System.nanoTime() - expireNanos >= 0;
+        }
+    }
+
+    /**
+     * a connection and the requests waiting for a response on it
+     */
+    @AllArgsConstructor
+    private static final class Peer {
+        private final ShmConnection connection;
+        private final UnprocessedRequests unprocessedRequests;
+    }
+}
@@ -0,0 +1,168 @@
+package github.javaguide.remoting.transport.shm;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcConfigEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.handler.RpcRequestHandler;
+import github.javaguide.utils.RpcPropertiesUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 共享内存传输的服务端
+ * <p>
+ * The server owns the directory {@code <rpc.shm.dir>/<ip>_<port>}. A client opens a connection by creating a request
+ * ring {@code <id>.req} and a response ring {@code <id>.resp} in it; the acceptor thread polls the directory, maps
+ * new pairs and marks the response ring accepted. Requests are handled on the reader thread of their connection, in
+ * order, without the hand-off to a thread pool that would cost more than the transport itself, so services that
+ * block for long should stay on the netty transport.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 20:10:00
+ */
+@Slf4j
+public class ShmRpcServer {
+
+    static final String REQUEST_SUFFIX = ".req";
+    static final String RESPONSE_SUFFIX = ".resp";
+    private static final long ACCEPT_INTERVAL_MILLIS = 20;
+
+    private final RpcRequestHandler rpcRequestHandler;
+    /**
+     * key: request ring file
+     */
+    private final Map<File, ShmConnection> connections = new ConcurrentHashMap<>();
+    private volatile File directory;
+
+    public ShmRpcServer() {
+        this.rpcRequestHandler = SingletonFactory.getInstance(RpcRequestHandler.class);
+    }
+
+    /**
+     * @return the directory of the server at host:port
+     */
+    public static File directoryOf(String address) {
+        File defaultRoot = new File("/dev/shm").isDirectory()
+                ? new File("/dev/shm", "guide-rpc") : new File(System.getProperty("java.io.tmpdir"), "guide-rpc");
+        File root = new File(RpcPropertiesUtil.getString(RpcConfigEnum.SHM_DIR, defaultRoot.getPath()));
+        return new File(root, address.replace(':', '_'));
+    }
+
+    /**
+     * @param address host:port the server is registered under
+     */
+    public synchronized void start(String address) {
+        if (directory != null) {
+            return;
+        }
+        File dir = directoryOf(address);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            log.error("can not create shared memory directory [{}]", dir);
+            return;
+        }
+        // rings left behind by a previous run
+        File[] stale = dir.listFiles();
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+        directory = dir;
+        Thread acceptor = new Thread(this::accept, "shm-rpc-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("shared memory transport listens on [{}]", dir);
+    }
+
+    public synchronized void stop() {
+        File dir = directory;
+        directory = null;
+        connections.values().forEach(ShmConnection::close);
+        if (dir != null) {
+            dir.delete();
+        }
+    }
+
+    private void accept() {
+        while (directory != null) {
+            File[] requestFiles = directory.listFiles((dir, name) -> name.endsWith(REQUEST_SUFFIX));
+            if (requestFiles != null) {
+                for (File requestFile : requestFiles) {
+                    if (!connections.containsKey(requestFile)) {
+                        open(requestFile);
+                    }
+                }
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(ACCEPT_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void open(File requestFile) {
+        String name = requestFile.getName();
+        File responseFile = new File(requestFile.getParentFile(),
+                name.substring(0, name.length() - REQUEST_SUFFIX.length()) + RESPONSE_SUFFIX);
+        try {
+            // the client creates the response ring first, so once the request ring is ready both are
+            ShmRingBuffer requests = ShmRingBuffer.open(requestFile);
+            if (requests == null) {
+                return;
+            }
+            ShmRingBuffer responses = ShmRingBuffer.open(responseFile);
+            if (responses == null) {
+                requests.unmap();
+                return;
+            }
+            Runnable onClose = () -> {
+                connections.remove(requestFile);
+                requestFile.delete();
+                responseFile.delete();
+            };
+            // the handler answers on the connection it is called for, which only exists once it is constructed
+            ShmConnection[] connection = new ShmConnection[1];
+            Consumer<RpcMessage> handler = rpcMessage -> handle(connection[0], rpcMessage);
+            connection[0] = new ShmConnection("shm-rpc-server-" + name, responses, requests, handler, onClose);
+            connections.put(requestFile, connection[0]);
+            responses.markAccepted();
+            log.info("accept shared memory connection [{}]", requestFile);
+        } catch (IOException e) {
+            log.error("open shared memory connection [{}] fail", requestFile, e);
+        }
+    }
+
+    private void handle(ShmConnection connection, RpcMessage request) {
+        if (request.getMessageType() != RpcConstants.REQUEST_TYPE) {
+            return;
+        }
+        RpcRequest rpcRequest = (RpcRequest) request.getData();
+        RpcResponse<Object> rpcResponse;
+        try {
+            rpcResponse = RpcResponse.success(rpcRequestHandler.handleAndWait(rpcRequest), rpcRequest.getRequestId());
+        } catch (Exception e) {
+            log.error("handle request [{}] fail", rpcRequest, e);
+            rpcResponse = RpcResponse.fail(RpcResponseCodeEnum.FAIL);
+        }
+        connection.write(RpcMessage.builder().data(rpcResponse)
+                .version(request.getVersion())
+                .codec(request.getCodec())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(request.getRequestId())
+                .request(rpcRequest)
+                .messageType(RpcConstants.RESPONSE_TYPE).build());
+    }
+}
@@ -2,10 +2,13 @@ package github.javaguide.remoting.transport.socket;
 
 import github.javaguide.config.CustomShutdownHook;
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.utils.RpcPropertiesUtil;
 import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
+import github.javaguide.utils.concurrent.threadpool.VirtualThreads;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
@@ -29,7 +32,10 @@ public class SocketRpcServer {
 
 
     public SocketRpcServer() {
-        threadPool = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent("socket-server-rpc-pool");
+        // 每个连接占用一个线程直到客户端断开，有虚拟线程时不受线程池大小的限制
+        ExecutorService virtualThreads = VirtualThreads.newVirtualThreadPerTaskExecutorIfEnabled(
+                RpcPropertiesUtil.getBoolean(RpcConfigEnum.SERVER_VIRTUAL_THREADS, false), "socket-server-rpc-");
+        threadPool = virtualThreads != null ? virtualThreads : ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent("socket-server-rpc-pool");
         serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
     }
 
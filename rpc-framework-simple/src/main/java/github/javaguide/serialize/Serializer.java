@@ -1,6 +1,8 @@
 package github.javaguide.serialize;
 
 import github.javaguide.extension.SPI;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * 序列化接口，所有序列化类都要实现这个接口
@@ -28,4 +30,33 @@ public interface Serializer {
      * @return 反序列化的对象
      */
     <T> T deserialize(byte[] bytes, Class<T> clazz);
+
+    /**
+     * 序列化到 ByteBuf，直接写入 out 的 writerIndex 之后
+     * <p>
+     * The default implementation adapts {@link #serialize(Object)}, so extensions that only know about byte arrays
+     * keep working. Implementations should override it to write straight into the (pooled) buffer.
+     *
+     * @param obj 要序列化的对象
+     * @param out 目标 ByteBuf
+     */
+    default void serialize(Object obj, ByteBuf out) {
+        out.writeBytes(serialize(obj));
+    }
+
+    /**
+     * 从 ByteBuf 反序列化，读取 in 中所有可读的字节
+     * <p>
+     * The default implementation copies the readable bytes and delegates to {@link #deserialize(byte[], Class)}.
+     *
+     * @param in    序列化后的数据
+     * @param clazz 目标类
+     * @param <T>   类的类型
+     * @return 反序列化的对象
+     */
+    default <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        return deserialize(bytes, clazz);
+    }
 }
@@ -0,0 +1,88 @@
+package github.javaguide.serialize.hessian;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import com.caucho.hessian.io.SerializerFactory;
+import github.javaguide.exception.SerializeException;
+import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Hessian 2.0 serialization class
+ * <p>
+ * All streams share one SerializerFactory, so the serializers it builds for a class by reflection are built once.
+ * Hessian2Output and Hessian2Input are not thread safe and are reused per thread: they are bound to the target buffer
+ * for one call with {@code init} and unbound afterwards, which also resets their reference tables.
+ *
+ * @author Lin YuHang
+ * @createTime 2026年10月17日 16:05:00
+ */
+public class Hessian2Serializer implements Serializer {
+
+    private static final SerializerFactory SERIALIZER_FACTORY = new SerializerFactory();
+
+    private static final ThreadLocal<Hessian2Output> OUTPUT = ThreadLocal.withInitial(() -> {
+        Hessian2Output output = new Hessian2Output(null);
+        output.setSerializerFactory(SERIALIZER_FACTORY);
+        return output;
+    });
+    private static final ThreadLocal<Hessian2Input> INPUT = ThreadLocal.withInitial(() -> {
+        Hessian2Input input = new Hessian2Input(null);
+        input.setSerializerFactory(SERIALIZER_FACTORY);
+        return input;
+    });
+
+    @Override
+    public byte[] serialize(Object obj) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        write(obj, byteArrayOutputStream);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        return read(new ByteArrayInputStream(bytes), clazz);
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        write(obj, new ByteBufOutputStream(out));
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        return read(new ByteBufInputStream(in), clazz);
+    }
+
+    private static void write(Object obj, OutputStream os) {
+        Hessian2Output output = OUTPUT.get();
+        output.init(os);
+        try {
+            output.writeObject(obj);
+            output.flush();
+        } catch (Exception e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            output.init(null);
+        }
+    }
+
+    private static <T> T read(InputStream is, Class<T> clazz) {
+        Hessian2Input input = INPUT.get();
+        input.init(is);
+        try {
+            return clazz.cast(input.readObject(clazz));
+        } catch (Exception e) {
+            throw new SerializeException("Deserialization failed");
+        } finally {
+            input.init(null);
+        }
+    }
+}
@@ -3,17 +3,28 @@ package github.javaguide.serialize.kyro;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoPool;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.exception.SerializeException;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.serialize.Serializer;
+import github.javaguide.utils.RpcPropertiesUtil;
+import github.javaguide.utils.StringUtil;
+import io.netty.buffer.ByteBuf;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Kryo serialization class, Kryo serialization efficiency is very high, but only compatible with Java language
+ * <p>
+ * Kryo instances are borrowed from a pool and given back after every call, so a call may run on any netty event loop
+ * or business thread. The rpc dto and the classes listed in {@code rpc.kryo.register-classes} are registered up front,
+ * in the same order on every peer, so their class names are not written into every body. Output and Input buffers
+ * are reused per thread, they hold no state between calls.
  *
  * @author shuang.kou
  * @createTime 2020年05月13日 19:29:00
@@ -21,41 +32,148 @@ import java.io.ByteArrayOutputStream;
 @Slf4j
 public class KryoSerializer implements Serializer {
 
+    private static final int BUFFER_SIZE = 1024 * 4;
     /**
-     * Because Kryo is not thread safe. So, use ThreadLocal to store Kryo objects
+     * a thread keeps its output buffer up to this size, a larger one is dropped after the call
      */
-    private final ThreadLocal<Kryo> kryoThreadLocal = ThreadLocal.withInitial(() -> {
-        Kryo kryo = new Kryo();
-        kryo.register(RpcResponse.class);
-        kryo.register(RpcRequest.class);
-        return kryo;
-    });
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 256;
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final ThreadLocal<Output> OUTPUT = ThreadLocal.withInitial(() -> new Output(BUFFER_SIZE, -1));
+    private static final ThreadLocal<Input> INPUT = ThreadLocal.withInitial(Input::new);
+    /**
+     * copy of a direct body, kryo only reads from arrays without going through a stream
+     */
+    private static final ThreadLocal<byte[]> INPUT_BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private final KryoPool kryoPool;
+
+    public KryoSerializer() {
+        List<Class<?>> registeredClasses = loadRegisteredClasses();
+        this.kryoPool = new KryoPool.Builder(() -> {
+            Kryo kryo = new Kryo();
+            kryo.register(RpcResponse.class);
+            kryo.register(RpcRequest.class);
+            kryo.register(Object[].class);
+            kryo.register(Class[].class);
+            for (Class<?> clazz : registeredClasses) {
+                kryo.register(clazz);
+            }
+            return kryo;
+        }).softReferences().build();
+    }
 
     @Override
     public byte[] serialize(Object obj) {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             Output output = new Output(byteArrayOutputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
+        Output output = OUTPUT.get();
+        try {
+            write(obj, output);
             // Object->byte:将对象序列化为byte数组
-            kryo.writeObject(output, obj);
-            kryoThreadLocal.remove();
             return output.toBytes();
-        } catch (Exception e) {
-            throw new SerializeException("Serialization failed");
+        } finally {
+            release(output);
         }
     }
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-             Input input = new Input(byteArrayInputStream)) {
-            Kryo kryo = kryoThreadLocal.get();
+        Input input = INPUT.get();
+        input.setBuffer(bytes);
+        try {
             // byte->Object:从byte数组中反序列化出对对象
-            Object o = kryo.readObject(input, clazz);
-            kryoThreadLocal.remove();
-            return clazz.cast(o);
+            return read(input, clazz);
+        } finally {
+            input.setBuffer(EMPTY);
+        }
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        Output output = OUTPUT.get();
+        try {
+            write(obj, output);
+            out.writeBytes(output.getBuffer(), 0, output.position());
+        } finally {
+            release(output);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        int length = in.readableBytes();
+        Input input = INPUT.get();
+        int offset;
+        if (in.hasArray()) {
+            // heap buffer: read the backing array in place
+            offset = in.arrayOffset() + in.readerIndex();
+            input.setBuffer(in.array(), offset, length);
+        } else {
+            byte[] buffer = INPUT_BUFFER.get();
+            if (buffer.length < length) {
+                buffer = new byte[length];
+                if (length <= MAX_RETAINED_BUFFER_SIZE) {
+                    INPUT_BUFFER.set(buffer);
+                }
+            }
+            in.getBytes(in.readerIndex(), buffer, 0, length);
+            offset = 0;
+            input.setBuffer(buffer, 0, length);
+        }
+        try {
+            T obj = read(input, clazz);
+            in.skipBytes(input.position() - offset);
+            return obj;
+        } finally {
+            input.setBuffer(EMPTY);
+        }
+    }
+
+    private void write(Object obj, Output output) {
+        Kryo kryo = kryoPool.borrow();
+        try {
+            output.clear();
+            kryo.writeObject(output, obj);
+        } catch (Exception e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            kryoPool.release(kryo);
+        }
+    }
+
+    private <T> T read(Input input, Class<T> clazz) {
+        Kryo kryo = kryoPool.borrow();
+        try {
+            return clazz.cast(kryo.readObject(input, clazz));
         } catch (Exception e) {
             throw new SerializeException("Deserialization failed");
+        } finally {
+            kryoPool.release(kryo);
+        }
+    }
+
+    private static void release(Output output) {
+        if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+            OUTPUT.remove();
+        }
+    }
+
+    private static List<Class<?>> loadRegisteredClasses() {
+        String value = RpcPropertiesUtil.getString(RpcConfigEnum.KRYO_REGISTER_CLASSES, null);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        for (String className : value.split(",")) {
+            if (StringUtil.isBlank(className)) {
+                continue;
+            }
+            try {
+                classes.add(Class.forName(className.trim()));
+            } catch (ClassNotFoundException e) {
+                throw new SerializeException("kryo register class not found: " + className.trim());
+            }
         }
+        log.info("kryo register classes {}", classes);
+        return classes;
     }
 }
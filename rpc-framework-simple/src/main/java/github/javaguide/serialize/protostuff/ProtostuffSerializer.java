@@ -1,40 +1,101 @@
 package github.javaguide.serialize.protostuff;
 
+import github.javaguide.exception.SerializeException;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
 import github.javaguide.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
+ * Protostuff serialization class
+ * <p>
+ * LinkedBuffer is not thread safe, every thread (netty event loop or business executor) gets its own and clears it
+ * after each call. Schemas are cached by class, the payloads of RpcRequest and RpcResponse are polymorphic fields
+ * whose schemas end up in the same cache.
+ *
  * @author TangMinXuan
  * @createTime 2020年11月09日 20:13
  */
 public class ProtostuffSerializer implements Serializer {
 
     /**
-     * Avoid re applying buffer space every time serialization
+     * Avoid re applying buffer space every time serialization, one buffer per thread
      */
-    private static final LinkedBuffer BUFFER = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    private static final ThreadLocal<LinkedBuffer> BUFFER = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+    private static final Map<Class<?>, Schema<?>> SCHEMA_CACHE = new ConcurrentHashMap<>();
+
+    static {
+        getSchema(RpcRequest.class);
+        getSchema(RpcResponse.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Schema<T> getSchema(Class<T> clazz) {
+        return (Schema<T>) SCHEMA_CACHE.computeIfAbsent(clazz, RuntimeSchema::getSchema);
+    }
 
     @Override
+    @SuppressWarnings("unchecked")
     public byte[] serialize(Object obj) {
-        Class<?> clazz = obj.getClass();
-        Schema schema = RuntimeSchema.getSchema(clazz);
-        byte[] bytes;
+        Schema<Object> schema = (Schema<Object>) getSchema(obj.getClass());
+        LinkedBuffer buffer = BUFFER.get();
         try {
-            bytes = ProtostuffIOUtil.toByteArray(obj, schema, BUFFER);
+            return ProtostuffIOUtil.toByteArray(obj, schema, buffer);
         } finally {
-            BUFFER.clear();
+            buffer.clear();
         }
-        return bytes;
     }
 
     @Override
     public <T> T deserialize(byte[] bytes, Class<T> clazz) {
-        Schema<T> schema = RuntimeSchema.getSchema(clazz);
+        Schema<T> schema = getSchema(clazz);
         T obj = schema.newMessage();
         ProtostuffIOUtil.mergeFrom(bytes, obj, schema);
         return obj;
     }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void serialize(Object obj, ByteBuf out) {
+        Schema<Object> schema = (Schema<Object>) getSchema(obj.getClass());
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // encode into the thread's buffer chain first, then copy the chain into out in one pass
+            ProtostuffIOUtil.writeTo(buffer, obj, schema);
+            LinkedBuffer.writeTo((OutputStream) new ByteBufOutputStream(out), buffer);
+        } catch (IOException e) {
+            throw new SerializeException("Serialization failed");
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, Class<T> clazz) {
+        Schema<T> schema = getSchema(clazz);
+        T obj = schema.newMessage();
+        if (in.hasArray()) {
+            // heap buffer: parse the backing array in place
+            ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(), obj, schema);
+            in.skipBytes(in.readableBytes());
+            return obj;
+        }
+        try {
+            ProtostuffIOUtil.mergeFrom(new ByteBufInputStream(in), obj, schema);
+        } catch (IOException e) {
+            throw new SerializeException("Deserialization failed");
+        }
+        return obj;
+    }
 }
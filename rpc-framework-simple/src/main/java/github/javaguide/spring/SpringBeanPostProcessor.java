@@ -1,21 +1,43 @@
 package github.javaguide.spring;
 
+import github.javaguide.annotation.RpcMethod;
 import github.javaguide.annotation.RpcReference;
 import github.javaguide.annotation.RpcService;
+import github.javaguide.config.RpcMethodConfig;
 import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcConfigEnum;
 import github.javaguide.extension.ExtensionLoader;
 import github.javaguide.factory.SingletonFactory;
 import github.javaguide.provider.ServiceProvider;
 import github.javaguide.provider.impl.ZkServiceProviderImpl;
 import github.javaguide.proxy.RpcClientProxy;
+import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.remoting.transport.RpcRequestTransport;
+import github.javaguide.utils.RpcPropertiesUtil;
+import github.javaguide.utils.concurrent.threadpool.CustomThreadPoolConfig;
+import github.javaguide.utils.concurrent.threadpool.ThreadPoolFactoryUtil;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 /**
  * BeanPostProcessor接口有两个回调方法。当一个BeanPostProcessor的实现类注册到Spring IOC容器后，
@@ -43,14 +65,27 @@ import java.lang.reflect.Field;
  */
 @Slf4j
 @Component
-public class SpringBeanPostProcessor implements BeanPostProcessor {
+public class SpringBeanPostProcessor implements BeanPostProcessor, ApplicationListener<ContextRefreshedEvent> {
+
+    private static final int WARMUP_THREADS = 8;
+    private static final long DEFAULT_WARMUP_TIMEOUT_MILLIS = 3000;
 
     private final ServiceProvider serviceProvider;
     private final RpcRequestTransport rpcClient;
+    /**
+     * true if every reference is eager
+     */
+    private final boolean eager;
+    /**
+     * rpc service names of the eager references not warmed up yet
+     */
+    private final Set<String> eagerServices = ConcurrentHashMap.newKeySet();
 
     public SpringBeanPostProcessor() {
         this.serviceProvider = SingletonFactory.getInstance(ZkServiceProviderImpl.class);
-        this.rpcClient = ExtensionLoader.getExtensionLoader(RpcRequestTransport.class).getExtension("netty");
+        this.rpcClient = ExtensionLoader.getExtensionLoader(RpcRequestTransport.class).getExtension(
+                RpcPropertiesUtil.getString(RpcConfigEnum.CLIENT_TRANSPORT, "netty"));
+        this.eager = RpcPropertiesUtil.getBoolean(RpcConfigEnum.CLIENT_EAGER, false);
     }
 
     /**
@@ -92,11 +127,30 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
         for (Field declaredField : declaredFields) { // 判断字段上是否有 @RpcReference 注解
             RpcReference rpcReference = declaredField.getAnnotation(RpcReference.class);
             if (rpcReference != null) {
+                Map<String, RpcMethodConfig> methods = new HashMap<>();
+                for (RpcMethod rpcMethod : rpcReference.methods()) {
+                    methods.put(rpcMethod.name(), RpcMethodConfig.builder()
+                            .timeout(rpcMethod.timeout())
+                            .idempotent(rpcMethod.idempotent())
+                            .hedge(rpcMethod.hedge())
+                            .hedgeDelay(rpcMethod.hedgeDelay())
+                            .retries(rpcMethod.retries()).build());
+                }
                 RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder()
                         .group(rpcReference.group())
-                        .version(rpcReference.version()).build();
+                        .version(rpcReference.version())
+                        .timeout(rpcReference.timeout())
+                        .hedge(rpcReference.hedge())
+                        .retries(rpcReference.retries())
+                        .methods(methods).build();
                 RpcClientProxy rpcClientProxy = new RpcClientProxy(rpcClient, rpcServiceConfig); // 创建客户端代理类
                 Object clientProxy = rpcClientProxy.getProxy(declaredField.getType()); // 获取字段类型Class，获取代理类实例对象
+                if (eager || rpcReference.eager()) { // 容器启动完成后再统一预热
+                    eagerServices.add(RpcRequest.builder()
+                            .interfaceName(declaredField.getType().getName())
+                            .group(rpcReference.group())
+                            .version(rpcReference.version()).build().getRpcServiceName());
+                }
                 declaredField.setAccessible(true); // 当字段修饰符为 private 时需要加上这句话
                 try {
                     declaredField.set(bean, clientProxy); // 向Bean对象的属性设置新值，即将客户端类设置为客户端代理类
@@ -107,4 +161,49 @@ public class SpringBeanPostProcessor implements BeanPostProcessor {
         }
         return bean;
     }
+
+    /**
+     * 容器启动完成后，订阅 eager 引用的服务并预先连接它们的所有服务提供者，在流量到来前完成首次调用的准备工作
+     * <p>
+     * The services are warmed up in parallel and startup waits for them up to rpc.client.warmup-timeout-millis.
+     * A service that is not ready by then, or failed, is only logged: its first call prepares it as usual.
+     */
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (eagerServices.isEmpty()) {
+            return;
+        }
+        List<String> rpcServiceNames = new ArrayList<>(eagerServices);
+        eagerServices.removeAll(rpcServiceNames);
+        int pings = RpcPropertiesUtil.getInt(RpcConfigEnum.CLIENT_WARMUP_PINGS, 0);
+        long timeoutMillis = RpcPropertiesUtil.getLong(RpcConfigEnum.CLIENT_WARMUP_TIMEOUT_MILLIS, DEFAULT_WARMUP_TIMEOUT_MILLIS);
+        CustomThreadPoolConfig customThreadPoolConfig = new CustomThreadPoolConfig();
+        customThreadPoolConfig.setCorePoolSize(WARMUP_THREADS);
+        customThreadPoolConfig.setMaximumPoolSize(WARMUP_THREADS);
+        customThreadPoolConfig.setWorkQueue(new LinkedBlockingQueue<>());
+        // 读取注册中心是同步的，交给线程池并行执行
+        ExecutorService executor = ThreadPoolFactoryUtil.createCustomThreadPoolIfAbsent(
+                customThreadPoolConfig, "rpc-client-warmup", true);
+        List<CompletableFuture<Void>> ready = new ArrayList<>(rpcServiceNames.size());
+        for (String rpcServiceName : rpcServiceNames) {
+            ready.add(CompletableFuture.supplyAsync(() -> rpcClient.warmUp(rpcServiceName, pings), executor)
+                    .thenCompose(Function.identity())
+                    .whenComplete((v, e) -> {
+                        if (e != null) {
+                            log.warn("warm up [{}] fail", rpcServiceName, e);
+                        } else {
+                            log.info("[{}] is warmed up", rpcServiceName);
+                        }
+                    }));
+        }
+        try {
+            CompletableFuture.allOf(ready.toArray(new CompletableFuture[0])).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("not every service of [{}] is warmed up within [{}] ms", rpcServiceNames, timeoutMillis);
+        } catch (ExecutionException e) {
+            // 每个服务的失败已经记录过了
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,81 @@
+package github.javaguide.codec;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * what rpc-framework-codegen generates for {@link github.javaguide.DemoRpcService}, plus an overload with primitives
+ */
+public final class DemoRpcServiceRpcCodec implements ServiceCodec {
+
+    private static final MethodCodec[] METHODS = {new Method0(), new Method1()};
+
+    @Override
+    public String interfaceName() {
+        return "github.javaguide.DemoRpcService";
+    }
+
+    @Override
+    public int fingerprint() {
+        return 42;
+    }
+
+    @Override
+    public MethodCodec[] methods() {
+        return METHODS;
+    }
+
+    private static final class Method0 extends MethodCodec {
+
+        Method0() {
+            super("hello");
+        }
+
+        @Override
+        public void writeArguments(Object[] args, ByteBuf out) {
+        }
+
+        @Override
+        public Object[] readArguments(ByteBuf in) {
+            return new Object[]{};
+        }
+
+        @Override
+        public void writeResult(Object result, ByteBuf out) {
+            CodecSupport.writeString(out, (String) result);
+        }
+
+        @Override
+        public Object readResult(ByteBuf in) {
+            return CodecSupport.readString(in);
+        }
+    }
+
+    private static final class Method1 extends MethodCodec {
+
+        Method1() {
+            super("hello", int.class, Long.class, Object.class);
+        }
+
+        @Override
+        public void writeArguments(Object[] args, ByteBuf out) {
+            out.writeInt((Integer) args[0]);
+            CodecSupport.writeLong(out, (Long) args[1]);
+            CodecSupport.writeObject(out, args[2]);
+        }
+
+        @Override
+        public Object[] readArguments(ByteBuf in) {
+            return new Object[]{in.readInt(), CodecSupport.readLong(in), CodecSupport.readObject(in)};
+        }
+
+        @Override
+        public void writeResult(Object result, ByteBuf out) {
+            CodecSupport.writeString(out, (String) result);
+        }
+
+        @Override
+        public Object readResult(ByteBuf in) {
+            return CodecSupport.readString(in);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package github.javaguide.codec;
+
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.serialize.hessian.Hessian2Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceCodecsTest {
+
+    private final ServiceCodecs serviceCodecs = new ServiceCodecs();
+
+    private static RpcRequest rpcRequest() {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{7, null, Arrays.asList("a", "b")})
+                .interfaceName("github.javaguide.DemoRpcService")
+                .paramTypes(new Class<?>[]{int.class, Long.class, Object.class})
+                .group("test1")
+                .version("version1")
+                .build();
+    }
+
+    @Test
+    void requestTest() {
+        RpcRequest target = rpcRequest();
+        assertTrue(serviceCodecs.supports(target));
+        ByteBuf buf = Unpooled.buffer();
+        serviceCodecs.writeRequest(target, buf);
+        RpcRequest actual = serviceCodecs.readRequest(buf);
+        assertEquals(0, buf.readableBytes());
+        assertEquals(target.getRpcServiceName(), actual.getRpcServiceName());
+        assertEquals(target.getMethodName(), actual.getMethodName());
+        assertArrayEquals(target.getParamTypes(), actual.getParamTypes());
+        assertArrayEquals(target.getParameters(), actual.getParameters());
+        // a typed request is much smaller than the generic one
+        assertTrue(buf.writerIndex() * 2 < new Hessian2Serializer().serialize(target).length);
+    }
+
+    @Test
+    void responseTest() {
+        RpcRequest rpcRequest = rpcRequest();
+        ByteBuf buf = Unpooled.buffer();
+        serviceCodecs.writeResponse(RpcResponse.success("hello", null), rpcRequest, buf);
+        RpcResponse<Object> actual = serviceCodecs.readResponse(buf);
+        assertEquals("hello", actual.getData());
+        assertEquals(RpcResponseCodeEnum.SUCCESS.getCode(), actual.getCode());
+        assertEquals(RpcResponseCodeEnum.SUCCESS.getMessage(), actual.getMessage());
+
+        serviceCodecs.writeResponse(RpcResponse.fail(RpcResponseCodeEnum.FAIL), rpcRequest, buf);
+        actual = serviceCodecs.readResponse(buf);
+        assertNull(actual.getData());
+        assertEquals(RpcResponseCodeEnum.FAIL.getCode(), actual.getCode());
+        assertEquals(0, buf.readableBytes());
+    }
+
+    @Test
+    void negotiationTest() {
+        RpcRequest rpcRequest = rpcRequest();
+        assertFalse(serviceCodecs.accepts(rpcRequest));
+        rpcRequest.setCodecFingerprint(serviceCodecs.fingerprintOf(rpcRequest.getInterfaceName()));
+        assertTrue(serviceCodecs.accepts(rpcRequest));
+        rpcRequest.setCodecFingerprint(43);
+        assertFalse(serviceCodecs.accepts(rpcRequest));
+    }
+
+    @Test
+    void unknownMethodTest() {
+        RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{Collections.emptyList()})
+                .interfaceName("github.javaguide.DemoRpcService")
+                .paramTypes(new Class<?>[]{Object.class})
+                .build();
+        assertFalse(serviceCodecs.supports(rpcRequest));
+        assertThrows(RuntimeException.class, () -> serviceCodecs.writeRequest(rpcRequest, Unpooled.buffer()));
+    }
+}
@@ -0,0 +1,109 @@
+package github.javaguide.compress.deflate;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.gzip.GzipCompress;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.serialize.hessian.HessianSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeflateDictCompressTest {
+
+    private static RpcRequest rpcRequest(int i) {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo" + i, "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+    }
+
+    @Test
+    void deflateDictCompressTest() {
+        Compress deflateDictCompress = new DeflateDictCompress();
+        byte[] rpcRequestBytes = new HessianSerializer().serialize(rpcRequest(0));
+        byte[] compressRpcRequestBytes = deflateDictCompress.compress(rpcRequestBytes);
+        assertArrayEquals(rpcRequestBytes, deflateDictCompress.decompress(compressRpcRequestBytes));
+        // the built-in dictionary already beats gzip on a small request
+        assertTrue(compressRpcRequestBytes.length < new GzipCompress().compress(rpcRequestBytes).length);
+    }
+
+    @Test
+    void deflateDictCompressByteBufTest() {
+        Compress deflateDictCompress = new DeflateDictCompress();
+        byte[] raw = new byte[20000];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte) (i * 31 % 251);
+        }
+        ByteBuf direct = Unpooled.directBuffer().writeBytes(raw);
+        ByteBuf compressed = Unpooled.directBuffer();
+        ByteBuf decompressed = Unpooled.directBuffer();
+        deflateDictCompress.compress(direct, compressed, "github.javaguide.HelloServicegroup1version1");
+        compressed.writeByte(7); // bytes after the deflate stream are left unread
+        deflateDictCompress.decompress(compressed, decompressed);
+        assertArrayEquals(raw, ByteBufUtil.getBytes(decompressed));
+        assertEquals(1, compressed.readableBytes());
+        direct.release();
+        compressed.release();
+        decompressed.release();
+    }
+
+    @Test
+    void unknownDictionaryTest() {
+        Compress deflateDictCompress = new DeflateDictCompress();
+        byte[] compressed = deflateDictCompress.compress("hello".getBytes());
+        compressed[0] ^= 1;
+        assertThrows(RuntimeException.class, () -> deflateDictCompress.decompress(compressed));
+    }
+
+    @Test
+    void forgedLengthTest() {
+        Compress deflateDictCompress = new DeflateDictCompress();
+        byte[] negative = deflateDictCompress.compress("hello".getBytes());
+        negative[4] = (byte) 0x80;
+        assertThrows(RuntimeException.class, () -> deflateDictCompress.decompress(negative));
+        // rejected before 2 GB are allocated
+        byte[] huge = deflateDictCompress.compress("hello".getBytes());
+        huge[4] = 0x7F;
+        assertThrows(RuntimeException.class, () -> deflateDictCompress.decompress(huge));
+    }
+
+    @Test
+    void oversizedStreamTest() {
+        Compress deflateDictCompress = new DeflateDictCompress();
+        // 1 MB of zeros deflates to about 1 KB, declare 100 bytes only
+        ByteBuf compressed = Unpooled.wrappedBuffer(deflateDictCompress.compress(new byte[1 << 20]));
+        compressed.setInt(4, 100);
+        ByteBuf decompressed = Unpooled.buffer();
+        assertThrows(RuntimeException.class, () -> deflateDictCompress.decompress(compressed, decompressed));
+        // it fails before inflating more than declared
+        assertTrue(decompressed.writerIndex() <= 100);
+    }
+
+    @Test
+    void trainTest() {
+        HessianSerializer serializer = new HessianSerializer();
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            samples.add(serializer.serialize(rpcRequest(i)));
+        }
+        byte[] dictionary = DeflateDictionaryTrainer.train(samples, 1024);
+        assertTrue(dictionary.length > 0 && dictionary.length <= 1024);
+        String text = new String(dictionary, StandardCharsets.ISO_8859_1);
+        assertTrue(text.contains("github.javaguide.HelloService"));
+    }
+}
@@ -3,10 +3,14 @@ package github.javaguide.compress.gzip;
 import github.javaguide.compress.Compress;
 import github.javaguide.remoting.dto.RpcRequest;
 import github.javaguide.serialize.kyro.KryoSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class GzipCompressTest {
@@ -28,5 +32,19 @@ class GzipCompressTest {
         assertEquals(rpcRequestBytes.length, decompressRpcRequestBytes.length);
     }
 
-
-}
\ No newline at end of file
+    @Test
+    void gzipCompressByteBufTest() {
+        Compress gzipCompress = new GzipCompress();
+        byte[] raw = "github.javaguide.HelloService#hello github.javaguide.HelloService#hello".getBytes();
+        ByteBuf compressed = Unpooled.directBuffer();
+        ByteBuf decompressed = Unpooled.buffer();
+        gzipCompress.compress(Unpooled.wrappedBuffer(raw), compressed);
+        // the streaming path must stay compatible with the byte[] one
+        assertArrayEquals(raw, gzipCompress.decompress(ByteBufUtil.getBytes(compressed)));
+        gzipCompress.decompress(compressed, decompressed);
+        assertArrayEquals(raw, ByteBufUtil.getBytes(decompressed));
+        assertEquals(0, compressed.readableBytes());
+        compressed.release();
+        decompressed.release();
+    }
+}
@@ -0,0 +1,87 @@
+package github.javaguide.compress.lz4;
+
+import github.javaguide.compress.Compress;
+import github.javaguide.compress.gzip.GzipCompress;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.serialize.kyro.KryoSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Lz4CompressTest {
+    @Test
+    void lz4CompressTest() {
+        Compress lz4Compress = new Lz4Compress();
+        StringBuilder parameter = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            parameter.append("sayhelooloo").append(i);
+        }
+        RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{parameter.toString(), "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+        KryoSerializer kryoSerializer = new KryoSerializer();
+        byte[] rpcRequestBytes = kryoSerializer.serialize(rpcRequest);
+        byte[] compressRpcRequestBytes = lz4Compress.compress(rpcRequestBytes);
+        assertTrue(compressRpcRequestBytes.length < rpcRequestBytes.length);
+        assertArrayEquals(rpcRequestBytes, lz4Compress.decompress(compressRpcRequestBytes));
+    }
+
+    @Test
+    void lz4CompressByteBufTest() {
+        Compress lz4Compress = new Lz4Compress();
+        Random random = new Random(17);
+        // empty, tiny, incompressible, long runs (overlapping matches) and long literal / match lengths
+        byte[][] inputs = new byte[5][];
+        inputs[0] = new byte[0];
+        inputs[1] = "hello".getBytes();
+        inputs[2] = new byte[70000];
+        random.nextBytes(inputs[2]);
+        inputs[3] = new byte[5000];
+        inputs[4] = new byte[100000];
+        for (int i = 0; i < inputs[4].length; i++) {
+            inputs[4][i] = (byte) (i % 1000 < 600 ? random.nextInt() : i % 7);
+        }
+        for (byte[] raw : inputs) {
+            ByteBuf compressed = Unpooled.directBuffer();
+            ByteBuf decompressed = Unpooled.directBuffer();
+            compressed.writeByte(42); // out is appended to, not overwritten
+            compressed.skipBytes(1);
+            lz4Compress.compress(Unpooled.wrappedBuffer(raw), compressed);
+            assertTrue(compressed.readableBytes() <= Lz4Compress.maxCompressedLength(raw.length));
+            lz4Compress.decompress(compressed, decompressed);
+            assertArrayEquals(raw, ByteBufUtil.getBytes(decompressed));
+            assertEquals(0, compressed.readableBytes());
+            compressed.release();
+            decompressed.release();
+        }
+    }
+
+    @Test
+    void lz4DecompressMalformedTest() {
+        Compress lz4Compress = new Lz4Compress();
+        byte[] compressed = lz4Compress.compress(new byte[1000]);
+        // declare a shorter length than the block really produces
+        compressed[3] = 10;
+        assertThrows(RuntimeException.class, () -> lz4Compress.decompress(compressed));
+        // a huge declared length is rejected before the output is allocated
+        byte[] huge = lz4Compress.compress(new byte[1000]);
+        huge[0] = 0x7F;
+        assertThrows(RuntimeException.class, () -> lz4Compress.decompress(huge));
+        // the lz4 body is not a gzip body
+        assertThrows(RuntimeException.class, () -> new GzipCompress().decompress(lz4Compress.compress(new byte[100])));
+    }
+}
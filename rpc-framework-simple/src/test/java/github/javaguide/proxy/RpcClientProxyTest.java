@@ -0,0 +1,70 @@
+package github.javaguide.proxy;
+
+import github.javaguide.DemoRpcService;
+import github.javaguide.config.RpcMethodConfig;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RpcClientProxyTest {
+
+    interface AsyncService {
+        CompletableFuture<String> hello(String name);
+    }
+
+    @Test
+    void asyncMethodDoesNotBlockTest() throws Exception {
+        CompletableFuture<RpcResponse<Object>> responseFuture = new CompletableFuture<>();
+        RpcRequestTransport transport = rpcRequest -> responseFuture;
+        AsyncService asyncService = new RpcClientProxy(transport, new RpcServiceConfig()).getProxy(AsyncService.class);
+
+        CompletableFuture<String> result = asyncService.hello("rpc");
+        assertFalse(result.isDone());
+        Thread[] completingThread = new Thread[1];
+        CompletableFuture<String> observed = result.whenComplete((value, e) -> completingThread[0] = Thread.currentThread());
+        responseFuture.complete(RpcResponse.success("hello rpc", null));
+        assertEquals("hello rpc", observed.get(5, TimeUnit.SECONDS));
+        // completed by the callback pool, not by the thread that completed the response
+        assertNotEquals(Thread.currentThread(), completingThread[0]);
+    }
+
+    @Test
+    void methodTimeoutTest() {
+        CompletableFuture<RpcResponse<Object>> responseFuture = new CompletableFuture<>();
+        RpcRequestTransport transport = rpcRequest -> responseFuture;
+        // a group no other test publishes in this JVM, or the call would be made in-JVM and never time out
+        RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder().group("timeout").version("version1")
+                .timeout(TimeUnit.MINUTES.toMillis(10))
+                .methods(Collections.singletonMap("hello", RpcMethodConfig.builder().timeout(100).build())).build();
+        DemoRpcService demoRpcService = new RpcClientProxy(transport, rpcServiceConfig).getProxy(DemoRpcService.class);
+
+        RpcException e = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(RpcException.class, demoRpcService::hello));
+        assertTrue(e.getMessage().contains("hello"));
+        assertTrue(responseFuture.isCompletedExceptionally());
+    }
+
+    @Test
+    void asyncMethodFailureTest() {
+        RpcRequestTransport transport = rpcRequest -> CompletableFuture.completedFuture(RpcResponse.fail(RpcResponseCodeEnum.FAIL));
+        AsyncService asyncService = new RpcClientProxy(transport, new RpcServiceConfig()).getProxy(AsyncService.class);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> asyncService.hello("rpc").get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RpcException);
+    }
+}
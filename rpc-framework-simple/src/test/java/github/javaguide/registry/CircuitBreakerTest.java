@@ -0,0 +1,86 @@
+package github.javaguide.registry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final String ADDRESS = "127.0.0.1:9998";
+    private static final long CALL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void tripAndRecoverTest() throws InterruptedException {
+        ProviderAvailability providerAvailability = new ProviderAvailability();
+        CircuitBreaker circuitBreaker = new CircuitBreaker(ADDRESS, providerAvailability, 8, 4, 50, 0, 50, 1000);
+        long trips = CircuitBreakers.trips();
+
+        circuitBreaker.record(false, CALL_NANOS, false);
+        circuitBreaker.record(false, CALL_NANOS, true);
+        circuitBreaker.record(false, CALL_NANOS, true);
+        // 3 calls are too few to judge
+        assertFalse(circuitBreaker.isOpen());
+        circuitBreaker.record(false, CALL_NANOS, true);
+        assertTrue(circuitBreaker.isOpen());
+        assertFalse(providerAvailability.isAvailable(ADDRESS));
+        assertTrue(CircuitBreakers.trips() > trips);
+        assertFalse(circuitBreaker.onSend());
+
+        // after 50ms one call probes the provider, the others still leave it out
+        TimeUnit.MILLISECONDS.sleep(60);
+        assertTrue(providerAvailability.isAvailable(ADDRESS));
+        assertTrue(circuitBreaker.onSend());
+        assertFalse(circuitBreaker.onSend());
+        assertFalse(providerAvailability.isAvailable(ADDRESS));
+        // a failed probe excludes it for twice as long
+        circuitBreaker.record(true, CALL_NANOS, true);
+        TimeUnit.MILLISECONDS.sleep(60);
+        assertFalse(circuitBreaker.onSend());
+        TimeUnit.MILLISECONDS.sleep(60);
+        assertTrue(circuitBreaker.onSend());
+        circuitBreaker.record(true, CALL_NANOS, false);
+        assertFalse(circuitBreaker.isOpen());
+        assertTrue(providerAvailability.isAvailable(ADDRESS));
+
+        // the calls before the breaker closed do not count any more
+        circuitBreaker.record(false, CALL_NANOS, true);
+        assertFalse(circuitBreaker.isOpen());
+    }
+
+    @Test
+    void lostProbeTest() throws InterruptedException {
+        ProviderAvailability providerAvailability = new ProviderAvailability();
+        CircuitBreaker circuitBreaker = new CircuitBreaker(ADDRESS, providerAvailability, 8, 1, 50, 0, 50, 100);
+        circuitBreaker.record(false, CALL_NANOS, true);
+        assertTrue(circuitBreaker.isOpen());
+        TimeUnit.MILLISECONDS.sleep(60);
+        // the outcome of this probe never comes
+        assertTrue(circuitBreaker.onSend());
+        TimeUnit.MILLISECONDS.sleep(110);
+        // the first call after the longest interval gives the probe up and opens the breaker again
+        assertTrue(providerAvailability.isAvailable(ADDRESS));
+        assertFalse(circuitBreaker.onSend());
+        assertTrue(circuitBreaker.isOpen());
+        assertFalse(providerAvailability.isAvailable(ADDRESS));
+        TimeUnit.MILLISECONDS.sleep(110);
+        assertTrue(circuitBreaker.onSend());
+        circuitBreaker.record(true, CALL_NANOS, false);
+        assertFalse(circuitBreaker.isOpen());
+    }
+
+    @Test
+    void slowCallTest() {
+        ProviderAvailability providerAvailability = new ProviderAvailability();
+        CircuitBreaker circuitBreaker = new CircuitBreaker(ADDRESS, providerAvailability, 8, 4, 50, 10, 50, 1000);
+        long slowCallNanos = TimeUnit.MILLISECONDS.toNanos(20);
+        circuitBreaker.record(false, CALL_NANOS, false);
+        circuitBreaker.record(false, CALL_NANOS, false);
+        circuitBreaker.record(false, slowCallNanos, false);
+        assertFalse(circuitBreaker.isOpen());
+        circuitBreaker.record(false, slowCallNanos, false);
+        assertTrue(circuitBreaker.isOpen());
+    }
+}
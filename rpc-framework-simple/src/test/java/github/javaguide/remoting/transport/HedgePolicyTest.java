@@ -0,0 +1,108 @@
+package github.javaguide.remoting.transport;
+
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.client.NettyRpcClientHandler;
+import github.javaguide.remoting.transport.netty.client.UnprocessedRequests;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgePolicyTest {
+
+    @Test
+    void copyWinsTest() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            HedgePolicy hedgePolicy = new HedgePolicy(20, new TokenBudget(100, 1));
+            List<CompletableFuture<RpcResponse<Object>>> attempts = new ArrayList<>();
+            RpcResponse<Object> fromCopy = RpcResponse.success("copy", "1");
+            Function<Boolean, CompletableFuture<RpcResponse<Object>>> sender = copy -> {
+                CompletableFuture<RpcResponse<Object>> attempt = copy ? CompletableFuture.completedFuture(fromCopy) : new CompletableFuture<>();
+                attempts.add(attempt);
+                return attempt;
+            };
+            long hedgeWins = HedgePolicy.hedgeWins();
+
+            CompletableFuture<RpcResponse<Object>> resultFuture = hedgePolicy.call(sender, scheduler);
+            // the first provider never answers, the copy sent after 20ms does
+            assertSame(fromCopy, resultFuture.get(1, TimeUnit.SECONDS));
+            assertEquals(2, attempts.size());
+            assertTrue(attempts.get(0).isCancelled());
+            assertEquals(1, HedgePolicy.hedgeWins() - hedgeWins);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void losingAttemptKeepsConnectionTest() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcClientHandler(unprocessedRequests));
+        try {
+            HedgePolicy hedgePolicy = new HedgePolicy(1, new TokenBudget(100, 1));
+            CompletableFuture<RpcResponse<Object>> otherCall = new CompletableFuture<>();
+            unprocessedRequests.put(otherCall);
+            int[] requestIds = new int[2];
+            CompletableFuture<Void> copySent = new CompletableFuture<>();
+            Function<Boolean, CompletableFuture<RpcResponse<Object>>> sender = copy -> {
+                CompletableFuture<RpcResponse<Object>> attempt = new CompletableFuture<>();
+                requestIds[copy ? 1 : 0] = unprocessedRequests.put(attempt);
+                if (copy) {
+                    copySent.complete(null);
+                }
+                return attempt;
+            };
+
+            CompletableFuture<RpcResponse<Object>> resultFuture = hedgePolicy.call(sender, scheduler);
+            copySent.get(1, TimeUnit.SECONDS);
+            RpcResponse<Object> fromCopy = RpcResponse.success("copy", null);
+            channel.writeInbound(response(requestIds[1], fromCopy));
+            assertSame(fromCopy, resultFuture.get(1, TimeUnit.SECONDS));
+            // the cancelled first attempt gave up its slot, its late response is dropped
+            assertEquals(1, unprocessedRequests.size());
+            channel.writeInbound(response(requestIds[0], RpcResponse.success("late", null)));
+            assertTrue(channel.isOpen());
+            assertFalse(otherCall.isDone());
+        } finally {
+            channel.finishAndReleaseAll();
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static RpcMessage response(int requestId, RpcResponse<Object> rpcResponse) {
+        return RpcMessage.builder().messageType(RpcConstants.RESPONSE_TYPE).requestId(requestId).data(rpcResponse).build();
+    }
+
+    @Test
+    void budgetTest() {
+        TokenBudget tokenBudget = new TokenBudget(50, 2);
+        assertFalse(tokenBudget.tryWithdraw());
+        tokenBudget.deposit();
+        assertFalse(tokenBudget.tryWithdraw());
+        tokenBudget.deposit();
+        assertTrue(tokenBudget.tryWithdraw());
+        // no more than 2 tokens are saved up
+        for (int i = 0; i < 10; i++) {
+            tokenBudget.deposit();
+        }
+        assertEquals(2, tokenBudget.tokens());
+        assertTrue(tokenBudget.tryWithdraw());
+        assertTrue(tokenBudget.tryWithdraw());
+        assertFalse(tokenBudget.tryWithdraw());
+    }
+}
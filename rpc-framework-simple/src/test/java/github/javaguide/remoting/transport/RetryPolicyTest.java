@@ -0,0 +1,67 @@
+package github.javaguide.remoting.transport;
+
+import github.javaguide.exception.RpcException;
+import github.javaguide.remoting.dto.RpcResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetryPolicyTest {
+
+    @Test
+    void retryTest() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RetryPolicy retryPolicy = new RetryPolicy(2, 1, 10, new TokenBudget(100, 1));
+            RpcResponse<Object> rpcResponse = RpcResponse.success("data", "1");
+            AtomicInteger attempts = new AtomicInteger();
+            // the first provider closes the connection, the second answers
+            Supplier<CompletableFuture<RpcResponse<Object>>> sender = () -> attempts.incrementAndGet() == 1
+                    ? failed() : CompletableFuture.completedFuture(rpcResponse);
+            long retries = RetryPolicy.retries();
+
+            assertSame(rpcResponse, retryPolicy.call(sender, scheduler).get(1, TimeUnit.SECONDS));
+            assertEquals(2, attempts.get());
+            assertEquals(1, RetryPolicy.retries() - retries);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void budgetSpentTest() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RetryPolicy retryPolicy = new RetryPolicy(2, 1, 10, new TokenBudget(0, 1));
+            AtomicInteger attempts = new AtomicInteger();
+            Supplier<CompletableFuture<RpcResponse<Object>>> sender = () -> {
+                attempts.incrementAndGet();
+                return failed();
+            };
+            long retriesSuppressed = RetryPolicy.retriesSuppressed();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> retryPolicy.call(sender, scheduler).get(1, TimeUnit.SECONDS));
+            assertEquals(RpcException.class, e.getCause().getClass());
+            assertEquals(1, attempts.get());
+            assertEquals(1, RetryPolicy.retriesSuppressed() - retriesSuppressed);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static CompletableFuture<RpcResponse<Object>> failed() {
+        CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+        future.completeExceptionally(new RpcException("channel closed", new IllegalStateException()));
+        return future;
+    }
+}
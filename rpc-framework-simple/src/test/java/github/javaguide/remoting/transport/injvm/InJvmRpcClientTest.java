@@ -0,0 +1,54 @@
+package github.javaguide.remoting.transport.injvm;
+
+import github.javaguide.DemoRpcService;
+import github.javaguide.DemoRpcServiceImpl;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.proxy.RpcClientProxy;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.RpcRequestTransport;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InJvmRpcClientTest {
+
+    @BeforeAll
+    static void addService() {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .group("test1").version("version1").service(new DemoRpcServiceImpl()).build());
+    }
+
+    @Test
+    void localServiceSkipsTheNetworkTest() {
+        RpcRequestTransport remote = rpcRequest -> {
+            throw new AssertionError("a local service must not go over the network");
+        };
+        RpcServiceConfig rpcServiceConfig = RpcServiceConfig.builder().group("test1").version("version1").build();
+        DemoRpcService demoRpcService = new RpcClientProxy(remote, rpcServiceConfig).getProxy(DemoRpcService.class);
+        assertEquals("hello", demoRpcService.hello());
+    }
+
+    @Test
+    void copyOnCallTest() {
+        InJvmRpcClient inJvmRpcClient = new InJvmRpcClient(true);
+        RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[0])
+                .interfaceName(DemoRpcService.class.getName())
+                .paramTypes(new Class<?>[0])
+                .group("test1")
+                .version("version1")
+                .build();
+        assertTrue(inJvmRpcClient.isLocal(rpcRequest));
+        RpcResponse<?> rpcResponse = (RpcResponse<?>) inJvmRpcClient.sendRpcRequest(rpcRequest);
+        assertEquals("hello", rpcResponse.getData());
+
+        RpcRequest other = RpcRequest.builder().interfaceName(DemoRpcService.class.getName()).group("test2").version("version1").build();
+        assertFalse(inJvmRpcClient.isLocal(other));
+    }
+}
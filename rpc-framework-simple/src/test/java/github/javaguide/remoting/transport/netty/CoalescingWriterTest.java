@@ -0,0 +1,47 @@
+package github.javaguide.remoting.transport.netty;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoalescingWriterTest {
+
+    @Test
+    void boundedFlushTest() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        CoalescingWriter writer = new CoalescingWriter(channel, 2);
+        long flushes = CoalescingWriter.flushes();
+        long messages = CoalescingWriter.messages();
+
+        List<ChannelFuture> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(writer.write("message" + i));
+        }
+        // nothing is written until the event loop runs the flush task
+        assertNull(channel.readOutbound());
+        assertFalse(futures.get(0).isDone());
+
+        channel.runPendingTasks();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("message" + i, channel.readOutbound());
+            assertTrue(futures.get(i).isSuccess());
+        }
+        // at most 2 messages per flush
+        assertEquals(3, CoalescingWriter.flushes() - flushes);
+        assertEquals(5, CoalescingWriter.messages() - messages);
+
+        // the writer is idle again, the next message schedules a new flush
+        writer.write("message5");
+        channel.runPendingTasks();
+        assertEquals("message5", channel.readOutbound());
+        assertEquals(4, CoalescingWriter.flushes() - flushes);
+    }
+}
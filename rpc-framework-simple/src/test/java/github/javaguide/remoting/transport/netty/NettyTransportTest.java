@@ -0,0 +1,90 @@
+package github.javaguide.remoting.transport.netty;
+
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageDecoder;
+import github.javaguide.remoting.transport.netty.codec.RpcMessageEncoder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.unix.DomainSocketAddress;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class NettyTransportTest {
+
+    @Test
+    void domainSocketRoundTripTest() throws Exception {
+        NettyTransport transport = NettyTransport.select();
+        assumeTrue(transport.supportsDomainSocket(), "no unix domain socket on " + transport);
+        File socket = File.createTempFile("guide-rpc-", ".sock");
+        socket.delete();
+        EventLoopGroup group = transport.newEventLoopGroup(1);
+        try {
+            Channel server = new ServerBootstrap().group(group)
+                    .channel(transport.serverDomainSocketChannelClass())
+                    .childHandler(pipeline(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            RpcMessage request = (RpcMessage) msg;
+                            Object parameter = ((RpcRequest) request.getData()).getParameters()[0];
+                            ctx.writeAndFlush(RpcMessage.builder().data(RpcResponse.success(parameter, null))
+                                    .codec(request.getCodec())
+                                    .requestId(request.getRequestId())
+                                    .messageType(RpcConstants.RESPONSE_TYPE).build());
+                        }
+                    }))
+                    .bind(new DomainSocketAddress(socket)).sync().channel();
+            CompletableFuture<RpcMessage> response = new CompletableFuture<>();
+            Channel client = new Bootstrap().group(group)
+                    .channel(transport.domainSocketChannelClass())
+                    .handler(pipeline(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            response.complete((RpcMessage) msg);
+                        }
+                    }))
+                    .connect(new DomainSocketAddress(socket)).sync().channel();
+            client.writeAndFlush(RpcMessage.builder().data(RpcRequest.builder().methodName("hello")
+                    .parameters(new Object[]{"sayhelooloo"})
+                    .interfaceName("github.javaguide.HelloService")
+                    .paramTypes(new Class<?>[]{String.class})
+                    .build())
+                    .codec(SerializationTypeEnum.HESSIAN2.getCode())
+                    .compress(CompressTypeEnum.NONE.getCode())
+                    .requestId(7)
+                    .messageType(RpcConstants.REQUEST_TYPE).build());
+            RpcMessage actual = response.get(5, TimeUnit.SECONDS);
+            assertEquals(7, actual.getRequestId());
+            assertEquals("sayhelooloo", ((RpcResponse<?>) actual.getData()).getData());
+            client.close().sync();
+            server.close().sync();
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+            socket.delete();
+        }
+    }
+
+    private static ChannelInitializer<Channel> pipeline(ChannelInboundHandlerAdapter handler) {
+        return new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(new RpcMessageEncoder(), new RpcMessageDecoder(), handler);
+            }
+        };
+    }
+}
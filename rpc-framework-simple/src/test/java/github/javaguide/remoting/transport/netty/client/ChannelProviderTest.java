@@ -0,0 +1,188 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.exception.RpcException;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.registry.ProviderAvailability;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChannelProviderTest {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 9999);
+
+    private static Channel newChannel() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.attr(UnprocessedRequests.UNPROCESSED_REQUESTS_KEY).set(new UnprocessedRequests());
+        return channel;
+    }
+
+    @Test
+    void singleFlightConnectTest() throws Exception {
+        ChannelProvider channelProvider = new ChannelProvider(1, 100, 10000, 1024, 0);
+        AtomicInteger connects = new AtomicInteger();
+        CompletableFuture<Channel> connecting = new CompletableFuture<>();
+        Function<InetSocketAddress, CompletableFuture<Channel>> connector = address -> {
+            connects.incrementAndGet();
+            return connecting;
+        };
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CompletableFuture<Channel>>> channels = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                channels.add(executor.submit(() -> {
+                    start.await();
+                    return channelProvider.get(ADDRESS, connector);
+                }));
+            }
+            start.countDown();
+            // nobody is held while the connection is being opened
+            List<CompletableFuture<Channel>> pending = new ArrayList<>();
+            for (Future<CompletableFuture<Channel>> channel : channels) {
+                CompletableFuture<Channel> future = channel.get(5, TimeUnit.SECONDS);
+                assertFalse(future.isDone());
+                pending.add(future);
+            }
+            Channel connected = newChannel();
+            connecting.complete(connected);
+            for (CompletableFuture<Channel> future : pending) {
+                assertSame(connected, future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, connects.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void busyChannelGrowsThePoolTest() {
+        ChannelProvider channelProvider = new ChannelProvider(2, 100, 10000, 1024, 0);
+        AtomicInteger connects = new AtomicInteger();
+        Function<InetSocketAddress, CompletableFuture<Channel>> connector = address -> {
+            connects.incrementAndGet();
+            return CompletableFuture.completedFuture(newChannel());
+        };
+        Channel first = channelProvider.get(ADDRESS, connector).join();
+        // an idle channel is reused
+        assertSame(first, channelProvider.get(ADDRESS, connector).join());
+
+        UnprocessedRequests.of(first).put(new CompletableFuture<>());
+        // the busy channel is used while the second one is opened in the background
+        assertSame(first, channelProvider.get(ADDRESS, connector).join());
+        assertEquals(2, connects.get());
+        Channel second = channelProvider.get(ADDRESS, connector).join();
+        assertNotSame(first, second);
+
+        // the pool is full, the channel with fewer requests waiting is picked
+        UnprocessedRequests.of(second).put(new CompletableFuture<>());
+        UnprocessedRequests.of(second).put(new CompletableFuture<>());
+        assertSame(first, channelProvider.get(ADDRESS, connector).join());
+        assertEquals(2, connects.get());
+    }
+
+    @Test
+    void failedConnectBacksOffTest() throws Exception {
+        ChannelProvider channelProvider = new ChannelProvider(1, 200, 10000, 1024, 0);
+        ProviderAvailability providerAvailability = SingletonFactory.getInstance(ProviderAvailability.class);
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 9998);
+        AtomicInteger connects = new AtomicInteger();
+        Function<InetSocketAddress, CompletableFuture<Channel>> refused = a -> {
+            connects.incrementAndGet();
+            CompletableFuture<Channel> future = new CompletableFuture<>();
+            future.completeExceptionally(new ConnectException("refused"));
+            return future;
+        };
+        assertThrows(CompletionException.class, () -> channelProvider.get(address, refused).join());
+        assertFalse(providerAvailability.isAvailable("127.0.0.1:9998"));
+
+        // fails fast without another connect until the delay has passed
+        CompletionException e = assertThrows(CompletionException.class, () -> channelProvider.get(address, refused).join());
+        assertTrue(e.getCause() instanceof RpcException);
+        assertEquals(1, connects.get());
+
+        TimeUnit.MILLISECONDS.sleep(250);
+        Channel connected = channelProvider.get(address, a -> CompletableFuture.completedFuture(newChannel())).join();
+        assertTrue(connected.isActive());
+        assertTrue(providerAvailability.isAvailable("127.0.0.1:9998"));
+    }
+
+    @Test
+    void warmUpOpensEveryChannelTest() {
+        ChannelProvider channelProvider = new ChannelProvider(3, 100, 10000, 1024, 0);
+        AtomicInteger connects = new AtomicInteger();
+        Function<InetSocketAddress, CompletableFuture<Channel>> connector = address -> {
+            connects.incrementAndGet();
+            return CompletableFuture.completedFuture(newChannel());
+        };
+        Channel first = channelProvider.get(ADDRESS, connector).join();
+
+        List<Channel> channels = channelProvider.warmUp(ADDRESS, connector).join();
+        assertEquals(3, channels.size());
+        assertTrue(channels.contains(first));
+        assertEquals(3, connects.get());
+        // a warmed up pool is not grown again
+        assertEquals(3, channelProvider.warmUp(ADDRESS, connector).join().size());
+        assertEquals(3, connects.get());
+    }
+
+    @Test
+    void inFlightLimitTest() {
+        ChannelProvider channelProvider = new ChannelProvider(1, 100, 10000, 2, 0);
+        Function<InetSocketAddress, CompletableFuture<Channel>> connector = address -> CompletableFuture.completedFuture(newChannel());
+        Channel channel = channelProvider.get(ADDRESS, connector).join();
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.of(channel);
+        int requestId = unprocessedRequests.put(new CompletableFuture<>());
+        unprocessedRequests.put(new CompletableFuture<>());
+        assertEquals(2, channelProvider.inFlight());
+
+        // the only channel is full and the pool cannot grow
+        assertNull(channelProvider.get(ADDRESS, connector).join());
+        CompletableFuture<Void> room = channelProvider.awaitRoom(ADDRESS);
+        assertFalse(room.isDone());
+        assertEquals(1, channelProvider.waiting());
+
+        unprocessedRequests.remove(requestId);
+        channelProvider.release(ADDRESS);
+        assertTrue(room.isDone());
+        assertEquals(0, channelProvider.waiting());
+        assertSame(channel, channelProvider.get(ADDRESS, connector).join());
+    }
+
+    @Test
+    void endpointInFlightLimitTest() {
+        ChannelProvider channelProvider = new ChannelProvider(2, 100, 10000, 1024, 1);
+        AtomicInteger connects = new AtomicInteger();
+        Function<InetSocketAddress, CompletableFuture<Channel>> connector = address -> {
+            connects.incrementAndGet();
+            return CompletableFuture.completedFuture(newChannel());
+        };
+        Channel channel = channelProvider.get(ADDRESS, connector).join();
+        UnprocessedRequests.of(channel).put(new CompletableFuture<>());
+        // a busy channel would grow the pool, but the endpoint is full
+        assertNull(channelProvider.get(ADDRESS, connector).join());
+        assertEquals(1, connects.get());
+    }
+}
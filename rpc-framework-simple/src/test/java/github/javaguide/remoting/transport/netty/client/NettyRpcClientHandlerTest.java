@@ -0,0 +1,72 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.exception.RpcException;
+import github.javaguide.proxy.RpcTimer;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NettyRpcClientHandlerTest {
+
+    @Test
+    void lateResponseTest() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcClientHandler(unprocessedRequests));
+        CompletableFuture<RpcResponse<Object>> timedOut = new CompletableFuture<>();
+        CompletableFuture<RpcResponse<Object>> pending = new CompletableFuture<>();
+        int timedOutId = unprocessedRequests.put(timedOut);
+        int pendingId = unprocessedRequests.put(pending);
+        // the call times out and gives up its slot
+        unprocessedRequests.remove(timedOutId);
+
+        channel.writeInbound(response(timedOutId, "late"));
+        assertTrue(channel.isOpen());
+        assertFalse(pending.isDone());
+        assertEquals(1, unprocessedRequests.size());
+
+        RpcResponse<Object> rpcResponse = RpcResponse.success("data", null);
+        channel.writeInbound(response(pendingId, rpcResponse));
+        assertSame(rpcResponse, pending.join());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void pingTimeoutTest() throws Exception {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests();
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyRpcClientHandler(unprocessedRequests));
+        channel.attr(UnprocessedRequests.UNPROCESSED_REQUESTS_KEY).set(unprocessedRequests);
+        CompletableFuture<Void> pong = NettyRpcClient.ping(channel, new RpcTimer(), 50);
+        assertEquals(1, unprocessedRequests.size());
+        channel.runPendingTasks();
+
+        // a server older than warm-up answers every heartbeat with request id 0
+        RpcMessage heartbeatResponse = NettyRpcClientHandler.heartbeat(RpcConstants.VERSION_1);
+        heartbeatResponse.setMessageType(RpcConstants.HEARTBEAT_RESPONSE_TYPE);
+        channel.writeInbound(heartbeatResponse);
+        assertFalse(pong.isDone());
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> pong.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RpcException);
+        assertEquals(0, unprocessedRequests.size());
+        channel.finishAndReleaseAll();
+    }
+
+    static RpcMessage response(int requestId, Object data) {
+        return RpcMessage.builder()
+                .messageType(RpcConstants.RESPONSE_TYPE)
+                .requestId(requestId)
+                .data(data instanceof RpcResponse ? data : RpcResponse.success(data, null)).build();
+    }
+}
@@ -0,0 +1,104 @@
+package github.javaguide.remoting.transport.netty.client;
+
+import github.javaguide.remoting.dto.RpcResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UnprocessedRequestsTest {
+
+    @Test
+    void slotReuseTest() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(2);
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        assertEquals(1, unprocessedRequests.put(first));
+        assertEquals(2, unprocessedRequests.put(new CompletableFuture<>()));
+        assertSame(first, unprocessedRequests.remove(1));
+        assertNull(unprocessedRequests.remove(1));
+
+        // id 3 takes the slot of id 1, a late response of id 1 does not complete it
+        CompletableFuture<RpcResponse<Object>> third = new CompletableFuture<>();
+        assertEquals(3, unprocessedRequests.put(third));
+        assertFalse(unprocessedRequests.complete(1, RpcResponse.success("late", null)));
+        assertFalse(third.isDone());
+        assertTrue(unprocessedRequests.complete(3, RpcResponse.success("hello", null)));
+        assertEquals("hello", third.join().getData());
+        assertEquals(1, unprocessedRequests.size());
+    }
+
+    @Test
+    void skipTakenSlotTest() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(4);
+        for (int requestId = 1; requestId <= 4; requestId++) {
+            assertEquals(requestId, unprocessedRequests.put(new CompletableFuture<>()));
+        }
+        for (int requestId = 2; requestId <= 4; requestId++) {
+            unprocessedRequests.remove(requestId);
+        }
+        // id 5 maps to the slot id 1 still holds
+        assertEquals(6, unprocessedRequests.put(new CompletableFuture<>()));
+        assertEquals(2, unprocessedRequests.size());
+    }
+
+    @Test
+    void fullTest() {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(2);
+        CompletableFuture<RpcResponse<Object>> first = new CompletableFuture<>();
+        unprocessedRequests.put(first);
+        unprocessedRequests.put(new CompletableFuture<>());
+        assertThrows(IllegalStateException.class, () -> unprocessedRequests.put(new CompletableFuture<>()));
+        // a call that gives up frees its slot
+        first.cancel(false);
+        assertEquals(1, unprocessedRequests.size());
+        unprocessedRequests.put(new CompletableFuture<>());
+    }
+
+    @Test
+    void failAllRacesPutTest() throws Exception {
+        UnprocessedRequests unprocessedRequests = new UnprocessedRequests(64);
+        List<CompletableFuture<RpcResponse<Object>>> putFutures = new ArrayList<>();
+        AtomicBoolean putting = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> putter = executor.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    CompletableFuture<RpcResponse<Object>> future = new CompletableFuture<>();
+                    try {
+                        unprocessedRequests.put(future);
+                        putFutures.add(future);
+                    } catch (IllegalStateException e) {
+                        // full until the next failAll
+                    }
+                }
+                putting.set(false);
+            });
+            Future<?> failer = executor.submit(() -> {
+                while (putting.get()) {
+                    unprocessedRequests.failAll(new IllegalStateException("channel closed"));
+                }
+            });
+            putter.get(30, TimeUnit.SECONDS);
+            failer.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        unprocessedRequests.failAll(new IllegalStateException("channel closed"));
+        // no request slipped through: each one was failed and gave its slot back
+        assertTrue(putFutures.stream().allMatch(CompletableFuture::isCompletedExceptionally));
+        assertEquals(0, unprocessedRequests.size());
+    }
+}
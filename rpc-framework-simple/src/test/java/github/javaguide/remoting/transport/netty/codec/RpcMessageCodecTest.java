@@ -0,0 +1,239 @@
+package github.javaguide.remoting.transport.netty.codec;
+
+import github.javaguide.codec.ServiceCodecs;
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.RpcResponseCodeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RpcMessageCodecTest {
+
+    /**
+     * magic code + version + full length + messageType + codec
+     */
+    private static final int COMPRESS_INDEX = RpcConstants.MAGIC_NUMBER.length + 1 + 4 + 1 + 1;
+
+    @Test
+    void encodeThenDecodeTest() {
+        for (SerializationTypeEnum codec : SerializationTypeEnum.values()) {
+            if (codec == SerializationTypeEnum.TYPED) {
+                // needs a generated codec, see typedCodecTest
+                continue;
+            }
+            RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                    .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                    .interfaceName("github.javaguide.HelloService")
+                    .paramTypes(new Class<?>[]{String.class, String.class})
+                    .requestId(UUID.randomUUID().toString())
+                    .group("group1")
+                    .version("version1")
+                    .build();
+            RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
+                    .codec(codec.getCode())
+                    .compress(CompressTypeEnum.GZIP.getCode())
+                    .messageType(RpcConstants.REQUEST_TYPE).build();
+            EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+            encoder.writeOutbound(rpcMessage);
+            ByteBuf frame = encoder.readOutbound();
+
+            EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+            decoder.writeInbound(frame);
+            RpcMessage decoded = decoder.readInbound();
+            RpcRequest actual = (RpcRequest) decoded.getData();
+            assertEquals(rpcRequest.getRequestId(), actual.getRequestId(), codec.getName());
+            assertEquals(rpcRequest.getMethodName(), actual.getMethodName(), codec.getName());
+            assertEquals("sayhelooloo", actual.getParameters()[0], codec.getName());
+        }
+    }
+
+    @Test
+    void typedCodecTest() {
+        // DemoRpcServiceRpcCodec is registered in the test resources
+        RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{7, 8L, "sayhelooloo"})
+                .interfaceName("github.javaguide.DemoRpcService")
+                .paramTypes(new Class<?>[]{int.class, Long.class, Object.class})
+                .group("group1")
+                .version("version1")
+                .build();
+        RpcMessage request = RpcMessage.builder().data(rpcRequest)
+                .codec(SerializationTypeEnum.TYPED.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        encoder.writeOutbound(request);
+        RpcRequest actual = (RpcRequest) decode(encoder.readOutbound()).getData();
+        assertEquals(rpcRequest.getRpcServiceName(), actual.getRpcServiceName());
+        assertEquals(7, actual.getParameters()[0]);
+        assertEquals("sayhelooloo", actual.getParameters()[2]);
+
+        RpcMessage response = RpcMessage.builder().data(RpcResponse.success("hello", null))
+                .codec(SerializationTypeEnum.TYPED.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .request(actual)
+                .messageType(RpcConstants.RESPONSE_TYPE).build();
+        encoder.writeOutbound(response);
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        assertFalse(ServiceCodecs.peerHas(decoder, 42));
+        decoder.writeInbound((ByteBuf) encoder.readOutbound());
+        RpcMessage decoded = decoder.readInbound();
+        assertEquals("hello", ((RpcResponse<?>) decoded.getData()).getData());
+        // the typed response tells the client that the server has the same codec
+        assertTrue(ServiceCodecs.peerHas(decoder, 42));
+    }
+
+    @Test
+    void versionTwoTest() {
+        for (SerializationTypeEnum codec : SerializationTypeEnum.values()) {
+            if (codec == SerializationTypeEnum.TYPED) {
+                continue;
+            }
+            EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+            EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+            ByteBuf first = encodeV2(encoder, codec, request("sayhelooloo"), 1);
+            ByteBuf second = encodeV2(encoder, codec, request("sayhelooloo"), 300);
+            // the second request only carries the method id
+            assertTrue(second.readableBytes() < first.readableBytes(), codec.getName());
+            assertEquals(RpcConstants.VERSION, second.getByte(RpcConstants.MAGIC_NUMBER.length));
+            decoder.writeInbound(first);
+            decoder.writeInbound(second);
+            decoder.readInbound();
+            RpcMessage decoded = decoder.readInbound();
+            assertEquals(RpcConstants.VERSION, decoded.getVersion());
+            assertEquals(300, decoded.getRequestId(), codec.getName());
+            RpcRequest actual = (RpcRequest) decoded.getData();
+            assertEquals("github.javaguide.HelloServicegroup1version1", actual.getRpcServiceName(), codec.getName());
+            assertEquals("hello", actual.getMethodName(), codec.getName());
+            assertArrayEquals(new Class<?>[]{String.class}, actual.getParamTypes(), codec.getName());
+            assertEquals("sayhelooloo", actual.getParameters()[0], codec.getName());
+
+            // a version 1 frame still decodes on the same connection
+            decoder.writeInbound(encode(request("sayhelooloo")));
+            RpcMessage legacy = decoder.readInbound();
+            assertEquals(RpcConstants.VERSION_1, legacy.getVersion());
+            assertEquals("sayhelooloo", ((RpcRequest) legacy.getData()).getParameters()[0]);
+
+            RpcMessage response = RpcMessage.builder().data(RpcResponse.success("hello", actual.getRequestId()))
+                    .version(RpcConstants.VERSION)
+                    .codec(codec.getCode())
+                    .compress(CompressTypeEnum.GZIP.getCode())
+                    .requestId(300)
+                    .request(actual)
+                    .messageType(RpcConstants.RESPONSE_TYPE).build();
+            encoder.writeOutbound(response);
+            RpcMessage decodedResponse = decode(encoder.readOutbound());
+            RpcResponse<?> rpcResponse = (RpcResponse<?>) decodedResponse.getData();
+            assertEquals(300, decodedResponse.getRequestId());
+            assertEquals("hello", rpcResponse.getData(), codec.getName());
+            assertEquals(RpcResponseCodeEnum.SUCCESS.getMessage(), rpcResponse.getMessage(), codec.getName());
+        }
+    }
+
+    @Test
+    void versionTwoFailedDefinitionTest() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        // the parameter fails to serialize, the frame defining the method id is never sent
+        ByteBuf failed = encodeV2(encoder, SerializationTypeEnum.HESSIAN2, request(new Unserializable()), 1);
+        assertFalse(failed.isReadable());
+        failed.release();
+        // so the next call of the method defines it again
+        ByteBuf frame = encodeV2(encoder, SerializationTypeEnum.HESSIAN2, request("sayhelooloo"), 2);
+        RpcMessage decoded = decode(frame);
+        frame.release();
+        assertEquals(2, decoded.getRequestId());
+        assertEquals("hello", ((RpcRequest) decoded.getData()).getMethodName());
+        assertEquals("sayhelooloo", ((RpcRequest) decoded.getData()).getParameters()[0]);
+    }
+
+    @Test
+    void versionTwoSplitFrameTest() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        ByteBuf frame = encodeV2(encoder, SerializationTypeEnum.HESSIAN2, request("sayhelooloo"), 7);
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        // the frame arrives in pieces, nothing is decoded before the last one
+        for (int i = 0; i < frame.readableBytes() - 1; i += 3) {
+            int length = Math.min(3, frame.readableBytes() - 1 - i);
+            decoder.writeInbound(frame.retainedSlice(i, length));
+            assertNull(decoder.readInbound());
+        }
+        decoder.writeInbound(frame.retainedSlice(frame.readableBytes() - 1, 1));
+        frame.release();
+        RpcMessage decoded = decoder.readInbound();
+        assertEquals(7, decoded.getRequestId());
+        assertEquals("sayhelooloo", ((RpcRequest) decoded.getData()).getParameters()[0]);
+    }
+
+    @Test
+    void compressOnlyAboveThresholdTest() {
+        ByteBuf small = encode(request("sayhelooloo"));
+        assertEquals(CompressTypeEnum.NONE.getCode(), small.getByte(COMPRESS_INDEX));
+        assertEquals("sayhelooloo", ((RpcRequest) decode(small).getData()).getParameters()[0]);
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 512; i++) {
+            large.append("sayhelooloo");
+        }
+        ByteBuf compressed = encode(request(large.toString()));
+        assertEquals(CompressTypeEnum.GZIP.getCode(), compressed.getByte(COMPRESS_INDEX));
+        assertEquals(large.toString(), ((RpcRequest) decode(compressed).getData()).getParameters()[0]);
+    }
+
+    private static RpcRequest request(Object parameter) {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{parameter})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+    }
+
+    private static ByteBuf encode(RpcRequest rpcRequest) {
+        RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
+                .codec(SerializationTypeEnum.KYRO.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        EmbeddedChannel encoder = new EmbeddedChannel(new RpcMessageEncoder());
+        encoder.writeOutbound(rpcMessage);
+        return encoder.readOutbound();
+    }
+
+    private static ByteBuf encodeV2(EmbeddedChannel encoder, SerializationTypeEnum codec, RpcRequest rpcRequest, int requestId) {
+        RpcMessage rpcMessage = RpcMessage.builder().data(rpcRequest)
+                .version(RpcConstants.VERSION)
+                .codec(codec.getCode())
+                .compress(CompressTypeEnum.GZIP.getCode())
+                .requestId(requestId)
+                .messageType(RpcConstants.REQUEST_TYPE).build();
+        encoder.writeOutbound(rpcMessage);
+        return encoder.readOutbound();
+    }
+
+    private static final class Unserializable implements Serializable {
+        private Object writeReplace() {
+            throw new IllegalStateException("cannot be serialized");
+        }
+    }
+
+    private static RpcMessage decode(ByteBuf frame) {
+        EmbeddedChannel decoder = new EmbeddedChannel(new RpcMessageDecoder());
+        decoder.writeInbound(frame.retain());
+        return decoder.readInbound();
+    }
+}
@@ -0,0 +1,168 @@
+package github.javaguide.remoting.transport.shm;
+
+import github.javaguide.DemoRpcService;
+import github.javaguide.DemoRpcServiceImpl;
+import github.javaguide.config.RpcServiceConfig;
+import github.javaguide.enums.CompressTypeEnum;
+import github.javaguide.enums.SerializationTypeEnum;
+import github.javaguide.factory.SingletonFactory;
+import github.javaguide.provider.impl.ZkServiceProviderImpl;
+import github.javaguide.remoting.constants.RpcConstants;
+import github.javaguide.remoting.dto.RpcMessage;
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShmRpcServerTest {
+
+    @Test
+    void ringWrapsAroundTest() throws Exception {
+        File file = Files.createTempFile("shm-ring", ".req").toFile();
+        ShmRingBuffer producer = ShmRingBuffer.create(file, 1024);
+        ShmRingBuffer consumer = ShmRingBuffer.open(file);
+        try {
+            byte[] payload = new byte[400];
+            for (int i = 0; i < 20; i++) {
+                payload[0] = (byte) i;
+                assertTrue(producer.offer(Unpooled.wrappedBuffer(payload)));
+                assertTrue(producer.offer(Unpooled.wrappedBuffer(payload)));
+                // a third record of 408 bytes does not fit in 1024
+                assertFalse(producer.offer(Unpooled.wrappedBuffer(payload)));
+                for (ByteBuf frame = consumer.poll(ByteBufAllocator.DEFAULT); frame != null;
+                     frame = consumer.poll(ByteBufAllocator.DEFAULT)) {
+                    assertEquals(400, frame.readableBytes());
+                    frame.release();
+                }
+            }
+            assertNull(consumer.poll(ByteBufAllocator.DEFAULT));
+        } finally {
+            producer.unmap();
+            consumer.unmap();
+            file.delete();
+        }
+    }
+
+    @Test
+    void requestResponseTest() throws Exception {
+        SingletonFactory.getInstance(ZkServiceProviderImpl.class).addService(RpcServiceConfig.builder()
+                .group("shm").version("version1").service(new DemoRpcServiceImpl()).build());
+        ShmRpcServer shmRpcServer = new ShmRpcServer();
+        shmRpcServer.start("127.0.0.1:0");
+        File directory = ShmRpcServer.directoryOf("127.0.0.1:0");
+        ShmRingBuffer responses = ShmRingBuffer.create(new File(directory, "test" + ShmRpcServer.RESPONSE_SUFFIX), 4096);
+        ShmRingBuffer requests = ShmRingBuffer.create(new File(directory, "test" + ShmRpcServer.REQUEST_SUFFIX), 4096);
+        BlockingQueue<RpcMessage> received = new LinkedBlockingQueue<>();
+        ShmConnection connection = null;
+        try {
+            for (int i = 0; i < 100 && !responses.isAccepted(); i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertTrue(responses.isAccepted());
+            connection = new ShmConnection("shm-test", requests, responses, received::add, () -> {
+            });
+            for (int requestId = 1; requestId <= 3; requestId++) {
+                RpcRequest rpcRequest = RpcRequest.builder().methodName("hello")
+                        .parameters(new Object[0])
+                        .interfaceName(DemoRpcService.class.getName())
+                        .paramTypes(new Class<?>[0])
+                        .group("shm")
+                        .version("version1")
+                        .build();
+                connection.write(RpcMessage.builder().data(rpcRequest)
+                        .version(RpcConstants.VERSION)
+                        .codec(SerializationTypeEnum.HESSIAN2.getCode())
+                        .compress(CompressTypeEnum.NONE.getCode())
+                        .requestId(requestId)
+                        .messageType(RpcConstants.REQUEST_TYPE).build());
+                RpcMessage response = received.poll(5, TimeUnit.SECONDS);
+                assertEquals(requestId, response.getRequestId());
+                assertEquals("hello", ((RpcResponse<?>) response.getData()).getData());
+            }
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+            shmRpcServer.stop();
+        }
+    }
+
+    @Test
+    void deadClientTest() throws Exception {
+        ShmRpcServer shmRpcServer = new ShmRpcServer();
+        shmRpcServer.start("127.0.0.1:1");
+        File directory = ShmRpcServer.directoryOf("127.0.0.1:1");
+        File requestFile = new File(directory, "dead" + ShmRpcServer.REQUEST_SUFFIX);
+        // a client that maps its rings and dies, it never beats nor closes them
+        ShmRingBuffer responses = ShmRingBuffer.create(new File(directory, "dead" + ShmRpcServer.RESPONSE_SUFFIX), 4096);
+        ShmRingBuffer requests = ShmRingBuffer.create(requestFile, 4096);
+        try {
+            for (int i = 0; i < 500 && !responses.isClosed(); i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertTrue(responses.isAccepted());
+            assertTrue(responses.isClosed());
+            // the server forgot the connection and removed its rings
+            for (int i = 0; i < 100 && requestFile.exists(); i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertFalse(requestFile.exists());
+        } finally {
+            requests.unmap();
+            responses.unmap();
+            shmRpcServer.stop();
+        }
+    }
+
+    @Test
+    void fullRingTest() throws Exception {
+        File outboundFile = Files.createTempFile("shm-ring", ".req").toFile();
+        File inboundFile = Files.createTempFile("shm-ring", ".resp").toFile();
+        ShmRingBuffer outbound = ShmRingBuffer.create(outboundFile, 1024);
+        ShmRingBuffer inbound = ShmRingBuffer.create(inboundFile, 1024);
+        // the peer is alive but never reads its requests, it beats through a mapping of its own
+        ShmRingBuffer peerRing = ShmRingBuffer.open(inboundFile);
+        ScheduledExecutorService peer = Executors.newSingleThreadScheduledExecutor();
+        peer.scheduleAtFixedRate(peerRing::heartbeat, 0, 50, TimeUnit.MILLISECONDS);
+        ShmConnection connection = new ShmConnection("shm-test", outbound, inbound, rpcMessage -> {
+        }, () -> {
+        });
+        RpcMessage ping = RpcMessage.builder()
+                .version(RpcConstants.VERSION)
+                .codec(SerializationTypeEnum.HESSIAN2.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .messageType(RpcConstants.HEARTBEAT_REQUEST_TYPE).build();
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IllegalStateException.class, () -> {
+                while (true) {
+                    connection.write(ping);
+                }
+            }));
+            assertTrue(connection.isClosed());
+        } finally {
+            peer.shutdownNow();
+            peer.awaitTermination(5, TimeUnit.SECONDS);
+            peerRing.unmap();
+            outboundFile.delete();
+            inboundFile.delete();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package github.javaguide.serialize.hessian;
+
+import github.javaguide.remoting.dto.RpcRequest;
+import github.javaguide.remoting.dto.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Hessian2SerializerTest {
+
+    private static RpcRequest rpcRequest() {
+        return RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+    }
+
+    @Test
+    void hessian2SerializerTest() {
+        RpcRequest target = rpcRequest();
+        Hessian2Serializer hessian2Serializer = new Hessian2Serializer();
+        byte[] bytes = hessian2Serializer.serialize(target);
+        RpcRequest actual = hessian2Serializer.deserialize(bytes, RpcRequest.class);
+        assertEquals(target.getGroup(), actual.getGroup());
+        assertEquals(target.getVersion(), actual.getVersion());
+        assertEquals(target.getRequestId(), actual.getRequestId());
+        assertArrayEquals(target.getParamTypes(), actual.getParamTypes());
+        // hessian 2 writes class definitions and short strings more compactly than hessian 1
+        assertTrue(bytes.length < new HessianSerializer().serialize(target).length);
+    }
+
+    @Test
+    void hessian2SerializerByteBufTest() {
+        Hessian2Serializer hessian2Serializer = new Hessian2Serializer();
+        ByteBuf buf = Unpooled.directBuffer();
+        for (int i = 0; i < 3; i++) {
+            // the reused output must not refer back to class definitions of the previous call
+            RpcResponse<Object> target = RpcResponse.success("hello" + i, UUID.randomUUID().toString());
+            hessian2Serializer.serialize(target, buf);
+            RpcResponse<?> actual = hessian2Serializer.deserialize(buf, RpcResponse.class);
+            assertEquals(target.getRequestId(), actual.getRequestId());
+            assertEquals(target.getData(), actual.getData());
+            buf.clear();
+        }
+        buf.release();
+    }
+}
@@ -1,9 +1,16 @@
 package github.javaguide.serialize.kyro;
 
 import github.javaguide.remoting.dto.RpcRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -26,4 +33,59 @@ class KryoSerializerTest {
         assertEquals(target.getVersion(), actual.getVersion());
         assertEquals(target.getRequestId(), actual.getRequestId());
     }
-}
\ No newline at end of file
+
+    @Test
+    void kryoSerializerByteBufTest() {
+        RpcRequest target = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+        KryoSerializer kryoSerializer = new KryoSerializer();
+        ByteBuf buf = Unpooled.directBuffer();
+        kryoSerializer.serialize(target, buf);
+        RpcRequest actual = kryoSerializer.deserialize(buf, RpcRequest.class);
+        assertEquals(target.getGroup(), actual.getGroup());
+        assertEquals(target.getVersion(), actual.getVersion());
+        assertEquals(target.getRequestId(), actual.getRequestId());
+        buf.release();
+    }
+
+    @Test
+    void kryoSerializerConcurrentTest() throws Exception {
+        KryoSerializer kryoSerializer = new KryoSerializer();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        String requestId = UUID.randomUUID().toString();
+                        RpcRequest target = RpcRequest.builder().methodName("hello")
+                                .parameters(new Object[]{requestId})
+                                .paramTypes(new Class<?>[]{String.class})
+                                .requestId(requestId)
+                                .build();
+                        ByteBuf buf = j % 2 == 0 ? Unpooled.directBuffer() : Unpooled.buffer();
+                        kryoSerializer.serialize(target, buf);
+                        buf.writeByte(7);
+                        RpcRequest actual = kryoSerializer.deserialize(buf, RpcRequest.class);
+                        assertEquals(requestId, actual.getRequestId());
+                        assertEquals(requestId, actual.getParameters()[0]);
+                        // only the body is consumed
+                        assertEquals(1, buf.readableBytes());
+                        buf.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package github.javaguide.serialize.protostuff;
+
+import github.javaguide.remoting.dto.RpcRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProtostuffSerializerTest {
+
+    @Test
+    void protostuffSerializerTest() {
+        RpcRequest target = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+        ProtostuffSerializer protostuffSerializer = new ProtostuffSerializer();
+        byte[] bytes = protostuffSerializer.serialize(target);
+        RpcRequest actual = protostuffSerializer.deserialize(bytes, RpcRequest.class);
+        assertEquals(target.getGroup(), actual.getGroup());
+        assertEquals(target.getVersion(), actual.getVersion());
+        assertEquals(target.getRequestId(), actual.getRequestId());
+    }
+
+    @Test
+    void protostuffSerializerByteBufTest() {
+        RpcRequest target = RpcRequest.builder().methodName("hello")
+                .parameters(new Object[]{"sayhelooloo", "sayhelooloosayhelooloo"})
+                .interfaceName("github.javaguide.HelloService")
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .requestId(UUID.randomUUID().toString())
+                .group("group1")
+                .version("version1")
+                .build();
+        ProtostuffSerializer protostuffSerializer = new ProtostuffSerializer();
+        ByteBuf buf = Unpooled.directBuffer();
+        protostuffSerializer.serialize(target, buf);
+        RpcRequest actual = protostuffSerializer.deserialize(buf, RpcRequest.class);
+        assertEquals(target.getGroup(), actual.getGroup());
+        assertEquals(target.getVersion(), actual.getVersion());
+        assertEquals(target.getRequestId(), actual.getRequestId());
+        buf.release();
+    }
+
+    @Test
+    void protostuffSerializerConcurrentTest() throws Exception {
+        ProtostuffSerializer protostuffSerializer = new ProtostuffSerializer();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        String requestId = UUID.randomUUID().toString();
+                        RpcRequest target = RpcRequest.builder().methodName("hello")
+                                .parameters(new Object[]{requestId})
+                                .paramTypes(new Class<?>[]{String.class})
+                                .requestId(requestId)
+                                .build();
+                        ByteBuf buf = j % 2 == 0 ? Unpooled.directBuffer() : Unpooled.buffer();
+                        protostuffSerializer.serialize(target, buf);
+                        RpcRequest actual = protostuffSerializer.deserialize(buf, RpcRequest.class);
+                        assertEquals(requestId, actual.getRequestId());
+                        assertEquals(requestId, actual.getParameters()[0]);
+                        assertEquals(0, buf.readableBytes());
+                        buf.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}